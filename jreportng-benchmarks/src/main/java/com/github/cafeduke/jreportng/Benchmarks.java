@@ -0,0 +1,146 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.IClass;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+/**
+ * Shared helpers for the benchmarks.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class Benchmarks
+{
+    /**
+     * JVM argument that points the report of every forked benchmark JVM to a scratch directory.
+     */
+    static final String REPORT_HOME_ARG = "-Djreport.home=target/jreportng-bench";
+
+    /**
+     * Number of sets of synthetic classes generated so far, keeps the class names of each set unique.
+     */
+    private static final AtomicInteger SYNTHETIC_SET = new AtomicInteger();
+
+    private Benchmarks()
+    {
+
+    }
+
+    /**
+     * Create a minimal {@link ITestResult} for {@code testClass} and {@code methodName}, enough for
+     * {@link TestListener#log(String, ITestResult, java.util.logging.Level, String, Throwable)}.
+     *
+     * @param testClass The test class.
+     * @param methodName The test method name.
+     * @return A result that answers the test class and the method name.
+     */
+    static ITestResult testResult(Class<?> testClass, String methodName)
+    {
+        IClass iclass = proxy(IClass.class, "getRealClass", testClass);
+        ITestNGMethod method = proxy(ITestNGMethod.class, "getMethodName", methodName);
+        return (ITestResult) Proxy.newProxyInstance(Benchmarks.class.getClassLoader(), new Class<?>[] { ITestResult.class }, (p, m, a) ->
+        {
+            switch (m.getName())
+            {
+                case "getTestClass":
+                    return iclass;
+                case "getMethod":
+                    return method;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Generate {@code classCount} empty classes spread round robin across {@code packageCount} packages. Every call
+     * generates classes in packages not used before, so they are new to the report.
+     *
+     * @param classCount Number of classes.
+     * @param packageCount Number of packages.
+     * @return The generated classes.
+     */
+    static Class<?>[] syntheticClasses(int classCount, int packageCount)
+    {
+        String packagePrefix = "com.github.cafeduke.synthetic.set" + SYNTHETIC_SET.incrementAndGet() + ".pkg";
+        SyntheticClassLoader loader = new SyntheticClassLoader();
+        Class<?> classes[] = new Class<?>[classCount];
+        for (int i = 0; i < classCount; ++i)
+            classes[i] = loader.define(packagePrefix + (i % packageCount), "SyntheticTest" + i);
+        return classes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, String methodName, Object value)
+    {
+        return (T) Proxy.newProxyInstance(Benchmarks.class.getClassLoader(), new Class<?>[] { type },
+            (p, m, a) -> m.getName().equals(methodName) ? value : null);
+    }
+
+    /**
+     * Defines empty classes from hand written class files, one package per distinct package name.
+     */
+    private static final class SyntheticClassLoader extends ClassLoader
+    {
+        SyntheticClassLoader()
+        {
+            super(Benchmarks.class.getClassLoader());
+        }
+
+        Class<?> define(String packageName, String simpleName)
+        {
+            String className = packageName + "." + simpleName;
+            if (getPackage(packageName) == null)
+                definePackage(packageName, null, null, null, null, null, null, null);
+
+            byte bytes[] = classFile(className.replace('.', '/'));
+            return defineClass(className, bytes, 0, bytes.length);
+        }
+
+        /**
+         * @param internalName Internal name of the class.
+         * @return Class file of a public class extending Object, with no members.
+         */
+        private static byte[] classFile(String internalName)
+        {
+            try
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(52);
+
+                // Constant pool: #1 Utf8 this, #2 Class #1, #3 Utf8 super, #4 Class #3
+                out.writeShort(5);
+                out.writeByte(1);
+                out.writeUTF(internalName);
+                out.writeByte(7);
+                out.writeShort(1);
+                out.writeByte(1);
+                out.writeUTF("java/lang/Object");
+                out.writeByte(7);
+                out.writeShort(3);
+
+                out.writeShort(0x0021);
+                out.writeShort(2);
+                out.writeShort(4);
+                out.writeShort(0);
+                out.writeShort(0);
+                out.writeShort(0);
+                out.writeShort(0);
+                return bytes.toByteArray();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Error generating class " + internalName, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time taken to initialize the JReportNG classes in a fresh JVM, as paid by a JVM that references them before running
+ * its first test. Each fork measures a single cold initialization.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 20, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class BootstrapBenchmark
+{
+    @Benchmark
+    public Class<?> initialize() throws Exception
+    {
+        ClassLoader loader = BootstrapBenchmark.class.getClassLoader();
+        Class.forName("com.github.cafeduke.jreportng.LoggerUtil", true, loader);
+        return Class.forName("com.github.cafeduke.jreportng.JReportLogUtil", true, loader);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from the end of the tests to the completed report, as done by {@link TestListener#onExecutionFinish()}, for
+ * {@link #classCount} classes whose logs are open. Classes are spread across 10 packages.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { Benchmarks.REPORT_HOME_ARG, "-Djreport.log.maxopen=0" })
+public class CompletionBenchmark
+{
+    /**
+     * Number of classes with an open log.
+     */
+    @Param({ "100", "1000" })
+    public int classCount;
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        for (Class<?> currClass : Benchmarks.syntheticClasses(classCount, 10))
+        {
+            JReportLogUtil.updateLogReport(currClass);
+            Logger logger = LoggerUtil.getLogger(currClass);
+            for (int i = 0; i < 20; ++i)
+                logger.info("Record " + i + " of " + currClass.getSimpleName());
+        }
+    }
+
+    @Benchmark
+    public void complete()
+    {
+        LoggerUtil.releaseAllLoggers();
+        JReportLogUtil.handleTestRunCompletion();
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare {@link HtmlFormatter} with the {@link LegacyHtmlFormatter} it replaced.
+ *
+ * <p>
+ * Run with the GC profiler to see the bytes allocated per record ({@code gc.alloc.rate.norm}) next to the time per
+ * record:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar HtmlFormatterBenchmark -prof gc
+ * </pre>
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class HtmlFormatterBenchmark
+{
+    /**
+     * Attach a throwable to the record.
+     */
+    @Param({ "false", "true" })
+    public boolean thrown;
+
+    private LogRecord record;
+
+    private LegacyHtmlFormatter legacy;
+
+    private HtmlFormatter current;
+
+    private StringBuilder builder;
+
+    @Setup
+    public void setup()
+    {
+        record = new LogRecord(Level.INFO, "Started executing test" + ReportProperties.LINE_SEP + "with a second line");
+        record.setSourceClassName("com.github.cafeduke.jreportng.sample.SampleTest");
+        record.setSourceMethodName("testSample");
+        record.setParameters(new String[] { HtmlFormatter.STYLE_ROW_HIGHLIGHT });
+        if (thrown)
+            record.setThrown(new IllegalStateException("Sample failure", new RuntimeException("Sample cause")));
+
+        legacy = new LegacyHtmlFormatter("SampleTest");
+        current = new HtmlFormatter("SampleTest");
+        builder = new StringBuilder(1024);
+    }
+
+    @Benchmark
+    public String legacyFormat()
+    {
+        return legacy.format(record);
+    }
+
+    @Benchmark
+    public String currentFormat()
+    {
+        return current.format(record);
+    }
+
+    /**
+     * The path taken by {@link LogFileHandler}, appending into a buffer owned by the handler.
+     *
+     * @return Length of the rows, consumed to keep the work alive.
+     */
+    @Benchmark
+    public int currentFormatIntoBuffer()
+    {
+        builder.setLength(0);
+        current.format(record, builder);
+        return builder.length();
+    }
+}
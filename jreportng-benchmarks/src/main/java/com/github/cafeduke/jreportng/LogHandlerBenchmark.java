@@ -0,0 +1,98 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publish records to a single large per-class log through each of the log handlers.
+ *
+ * <ul>
+ *    <li>{@code file}: {@link LogFileHandler} flushing after every record, as used for synchronous logging
+ *    <li>{@code buffered}: {@link LogFileHandler} without flushing, as used behind an {@link AsyncLogHandler}
+ *    <li>{@code mmap}: {@link MappedLogFileHandler} with the default chunk size
+ *    <li>{@code ndjson}: {@link LogFileHandler} without flushing, writing JSON lines with {@link NdjsonFormatter}
+ *    <li>{@code gzip}: {@link LogFileHandler} without flushing, compressing the file with gzip
+ *    <li>{@code viewer}: {@link ChunkedLogHandler} without flushing, writing chunks for the log viewer
+ * </ul>
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class LogHandlerBenchmark
+{
+    @Param({ "file", "buffered", "mmap", "ndjson", "gzip", "viewer" })
+    public String handlerType;
+
+    private LogRecord record;
+
+    private Handler handler;
+
+    @Setup
+    public void setup()
+    {
+        record = new LogRecord(Level.INFO, "Response received from the server under test with status 200 and 4 headers");
+        record.setSourceClassName("com.github.cafeduke.jreportng.sample.SampleTest");
+        record.setSourceMethodName("testSample");
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void open() throws Exception
+    {
+        ReportProperties.DIR_REPORT_LOG_HOME.mkdirs();
+        File file = new File(ReportProperties.DIR_REPORT_LOG_HOME, "LogHandlerBenchmark-" + handlerType + ".html");
+        HtmlFormatter formatter = new HtmlFormatter("LogHandlerBenchmark");
+        switch (handlerType)
+        {
+            case "file":
+                handler = new LogFileHandler(file, formatter, false, true);
+                break;
+            case "buffered":
+                handler = new LogFileHandler(file, formatter, false, false);
+                break;
+            case "ndjson":
+                handler = new LogFileHandler(file, new NdjsonFormatter(), false, false);
+                break;
+            case "gzip":
+                handler = new LogFileHandler(file, formatter, false, false, true);
+                break;
+            case "viewer":
+                handler = new ChunkedLogHandler(file, "LogHandlerBenchmark", false, 1000, false);
+                break;
+            default:
+                handler = new MappedLogFileHandler(file, formatter, false, ReportProperties.LOG_MMAP_CHUNK_SIZE);
+        }
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void close()
+    {
+        handler.close();
+    }
+
+    @Benchmark
+    public void publish()
+    {
+        handler.publish(record);
+    }
+}
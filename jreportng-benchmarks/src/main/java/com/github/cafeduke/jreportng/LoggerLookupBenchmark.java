@@ -0,0 +1,71 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link LoggerUtil#getLogger(Class)} for classes whose logger is already set up, the lookup done on every
+ * {@link TestListener} event.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class LoggerLookupBenchmark
+{
+    /**
+     * Number of distinct classes looked up.
+     */
+    @Param({ "1", "100", "1000" })
+    public int classCount;
+
+    private Class<?> classes[];
+
+    @Setup
+    public void setup()
+    {
+        classes = Benchmarks.syntheticClasses(classCount, 10);
+        for (Class<?> currClass : classes)
+            LoggerUtil.getLogger(currClass);
+    }
+
+    /**
+     * Each thread walks the classes on its own.
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Logger lookup1Thread(Cursor cursor)
+    {
+        return LoggerUtil.getLogger(classes[cursor.next++ % classes.length]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Logger lookup8Threads(Cursor cursor)
+    {
+        return LoggerUtil.getLogger(classes[cursor.next++ % classes.length]);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.cafeduke.jreportng;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time taken by {@code JReportLogUtil.setupJReportResources} to extract the static report resources from the jar,
+ * paid by every fresh report directory.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class SetupResourcesBenchmark
+{
+    private Method setupJReportResources;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        setupJReportResources = JReportLogUtil.class.getDeclaredMethod("setupJReportResources");
+        setupJReportResources.setAccessible(true);
+    }
+
+    @Benchmark
+    public void extract() throws Exception
+    {
+        setupJReportResources.invoke(null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.logging.Level;
+
+import org.testng.ITestContext;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * A test class run by {@link TestRunBenchmark}. The number of invocations is read from the {@code invocations}
+ * parameter of the enclosing {@code <test>}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class SyntheticTest extends AbstractTestCase
+{
+    @DataProvider(name = "invocations", parallel = true)
+    public static Object[][] invocations(ITestContext context)
+    {
+        int count = Integer.parseInt(context.getCurrentXmlTest().getParameter("invocations"));
+        Object data[][] = new Object[count][];
+        for (int i = 0; i < count; ++i)
+            data[i] = new Object[] { i };
+        return data;
+    }
+
+    @Test(dataProvider = "invocations")
+    public void test(int invocation)
+    {
+        logger.info("Invocation " + invocation + " started");
+        logger.fine("Invocation " + invocation + " detail");
+        logger.log(Level.INFO, "Invocation " + invocation + " finished");
+    }
+}
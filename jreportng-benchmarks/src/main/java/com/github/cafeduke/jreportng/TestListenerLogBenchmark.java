@@ -0,0 +1,98 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testng.ITestResult;
+
+/**
+ * Throughput of {@link TestListener#log(String, ITestResult, Level, String)}, the path taken by every test life cycle
+ * event, as the number of logging threads grows. Each call formats and writes a record to the log of one of
+ * {@link #classCount} test classes.
+ *
+ * <p>
+ * Records are written to disk, so keep measurement short. Compare logging modes by appending system properties, for
+ * example {@code -jvmArgsAppend -Djreport.log.async=true}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class TestListenerLogBenchmark
+{
+    /**
+     * Number of test classes logged to.
+     */
+    @Param({ "1", "16" })
+    public int classCount;
+
+    private ITestResult results[];
+
+    @Setup
+    public void setup()
+    {
+        Class<?> classes[] = Benchmarks.syntheticClasses(classCount, 4);
+        results = new ITestResult[classCount];
+        for (int i = 0; i < classCount; ++i)
+            results[i] = Benchmarks.testResult(classes[i], "testMethod");
+    }
+
+    /**
+     * Each thread walks the classes from a different starting point.
+     */
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int next;
+
+        @Setup
+        public void setup()
+        {
+            next = ThreadLocalRandom.current().nextInt(1024);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void log1Thread(Cursor cursor)
+    {
+        log(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void log4Threads(Cursor cursor)
+    {
+        log(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void log16Threads(Cursor cursor)
+    {
+        log(cursor);
+    }
+
+    private void log(Cursor cursor)
+    {
+        ITestResult result = results[cursor.next++ % results.length];
+        TestListener.log("Started executing test", result, Level.INFO, HtmlFormatter.STYLE_ROW_HIGHLIGHT);
+    }
+}
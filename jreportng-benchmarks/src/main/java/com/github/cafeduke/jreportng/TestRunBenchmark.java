@@ -0,0 +1,68 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testng.TestNG;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+/**
+ * End to end TestNG run of {@link SyntheticTest} with {@link TestListener} attached, from execution start to the
+ * completed report.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class TestRunBenchmark
+{
+    /**
+     * Number of data provider invocations of {@link SyntheticTest#test(int)}.
+     */
+    @Param({ "100", "1000" })
+    public int invocations;
+
+    /**
+     * Size of the data provider thread pool, 1 runs the invocations sequentially.
+     */
+    @Param({ "1", "8" })
+    public int threads;
+
+    @Benchmark
+    public int run()
+    {
+        XmlSuite suite = new XmlSuite();
+        suite.setName("BenchmarkSuite");
+        suite.setDataProviderThreadCount(threads);
+
+        XmlTest test = new XmlTest(suite);
+        test.setName("BenchmarkTest");
+        test.addParameter("invocations", String.valueOf(invocations));
+        test.setXmlClasses(Collections.singletonList(new XmlClass(SyntheticTest.class)));
+
+        TestNG testNG = new TestNG(false);
+        testNG.setUseDefaultListeners(false);
+        testNG.setVerbose(0);
+        testNG.setOutputDirectory("target/test-output");
+        testNG.addListener(new TestListener());
+        testNG.setXmlSuites(Collections.singletonList(suite));
+        testNG.run();
+        return testNG.getStatus();
+    }
+}
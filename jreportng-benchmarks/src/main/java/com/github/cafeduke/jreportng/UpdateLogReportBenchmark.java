@@ -0,0 +1,52 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to register {@link #classCount} new test classes with {@link JReportLogUtil#updateLogReport(Class)}, as done
+ * by the {@code @BeforeClass} of every {@link AbstractTestCase}. Classes are spread across 10 packages.
+ *
+ * @author Raghunandan.Seshadri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = Benchmarks.REPORT_HOME_ARG)
+public class UpdateLogReportBenchmark
+{
+    /**
+     * Number of classes registered per invocation.
+     */
+    @Param({ "10", "100", "1000", "10000" })
+    public int classCount;
+
+    private Class<?> classes[];
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        classes = Benchmarks.syntheticClasses(classCount, 10);
+    }
+
+    @Benchmark
+    public void register()
+    {
+        for (Class<?> currClass : classes)
+            JReportLogUtil.updateLogReport(currClass);
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.logging.LogRecord;
+
+/**
+ * A formatter that appends a formatted record straight into a buffer supplied by the handler, so that a handler that
+ * reuses its buffer formats records without creating a {@code String} for each. {@link LogFileHandler} and
+ * {@link MappedLogFileHandler} format records this way when their formatter implements this interface.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public interface AppendableFormatter
+{
+    /**
+     * Append the formatted {@code record} to {@code builder}.
+     *
+     * @param record The record to format.
+     * @param builder Buffer to which the formatted record is appended.
+     */
+    void format(LogRecord record, StringBuilder builder);
+}
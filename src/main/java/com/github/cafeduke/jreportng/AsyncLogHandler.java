@@ -0,0 +1,105 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that hands records over to a background writer thread instead of writing them on the logging thread.
+ *
+ * <p>
+ * Records are put on a bounded queue shared by all asynchronous handlers. A single writer thread drains the queue in
+ * batches, publishes each record to the wrapped handler and flushes every handler touched by the batch once. When the
+ * queue is full the {@link Backpressure} policy decides what the logging thread does.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.async}. See {@link ReportProperties#LOG_ASYNC}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class AsyncLogHandler extends Handler
+{
+    /**
+     * Action taken by the logging thread when the queue is full.
+     */
+    public enum Backpressure
+    {
+        /**
+         * Wait for space in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Discard the record. The number of discarded records is reported by {@link LoggerUtil#drainHandlers()}.
+         */
+        DROP,
+
+        /**
+         * Publish the record to the wrapped handler on the logging thread.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * The handler that writes the records.
+     */
+    private final Handler delegate;
+
+    /**
+     * Policy when the queue is full.
+     */
+    private final Backpressure backpressure;
+
+    /**
+     * Create an asynchronous handler.
+     *
+     * @param delegate The handler to which the writer thread publishes records.
+     * @param backpressure Policy when the queue is full.
+     */
+    public AsyncLogHandler(Handler delegate, Backpressure backpressure)
+    {
+        this.delegate = delegate;
+        this.backpressure = backpressure;
+        setLevel(delegate.getLevel());
+    }
+
+    /**
+     * @return The handler to which the writer thread publishes records.
+     */
+    public Handler getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (!isLoggable(record))
+            return;
+
+        // Source class and method are inferred from the call stack, so it must happen on the logging thread.
+        record.getSourceClassName();
+        AsyncLogWriter.getInstance().submit(delegate, record, backpressure);
+    }
+
+    /**
+     * Wait until all records queued so far are written.
+     */
+    @Override
+    public void flush()
+    {
+        AsyncLogWriter.getInstance().drain();
+    }
+
+    /**
+     * Write all queued records and close the wrapped handler.
+     */
+    @Override
+    public void close()
+    {
+        AsyncLogWriter.getInstance().drain();
+        delegate.close();
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_ASYNC_BATCH_SIZE;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_ASYNC_QUEUE_SIZE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import com.github.cafeduke.jreportng.AsyncLogHandler.Backpressure;
+
+/**
+ * The queue and writer thread shared by all {@link AsyncLogHandler} objects.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class AsyncLogWriter implements Runnable
+{
+    /**
+     * Name of the writer thread.
+     */
+    private static final String THREAD_NAME = "JReportNG-AsyncLogWriter";
+
+    /**
+     * Reports the failure of a task, which has no handler of its own.
+     */
+    private static final ErrorManager ERROR_MANAGER = new ErrorManager();
+
+    /**
+     * True once the writer thread is started.
+     */
+    private static volatile boolean started = false;
+
+    /**
+     * Records waiting to be written.
+     */
+    private final BlockingQueue<Entry> queue;
+
+    /**
+     * Maximum number of entries written between flushes.
+     */
+    private final int batchSize;
+
+    /**
+     * Number of records discarded since the last drain.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The writer thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Create a writer and start its thread. Handlers share the writer of {@link #getInstance()}.
+     *
+     * @param queueSize Maximum number of entries waiting to be written.
+     * @param batchSize Maximum number of entries written between flushes.
+     */
+    AsyncLogWriter(int queueSize, int batchSize)
+    {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.thread = new Thread(this, THREAD_NAME);
+        this.thread.setDaemon(true);
+        this.thread.start();
+        started = true;
+    }
+
+    /**
+     * @return The writer, starting the writer thread on first use.
+     */
+    static AsyncLogWriter getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return True if the writer has been started.
+     */
+    static boolean isStarted()
+    {
+        return started;
+    }
+
+    /**
+     * Queue {@code record} to be published to {@code target}.
+     *
+     * @param target Handler that writes the record.
+     * @param record The record.
+     * @param backpressure Policy when the queue is full.
+     */
+    void submit(Handler target, LogRecord record, Backpressure backpressure)
+    {
+        Entry entry = new Entry(target, record, null, null);
+        switch (backpressure)
+        {
+            case DROP:
+                if (!queue.offer(entry))
+                    dropped.incrementAndGet();
+                break;
+
+            case CALLER_RUNS:
+                if (!queue.offer(entry))
+                    target.publish(record);
+                break;
+
+            default:
+                if (!put(entry))
+                    target.publish(record);
+        }
+    }
+
+    /**
+     * Run {@code task} on the writer thread once the records queued before it are written, without waiting for it. The
+     * task runs on the calling thread if it cannot be queued.
+     *
+     * @param task Task, such as closing a log once its records are written.
+     */
+    void execute(Runnable task)
+    {
+        if (Thread.currentThread() == thread || !put(new Entry(null, null, null, task)))
+            task.run();
+    }
+
+    /**
+     * Wait until every record queued before this call is written and flushed.
+     *
+     * @return Number of records discarded since the last drain.
+     */
+    long drain()
+    {
+        if (Thread.currentThread() != thread)
+        {
+            CountDownLatch latch = new CountDownLatch(1);
+            if (put(new Entry(null, null, latch, null)))
+            {
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return dropped.getAndSet(0);
+    }
+
+    /**
+     * Drain the queue in batches until the JVM exits.
+     */
+    @Override
+    public void run()
+    {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        Set<Handler> setTouched = Collections.newSetFromMap(new IdentityHashMap<Handler, Boolean>());
+        while (true)
+        {
+            try
+            {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                for (Entry currEntry : batch)
+                {
+                    if (currEntry.task != null)
+                    {
+                        run(currEntry.task);
+                    }
+                    else if (currEntry.barrier == null)
+                    {
+                        publish(currEntry.target, currEntry.record);
+                        setTouched.add(currEntry.target);
+                    }
+                    else
+                    {
+                        flush(setTouched);
+                        currEntry.barrier.countDown();
+                    }
+                }
+                flush(setTouched);
+                batch.clear();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publish {@code record} to {@code target}. A faulty handler must not stop the writer thread, records of other
+     * handlers and pending drains are still to be served.
+     *
+     * @param target Handler that writes the record.
+     * @param record The record.
+     */
+    private static void publish(Handler target, LogRecord record)
+    {
+        try
+        {
+            target.publish(record);
+        }
+        catch (RuntimeException e)
+        {
+            target.getErrorManager().error(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Run {@code task}. A failed task must not stop the writer thread.
+     *
+     * @param task The task.
+     */
+    private static void run(Runnable task)
+    {
+        try
+        {
+            task.run();
+        }
+        catch (RuntimeException e)
+        {
+            ERROR_MANAGER.error(null, e, ErrorManager.GENERIC_FAILURE);
+        }
+    }
+
+    /**
+     * Flush and forget the {@code setHandler}.
+     *
+     * @param setHandler Handlers written to since the last flush.
+     */
+    private static void flush(Set<Handler> setHandler)
+    {
+        for (Handler currHandler : setHandler)
+        {
+            try
+            {
+                currHandler.flush();
+            }
+            catch (RuntimeException e)
+            {
+                currHandler.getErrorManager().error(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+        setHandler.clear();
+    }
+
+    /**
+     * Put {@code entry} in the queue, waiting for space if necessary.
+     *
+     * @param entry The entry to be queued.
+     * @return False if the logging thread was interrupted and the entry was not queued.
+     */
+    private boolean put(Entry entry)
+    {
+        try
+        {
+            queue.put(entry);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A record to be published, a barrier to be released once the preceding records are flushed, or a task to be run
+     * once the preceding records are written.
+     */
+    private static final class Entry
+    {
+        final Handler target;
+
+        final LogRecord record;
+
+        final CountDownLatch barrier;
+
+        final Runnable task;
+
+        Entry(Handler target, LogRecord record, CountDownLatch barrier, Runnable task)
+        {
+            this.target = target;
+            this.record = record;
+            this.barrier = barrier;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Lazy holder so that the writer thread is started only when asynchronous logging is used.
+     */
+    private static final class Holder
+    {
+        static final AsyncLogWriter INSTANCE = new AsyncLogWriter(LOG_ASYNC_QUEUE_SIZE, LOG_ASYNC_BATCH_SIZE);
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that caps the size of a log written by the handler it wraps.
+ *
+ * <p>
+ * The cap is a number of bytes, a number of records or both, whichever is reached first. The byte cap applies to a
+ * {@link LogFileHandler} or {@link MappedLogFileHandler}, which report the bytes they have written. Once the cap is
+ * reached the {@link Mode} decides what happens to the records that follow. Neither mode reads back the log file.
+ *
+ * <p>
+ * The parts may be {@link ReopenableHandler} objects, which this handler releases between uses of the log. The cap
+ * and the records kept once it is reached belong to this handler, so the cap holds however often a part is released
+ * and opened again. The records kept are written only when the log is completed, see {@link #complete()}.
+ *
+ * <p>
+ * Enable using system properties {@code jreport.log.limit} and {@code jreport.log.limit.records}. See
+ * {@link ReportProperties#LOG_LIMIT_BYTES}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class BoundedLogHandler extends Handler
+{
+    /**
+     * What happens to the records that follow once the cap is reached.
+     */
+    public enum Mode
+    {
+        /**
+         * Keep the last records in a ring buffer. On close a row that tells how many records were left out is written,
+         * followed by the records in the ring buffer.
+         */
+        TRUNCATE,
+
+        /**
+         * Close the log and continue in a new part, opened by the {@link PartFactory}.
+         */
+        ROLL
+    }
+
+    /**
+     * Opens the handler that writes a part of the log.
+     */
+    public interface PartFactory
+    {
+        /**
+         * Open the handler for {@code part}.
+         *
+         * @param part Part number, 1 for the first part.
+         * @return Handler that writes the part.
+         * @throws IOException If the part could not be opened.
+         */
+        Handler open(int part) throws IOException;
+    }
+
+    /**
+     * Opens the parts of the log.
+     */
+    private final PartFactory factory;
+
+    /**
+     * Maximum number of bytes in a part, 0 for no limit.
+     */
+    private final long maxBytes;
+
+    /**
+     * Maximum number of records in a part, 0 for no limit.
+     */
+    private final long maxRecords;
+
+    /**
+     * Action once the cap is reached.
+     */
+    private final Mode mode;
+
+    /**
+     * The last records, once the cap is reached in {@link Mode#TRUNCATE} mode.
+     */
+    private final ArrayDeque<LogRecord> tail;
+
+    /**
+     * Maximum number of records in {@link #tail}.
+     */
+    private final int tailRecords;
+
+    /**
+     * Handler of the current part.
+     */
+    private Handler delegate;
+
+    /**
+     * Number of the current part.
+     */
+    private int part = 1;
+
+    /**
+     * Number of records published to the current part.
+     */
+    private long records = 0;
+
+    /**
+     * True once the cap is reached in {@link Mode#TRUNCATE} mode.
+     */
+    private boolean capped = false;
+
+    /**
+     * Number of records dropped from {@link #tail}.
+     */
+    private long elided = 0;
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a handler that caps the log written by the handlers of {@code factory}.
+     *
+     * @param factory Opens the handler of each part. Only the first part is opened in {@link Mode#TRUNCATE} mode.
+     * @param maxBytes Maximum number of bytes in a part, 0 for no limit.
+     * @param maxRecords Maximum number of records in a part, 0 for no limit.
+     * @param mode Action once the cap is reached.
+     * @param tailRecords Number of last records kept in {@link Mode#TRUNCATE} mode.
+     * @throws IOException If the first part could not be opened.
+     */
+    public BoundedLogHandler(PartFactory factory, long maxBytes, long maxRecords, Mode mode, int tailRecords) throws IOException
+    {
+        this(factory, maxBytes, maxRecords, mode, tailRecords, 1);
+    }
+
+    /**
+     * Create a handler that caps the log written by the handlers of {@code factory}, continuing a log that was closed
+     * in {@code firstPart}.
+     *
+     * @param factory Opens the handler of each part. Only the first part is opened in {@link Mode#TRUNCATE} mode.
+     * @param maxBytes Maximum number of bytes in a part, 0 for no limit.
+     * @param maxRecords Maximum number of records in a part, 0 for no limit.
+     * @param mode Action once the cap is reached.
+     * @param tailRecords Number of last records kept in {@link Mode#TRUNCATE} mode.
+     * @param firstPart Number of the part opened first.
+     * @throws IOException If the first part could not be opened.
+     */
+    public BoundedLogHandler(PartFactory factory, long maxBytes, long maxRecords, Mode mode, int tailRecords, int firstPart) throws IOException
+    {
+        this.factory = factory;
+        this.maxBytes = maxBytes;
+        this.maxRecords = maxRecords;
+        this.mode = mode;
+        this.tailRecords = Math.max(0, tailRecords);
+        this.tail = new ArrayDeque<>(Math.min(this.tailRecords, 1024));
+        this.part = Math.max(1, firstPart);
+        delegate = factory.open(part);
+        setLevel(delegate.getLevel());
+    }
+
+    /**
+     * @return Number of the part being written, 1 for the first part.
+     */
+    public synchronized int getPart()
+    {
+        return part;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+            return;
+
+        if (capped)
+        {
+            if (tailRecords == 0)
+            {
+                ++elided;
+                return;
+            }
+            if (tail.size() == tailRecords)
+            {
+                tail.poll();
+                ++elided;
+            }
+            tail.add(record);
+            return;
+        }
+
+        delegate.publish(record);
+        ++records;
+        if (!isFull())
+            return;
+
+        if (mode == Mode.TRUNCATE)
+        {
+            capped = true;
+            return;
+        }
+
+        try
+        {
+            Handler next = factory.open(part + 1);
+            delegate.close();
+            delegate = next;
+            ++part;
+            records = 0;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Keep writing the current part
+            reportError("Could not roll over to part " + (part + 1), e, ErrorManager.OPEN_FAILURE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush()
+    {
+        if (!closed)
+            delegate.flush();
+    }
+
+    /**
+     * Release the current part if it is a {@link ReopenableHandler}, closing its file. The records kept once the cap
+     * was reached stay in memory, and the next record opens the part again.
+     */
+    public synchronized void release()
+    {
+        if (!closed && delegate instanceof ReopenableHandler)
+            ((ReopenableHandler) delegate).release();
+    }
+
+    /**
+     * Write the records kept once the cap was reached, preceded by a row that tells how many records were left out,
+     * and release the current part. Records that follow are still capped, and are written by the next call.
+     */
+    public synchronized void complete()
+    {
+        if (closed)
+            return;
+
+        writeTail();
+        release();
+    }
+
+    /**
+     * Write the records kept once the cap was reached, preceded by a row that tells how many records were left out,
+     * and close the current part.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        writeTail();
+        delegate.close();
+    }
+
+    /**
+     * Write the records kept once the cap was reached to the current part, preceded by a row that tells how many
+     * records were left out, and forget them.
+     */
+    private void writeTail()
+    {
+        if (elided > 0)
+        {
+            LogRecord first = tail.peek();
+            LogRecord marker = new LogRecord(Level.WARNING, "\u2026 " + elided + " records elided \u2026");
+            marker.setParameters(new String[] { HtmlFormatter.STYLE_ROW_WARNING });
+            if (first != null)
+            {
+                marker.setMillis(first.getMillis());
+                marker.setSourceClassName(first.getSourceClassName());
+                marker.setSourceMethodName(first.getSourceMethodName());
+            }
+            else
+            {
+                marker.setSourceClassName(null);
+                marker.setSourceMethodName("");
+            }
+            delegate.publish(marker);
+        }
+
+        tail.forEach(delegate::publish);
+        tail.clear();
+        elided = 0;
+    }
+
+    /**
+     * @return True if the current part has reached the cap.
+     */
+    private boolean isFull()
+    {
+        if (maxRecords > 0 && records >= maxRecords)
+            return true;
+        return maxBytes > 0 && getSize(delegate) >= maxBytes;
+    }
+
+    /**
+     * @param handler A handler.
+     * @return Size of the file written by {@code handler}, 0 if not known or released.
+     */
+    private static long getSize(Handler handler)
+    {
+        if (handler instanceof ReopenableHandler)
+            handler = ((ReopenableHandler) handler).getDelegate();
+        if (handler instanceof LogFileHandler)
+            return ((LogFileHandler) handler).getSize();
+        if (handler instanceof MappedLogFileHandler)
+            return ((MappedLogFileHandler) handler).getSize();
+        if (handler instanceof ChunkedLogHandler)
+            return ((ChunkedLogHandler) handler).getSize();
+        return 0;
+    }
+}
@@ -0,0 +1,575 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.LINE_SEP;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_DATE_TIME_FORMAT;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_TESTCLASS_CSS;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * A handler that writes the log of a class for the log viewer, as chunks of records in JSON that the viewer loads on
+ * demand, so that a log of millions of records opens at once in the browser.
+ *
+ * <p>
+ * For the log file {@code <name>.html} the handler writes
+ * <ul>
+ *    <li>{@code <name>.html}, a small page that shows the log using {@code js/log-viewer.js}. The viewer renders only
+ *        the rows in view while scrolling and keeps a bounded number of chunks in memory.</li>
+ *    <li>{@code <name>.chunks/chunk-<n>.js}, the records {@code n * chunkRecords} onwards, wrapped in a call to
+ *        {@code jreportChunk(n, [...])} so that the page can load them as scripts, which works for a report opened from
+ *        the file system as well.</li>
+ *    <li>{@code <name>.chunks/index.js}, the number of records, rewritten as each chunk is completed.</li>
+ *    <li>{@code <name>.chunks/filter.js}, the numbers of the records of each thread and of each method, appended as
+ *        each chunk is completed. Each line is a call {@code jreportFilter(type, value, [start, length, ...])}, with
+ *        type {@code "thread"} or {@code "method"}, that adds runs of consecutive records to the value. The viewer
+ *        uses it to show the records of one thread or method, loading only the chunks they are in.</li>
+ * </ul>
+ * Each record is an array of the date, level, class, method, thread id, message, row style and stack trace.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.viewer}. See {@link ReportProperties#LOG_VIEWER}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class ChunkedLogHandler extends Handler
+{
+    /**
+     * Suffix of the chunk directory that replaces {@code .html} in the name of the log file.
+     */
+    public static final String CHUNK_DIR_SUFFIX = ".chunks";
+
+    /**
+     * Name of the index script in the chunk directory.
+     */
+    private static final String INDEX = "index.js";
+
+    /**
+     * Name of the filter script in the chunk directory.
+     */
+    private static final String FILTER = "filter.js";
+
+    /**
+     * End of a chunk script.
+     */
+    private static final String CHUNK_TAIL = "]);\n";
+
+    /**
+     * Number of records in a complete index script.
+     */
+    private static final Pattern PATTERN_RECORDS = Pattern.compile("\"records\":(\\d+)");
+
+    /**
+     * The page that shows the log.
+     */
+    private final File file;
+
+    /**
+     * Directory of the chunks.
+     */
+    private final File dirChunk;
+
+    /**
+     * Title of the log.
+     */
+    private final String title;
+
+    /**
+     * Maximum number of records in a chunk.
+     */
+    private final int chunkRecords;
+
+    /**
+     * Flush after every record.
+     */
+    private final boolean autoFlush;
+
+    /**
+     * Number of records in the log.
+     */
+    private long records;
+
+    /**
+     * Number of bytes in the chunks closed by this handler and, when appending, in the chunks written before.
+     */
+    private long closedSize = 0;
+
+    /**
+     * Stream to the chunk being written, null if no chunk is open.
+     */
+    private CountingOutputStream stream;
+
+    /**
+     * Writer to the chunk being written, null if no chunk is open.
+     */
+    private Writer writer;
+
+    /**
+     * Buffer into which a record is formatted.
+     */
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    /**
+     * Characters of {@link #buffer}, copied to be written without creating a string.
+     */
+    private char chars[] = new char[1024];
+
+    /**
+     * Records of each thread since the filter script was last written, by thread id.
+     */
+    private final Map<Integer, Runs> mapThreadRuns = new LinkedHashMap<>();
+
+    /**
+     * Records of each method since the filter script was last written, by class name and method name.
+     */
+    private final Map<String, Map<String, Runs>> mapMethodRuns = new LinkedHashMap<>();
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a handler for the viewer log {@code file}.
+     *
+     * @param file The page that shows the log, {@code <name>.html}.
+     * @param title Title of the log.
+     * @param append Continue the log if it exists, replace it otherwise.
+     * @param chunkRecords Maximum number of records in a chunk.
+     * @param autoFlush Flush after every record.
+     * @throws IOException If the log could not be opened.
+     */
+    public ChunkedLogHandler(File file, String title, boolean append, int chunkRecords, boolean autoFlush) throws IOException
+    {
+        if (chunkRecords <= 0)
+            throw new IllegalArgumentException("Records in a chunk must be positive: " + chunkRecords);
+
+        this.file = file;
+        this.title = title;
+        this.chunkRecords = chunkRecords;
+        this.autoFlush = autoFlush;
+        this.dirChunk = getChunkDir(file);
+
+        dirChunk.mkdirs();
+        records = append ? readRecords() : 0;
+        if (!append)
+            deleteChunks();
+        for (long chunk = 0; chunk * chunkRecords < records; ++chunk)
+            closedSize += new File(dirChunk, "chunk-" + chunk + ".js").length();
+        writeShell();
+        writeIndex(false);
+    }
+
+    /**
+     * @param file The page that shows a viewer log, {@code <name>.html}.
+     * @return The directory of its chunks, {@code <name>.chunks}.
+     */
+    public static File getChunkDir(File file)
+    {
+        String name = file.getName();
+        if (name.endsWith(".html"))
+            name = name.substring(0, name.length() - ".html".length());
+        return new File(file.getParentFile(), name + CHUNK_DIR_SUFFIX);
+    }
+
+    /**
+     * @return The page that shows the log.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return Number of bytes of chunks of the log, including those written before when appending. Bytes still
+     *         buffered are not counted.
+     */
+    public synchronized long getSize()
+    {
+        return closedSize + ((stream == null) ? 0 : stream.count);
+    }
+
+    /**
+     * @return Number of records in the log.
+     */
+    public synchronized long getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+            return;
+
+        buffer.setLength(0);
+        try
+        {
+            format(record, buffer);
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try
+        {
+            if (writer == null)
+                openChunk();
+            else
+                writer.write(',');
+            if (chars.length < buffer.length())
+                chars = new char[Math.max(buffer.length(), 2 * chars.length)];
+            buffer.getChars(0, buffer.length(), chars, 0);
+            writer.write(chars, 0, buffer.length());
+            addRuns(record);
+            ++records;
+            if (records % chunkRecords == 0)
+            {
+                closeChunk();
+                writeFilter();
+                writeIndex(false);
+            }
+            else if (autoFlush)
+            {
+                writer.flush();
+            }
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush()
+    {
+        if (closed || writer == null)
+            return;
+
+        try
+        {
+            writer.flush();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * Complete the chunk being written and the index, so that the viewer shows every record.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        try
+        {
+            closeChunk();
+            writeFilter();
+            writeIndex(true);
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Open the chunk of the next record. A chunk that was completed with fewer than {@link #chunkRecords} records, by a
+     * handler closed before, is continued.
+     *
+     * @throws IOException If the chunk could not be opened.
+     */
+    private void openChunk() throws IOException
+    {
+        long chunk = records / chunkRecords;
+        File fileChunk = new File(dirChunk, "chunk-" + chunk + ".js");
+        boolean resume = (records % chunkRecords != 0) && fileChunk.length() > 0;
+        if (resume)
+        {
+            try (FileChannel channel = FileChannel.open(fileChunk.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                channel.truncate(LogFileHandler.stripTail(channel, channel.size(), CHUNK_TAIL));
+            }
+        }
+
+        stream = new CountingOutputStream(new FileOutputStream(fileChunk, resume));
+        writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        if (resume)
+            writer.write(',');
+        else
+            writer.write("jreportChunk(" + chunk + ",[\n");
+    }
+
+    /**
+     * Close the chunk being written, if any.
+     *
+     * @throws IOException If the chunk could not be written.
+     */
+    private void closeChunk() throws IOException
+    {
+        if (writer == null)
+            return;
+
+        try
+        {
+            writer.write(CHUNK_TAIL);
+            writer.close();
+        }
+        finally
+        {
+            closedSize += stream.count;
+            writer = null;
+            stream = null;
+        }
+    }
+
+    /**
+     * Add the number of the record being written to the runs of its thread and method.
+     *
+     * @param record The record.
+     */
+    private void addRuns(LogRecord record)
+    {
+        mapThreadRuns.computeIfAbsent(record.getThreadID(), (k) -> new Runs()).add(records);
+        String className = HtmlFormatter.getDisplayClassName(record.getSourceClassName());
+        String methodName = String.valueOf(record.getSourceMethodName());
+        mapMethodRuns.computeIfAbsent(className, (k) -> new LinkedHashMap<>()).computeIfAbsent(methodName, (k) -> new Runs()).add(records);
+    }
+
+    /**
+     * Append the runs of each thread and method since the last call to the filter script.
+     *
+     * @throws IOException If the filter could not be written.
+     */
+    private void writeFilter() throws IOException
+    {
+        if (mapThreadRuns.isEmpty())
+            return;
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Integer, Runs> currEntry : mapThreadRuns.entrySet())
+            currEntry.getValue().appendCall(builder, "thread", String.valueOf(currEntry.getKey()));
+        for (Map.Entry<String, Map<String, Runs>> currClass : mapMethodRuns.entrySet())
+            for (Map.Entry<String, Runs> currMethod : currClass.getValue().entrySet())
+                currMethod.getValue().appendCall(builder, "method", currClass.getKey() + "." + currMethod.getKey());
+        mapThreadRuns.clear();
+        mapMethodRuns.clear();
+
+        Path pathFilter = new File(dirChunk, FILTER).toPath();
+        Files.write(pathFilter, builder.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replace the index script with the number of records in the chunks that are complete.
+     *
+     * @param complete True if the log is complete, the viewer then stops checking for more records.
+     * @throws IOException If the index could not be written.
+     */
+    private void writeIndex(boolean complete) throws IOException
+    {
+        long completeRecords = (writer == null) ? records : records - records % chunkRecords;
+        String index = "jreportIndex({\"records\":" + completeRecords + ",\"chunkSize\":" + chunkRecords + ",\"complete\":" + complete + "});\n";
+        Path pathIndex = new File(dirChunk, INDEX).toPath();
+        Path pathTemp = ResourceExtractor.getTempPath(pathIndex);
+        try
+        {
+            Files.write(pathTemp, index.getBytes(StandardCharsets.UTF_8));
+            ResourceExtractor.move(pathTemp, pathIndex);
+        }
+        finally
+        {
+            Files.deleteIfExists(pathTemp);
+        }
+    }
+
+    /**
+     * @return Number of records in the index script of a log written before, 0 if there is none.
+     * @throws IOException If the index could not be read.
+     */
+    private long readRecords() throws IOException
+    {
+        File fileIndex = new File(dirChunk, INDEX);
+        if (!fileIndex.isFile())
+            return 0;
+
+        Matcher matcher = PATTERN_RECORDS.matcher(new String(Files.readAllBytes(fileIndex.toPath()), StandardCharsets.UTF_8));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Delete the chunks of a log written before.
+     */
+    private void deleteChunks()
+    {
+        File chunk[] = dirChunk.listFiles();
+        if (chunk == null)
+            return;
+
+        for (File currChunk : chunk)
+            currChunk.delete();
+    }
+
+    /**
+     * Write the page that shows the log.
+     *
+     * @throws IOException If the page could not be written.
+     */
+    private void writeShell() throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version='1.0' encoding='utf-8' ?>" + LINE_SEP);
+        builder.append("<!doctype html>" + LINE_SEP);
+        builder.append("<html>" + LINE_SEP);
+        builder.append("<head>" + LINE_SEP);
+        builder.append("   <meta http-equiv='Content-Type' content='text/html;charset=utf-8' />" + LINE_SEP);
+        builder.append("   <link rel='stylesheet' type='text/css' href='" + LOG_TESTCLASS_CSS + "' />" + LINE_SEP);
+        builder.append("   <link rel='stylesheet' type='text/css' href='css/log-viewer.css' />" + LINE_SEP);
+        builder.append("   <script type='text/javascript' src='js/log-viewer.js'></script>" + LINE_SEP);
+        builder.append("</head>" + LINE_SEP);
+        builder.append("<body>" + LINE_SEP);
+        builder.append("<h1>" + title + "</h1>" + LINE_SEP);
+        builder.append("<hr>" + LINE_SEP);
+        builder.append("<div id='logViewer' data-chunks='" + dirChunk.getName() + "'></div>" + LINE_SEP);
+        builder.append("</body>" + LINE_SEP);
+        builder.append("</html>" + LINE_SEP);
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append {@code record} as a JSON array followed by a new line.
+     *
+     * @param record The record.
+     * @param builder Buffer to append to.
+     */
+    private static void format(LogRecord record, StringBuilder builder)
+    {
+        builder.append("[\"");
+        LOG_DATE_TIME_FORMAT.formatTo(Instant.ofEpochMilli(record.getMillis()), builder);
+        builder.append("\",\"").append(record.getLevel().getName()).append("\",");
+        NdjsonFormatter.appendString(builder, HtmlFormatter.getDisplayClassName(record.getSourceClassName())).append(',');
+        NdjsonFormatter.appendString(builder, record.getSourceMethodName()).append(',');
+        builder.append(record.getThreadID()).append(',');
+        NdjsonFormatter.appendString(builder, record.getMessage()).append(',');
+        NdjsonFormatter.appendString(builder, getRowStyle(record)).append(',');
+        Throwable thrown = record.getThrown();
+        NdjsonFormatter.appendString(builder, (thrown == null) ? null : ExceptionUtils.getStackTrace(thrown));
+        builder.append("]\n");
+    }
+
+    /**
+     * @param record The record.
+     * @return Style class of the message row, as used by {@link HtmlFormatter}, null for none.
+     */
+    private static String getRowStyle(LogRecord record)
+    {
+        Object param[] = record.getParameters();
+        if (param != null && param.length > 0)
+            return String.valueOf(param[0]);
+
+        Level level = record.getLevel();
+        if (level == Level.SEVERE)
+            return HtmlFormatter.STYLE_ROW_FAILURE;
+        if (level == Level.WARNING)
+            return HtmlFormatter.STYLE_ROW_WARNING;
+        return null;
+    }
+
+    /**
+     * Runs of consecutive record numbers, as pairs of the first record and the number of records.
+     */
+    private static final class Runs
+    {
+        private long run[] = new long[8];
+        private int size = 0;
+
+        void add(long record)
+        {
+            if (size > 0 && run[size - 2] + run[size - 1] == record)
+            {
+                ++run[size - 1];
+                return;
+            }
+            if (size == run.length)
+                run = Arrays.copyOf(run, 2 * size);
+            run[size++] = record;
+            run[size++] = 1;
+        }
+
+        void appendCall(StringBuilder builder, String type, String value)
+        {
+            builder.append("jreportFilter(\"").append(type).append("\",");
+            NdjsonFormatter.appendString(builder, value).append(",[");
+            for (int i = 0; i < size; ++i)
+            {
+                if (i > 0)
+                    builder.append(',');
+                builder.append(run[i]);
+            }
+            builder.append("]);\n");
+        }
+    }
+
+    /**
+     * A stream that counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in milliseconds, for percentiles of test durations.
+ *
+ * Durations below {@value #LINEAR_LIMIT} have a bucket each. Every larger power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so that a percentile is off by at most 1/{@value #SUB_BUCKETS} of the
+ * duration, whatever its magnitude, in a fixed array of counts.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class DurationHistogram
+{
+   /**
+    * Number of buckets for each power of two.
+    */
+   private static final int SUB_BUCKETS = 8;
+
+   /**
+    * log2 of {@link #SUB_BUCKETS}.
+    */
+   private static final int SUB_BUCKET_BITS = 3;
+
+   /**
+    * Durations below this have a bucket each.
+    */
+   private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+   /**
+    * log2 of {@link #LINEAR_LIMIT}.
+    */
+   private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+
+   /**
+    * Number of buckets, enough for any non-negative long.
+    */
+   private static final int BUCKETS = LINEAR_LIMIT + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray (BUCKETS);
+
+   private final LongAdder count = new LongAdder ();
+
+   private final LongAdder total = new LongAdder ();
+
+   private final AtomicLong max = new AtomicLong ();
+
+   /**
+    * Record a duration.
+    *
+    * @param millis Duration in milliseconds, negative values are recorded as 0.
+    */
+   void record (long millis)
+   {
+      millis = Math.max(0, millis);
+      counts.incrementAndGet(getBucket(millis));
+      count.increment();
+      total.add(millis);
+      if (millis > max.get())
+         max.accumulateAndGet(millis, Math::max);
+   }
+
+   /**
+    * @return Number of recorded durations.
+    */
+   long getCount ()
+   {
+      return count.sum();
+   }
+
+   /**
+    * @return Sum of the recorded durations in milliseconds.
+    */
+   long getTotal ()
+   {
+      return total.sum();
+   }
+
+   /**
+    * @return Longest recorded duration in milliseconds.
+    */
+   long getMax ()
+   {
+      return max.get();
+   }
+
+   /**
+    * @return Number of recorded durations in each bucket, by bucket index. Empty buckets are left out.
+    */
+   Map<Integer,Long> getBuckets ()
+   {
+      Map<Integer,Long> mapBucket = new TreeMap<> ();
+      for (int i = 0; i < BUCKETS; ++i)
+      {
+         long bucketCount = counts.get(i);
+         if (bucketCount > 0)
+            mapBucket.put(i, bucketCount);
+      }
+      return mapBucket;
+   }
+
+   /**
+    * Add the durations recorded by another histogram, such as the histogram of another JVM.
+    *
+    * @param mapBucket Number of recorded durations in each bucket, by bucket index, see {@link #getBuckets()}.
+    * @param total Sum of the recorded durations in milliseconds.
+    * @param max Longest recorded duration in milliseconds.
+    * @throws IllegalArgumentException If a bucket index is out of range.
+    */
+   void merge (Map<Integer,Long> mapBucket, long total, long max)
+   {
+      for (Map.Entry<Integer,Long> currEntry : mapBucket.entrySet())
+      {
+         int bucket = currEntry.getKey();
+         if (bucket < 0 || bucket >= BUCKETS)
+            throw new IllegalArgumentException ("Bucket out of range: " + bucket);
+         counts.addAndGet(bucket, currEntry.getValue());
+         count.add(currEntry.getValue());
+      }
+      this.total.add(total);
+      this.max.accumulateAndGet(max, Math::max);
+   }
+
+   /**
+    * The duration below which {@code percent} percent of the recorded durations fall.
+    *
+    * @param percent Percentile between 0 and 100.
+    * @return The middle of the bucket that holds the percentile, capped at {@link #getMax()}. 0 if nothing is recorded.
+    */
+   long getPercentile (double percent)
+   {
+      long snapshot[] = new long[BUCKETS];
+      long recorded = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+         recorded += (snapshot[i] = counts.get(i));
+      if (recorded == 0)
+         return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(recorded * percent / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+      {
+         seen += snapshot[i];
+         if (seen >= rank)
+            return Math.min(getMax(), getBucketMiddle(i));
+      }
+      return getMax();
+   }
+
+   /**
+    * @param millis Non-negative duration.
+    * @return Index of the bucket for {@code millis}.
+    */
+   static int getBucket (long millis)
+   {
+      if (millis < LINEAR_LIMIT)
+         return (int) millis;
+
+      int exponent = 63 - Long.numberOfLeadingZeros(millis);
+      int sub = (int) (millis >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+   }
+
+   /**
+    * @param bucket Index of a bucket.
+    * @return The middle of the durations in {@code bucket}.
+    */
+   static long getBucketMiddle (int bucket)
+   {
+      if (bucket < LINEAR_LIMIT)
+         return bucket;
+
+      int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+      int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+      long width = 1L << (exponent - SUB_BUCKET_BITS);
+      long lower = (1L << exponent) + sub * width;
+      return lower + width / 2;
+   }
+}
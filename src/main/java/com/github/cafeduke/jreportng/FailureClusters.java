@@ -0,0 +1,344 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+/**
+ * Failures of the test methods and configuration methods of the run, grouped by cause, so that a run with thousands
+ * of failures can be triaged from a page that lists each cause once with the classes and methods it failed.
+ *
+ * A failure is grouped by the type of its root cause and the top {@link #TOP_FRAMES} frames of the root cause that
+ * are not in TestNG, JUnit, reflection or the JDK, with generated class names such as lambdas and proxies normalized.
+ * Messages are left out, so failures of the same assertion with different values are grouped. Each failure is
+ * recorded with a map lookup and a few atomic additions, on the thread that completed the test.
+ *
+ * The groups are saved in the report fragment of a JVM and added up across fragments, see {@link ReportMerger}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class FailureClusters
+{
+   /**
+    * Number of frames of the root cause that identify a group.
+    */
+   private static final int TOP_FRAMES = 3;
+
+   /**
+    * Causes beyond this depth are not followed to the root cause, which also guards against a cycle of causes.
+    */
+   private static final int MAX_CAUSE_DEPTH = 16;
+
+   /**
+    * Length beyond which the message shown for a group is cut.
+    */
+   private static final int MAX_MESSAGE_LENGTH = 500;
+
+   /**
+    * Frames of classes with these prefixes do not identify a group.
+    */
+   private static final String FRAMEWORK_PREFIX[] = {"org.testng.", "org.junit.", "junit.", "java.", "javax.", "jdk.", "sun.", "com.sun."};
+
+   /**
+    * Numbers that generated lambda and proxy classes differ by between JVMs, as in
+    * {@code Test$$Lambda$12/0x0000000800c0b000} or {@code com.sun.proxy.$Proxy7}.
+    */
+   private static final Pattern GENERATED_SUFFIX = Pattern.compile("(\\$\\$Lambda|\\$Proxy)[$/0-9a-fx]*[0-9][0-9a-fx]*$");
+
+   /**
+    * Prefix of the fragment properties of the groups.
+    */
+   private static final String PREFIX_FAILURE = "failure.";
+
+   /**
+    * Groups by {@code <type>\n<frames>}.
+    */
+   private static final ConcurrentMap<String,Cluster> MAP_CLUSTER = new ConcurrentHashMap<> ();
+
+   private FailureClusters ()
+   {
+
+   }
+
+   /**
+    * Record a failed test method or configuration method.
+    *
+    * @param result Result of the failed method.
+    */
+   static void record (ITestResult result)
+   {
+      Throwable root = getRootCause (result.getThrowable());
+      String type = (root == null) ? "Unknown cause" : root.getClass().getName();
+      String frames = (root == null) ? "" : getTopFrames (root);
+      Cluster cluster = MAP_CLUSTER.computeIfAbsent(getKey (type, frames), (k) -> new Cluster (type, frames, getMessage (root)));
+
+      ITestNGMethod method = result.getMethod();
+      String className = method.getRealClass().getName();
+      cluster.add(className, method.getMethodName(), !method.isTest(), 1);
+   }
+
+   /**
+    * @return Number of groups.
+    */
+   static int getClusterCount ()
+   {
+      return MAP_CLUSTER.size();
+   }
+
+   /**
+    * @return Number of failures in all groups.
+    */
+   static long getFailureCount ()
+   {
+      long count = 0;
+      for (Cluster currCluster : MAP_CLUSTER.values())
+         count += currCluster.count.sum();
+      return count;
+   }
+
+   /**
+    * Save the groups in a report fragment, as {@code failure.<n>.type}, {@code failure.<n>.frames},
+    * {@code failure.<n>.message} and a {@code failure.<n>.member.<m>} of {@code <count> <test|config> <class> <method>}
+    * for each method that failed.
+    *
+    * @param fragment The report fragment.
+    */
+   static void exportTo (Properties fragment)
+   {
+      int n = 0;
+      for (Cluster currCluster : MAP_CLUSTER.values())
+      {
+         String prefix = PREFIX_FAILURE + n++ + ".";
+         fragment.setProperty(prefix + "type", currCluster.type);
+         fragment.setProperty(prefix + "frames", currCluster.frames);
+         fragment.setProperty(prefix + "message", currCluster.message);
+         int m = 0;
+         for (Member currMember : currCluster.mapMember.values())
+            fragment.setProperty(prefix + "member." + m++, currMember.count.sum() + " " + (currMember.configuration ? "config" : "test") + " " + currMember.className + " " + currMember.methodName);
+      }
+   }
+
+   /**
+    * Add the groups saved in a report fragment.
+    *
+    * @param fragment The report fragment.
+    * @throws IllegalArgumentException If a group is not valid.
+    */
+   static void importFrom (Properties fragment)
+   {
+      for (int n = 0; fragment.getProperty(PREFIX_FAILURE + n + ".type") != null; ++n)
+      {
+         String prefix = PREFIX_FAILURE + n + ".";
+         String type = fragment.getProperty(prefix + "type");
+         String frames = fragment.getProperty(prefix + "frames", "");
+         String message = fragment.getProperty(prefix + "message", "");
+         Cluster cluster = MAP_CLUSTER.computeIfAbsent(getKey (type, frames), (k) -> new Cluster (type, frames, message));
+
+         String value;
+         for (int m = 0; (value = fragment.getProperty(prefix + "member." + m)) != null; ++m)
+         {
+            String field[] = value.split(" ");
+            if (field.length != 4)
+               throw new IllegalArgumentException ("Invalid failure member " + prefix + "member." + m + "=" + value);
+            cluster.add(field[2], field[3], field[1].equals("config"), Long.parseLong(field[0]));
+         }
+      }
+   }
+
+   /**
+    * Append the failure groups page, largest group first.
+    *
+    * @param builder Buffer to append to.
+    * @param live True if the run is in progress.
+    */
+   static void appendHtml (StringBuilder builder, boolean live)
+   {
+      List<Cluster> listCluster = new ArrayList<> (MAP_CLUSTER.values());
+      Collections.sort(listCluster, Comparator.comparingLong((Cluster c) -> -c.count.sum()).thenComparing(c -> c.type));
+      long failures = 0;
+      for (Cluster currCluster : listCluster)
+         failures += currCluster.count.sum();
+
+      builder.append("<?xml version='1.0' encoding='utf-8' ?>" + LINE_SEP);
+      builder.append("<!doctype html>" + LINE_SEP);
+      builder.append("<html>" + LINE_SEP);
+      builder.append("<head>" + LINE_SEP);
+      builder.append("   <meta http-equiv='Content-Type' content='text/html;charset=utf-8' />" + LINE_SEP);
+      builder.append("   <link rel='stylesheet' type='text/css' href='" + DIR_REPORT_LOG_HOME.getName() + "/" + LOG_TESTCLASS_CSS + "' />" + LINE_SEP);
+      builder.append("</head>" + LINE_SEP);
+      builder.append("<body>" + LINE_SEP);
+      builder.append("<h1>Failure Groups</h1>" + LINE_SEP);
+      builder.append("<hr>" + LINE_SEP);
+      builder.append("<p>" + failures + " failure(s) in " + listCluster.size() + " group(s)" + (live ? ", run in progress" : "") + "</p>" + LINE_SEP);
+
+      for (Cluster currCluster : listCluster)
+      {
+         builder.append("<table class='tableLog'>" + LINE_SEP);
+         builder.append("<tr class='logRowHeading'><th colspan='4'>" + currCluster.count.sum() + " x " + HtmlFormatter.escapeHtml (currCluster.type) + "</th></tr>" + LINE_SEP);
+         builder.append("<tr class='logRowFailure'><td colspan='4'>" + HtmlFormatter.escapeHtml (currCluster.message).replace("\n", "<br>") + "</td></tr>" + LINE_SEP);
+         if (!currCluster.frames.isEmpty())
+            builder.append("<tr class='logMetaData'><td colspan='4'>" + HtmlFormatter.escapeHtml (currCluster.frames).replace("\n", "<br>") + "</td></tr>" + LINE_SEP);
+
+         List<Member> listMember = new ArrayList<> (currCluster.mapMember.values());
+         Collections.sort(listMember, Comparator.comparing((Member m) -> m.className).thenComparing(m -> m.methodName));
+         for (Member currMember : listMember)
+         {
+            builder.append("<tr><td class='noWrapColumn'><a href='" + DIR_REPORT_LOG_HOME.getName() + "/" + currMember.className + LOG_FILE_EXTENSION + "'>" + getDisplayPackageName (currMember.className) + "</a></td>");
+            builder.append("<td>" + currMember.methodName + "</td>");
+            builder.append("<td>" + (currMember.configuration ? "Configuration" : "Test") + "</td>");
+            builder.append("<td>" + currMember.count.sum() + "</td></tr>" + LINE_SEP);
+         }
+         builder.append("</table>" + LINE_SEP);
+      }
+
+      builder.append("</body>" + LINE_SEP);
+      builder.append("</html>" + LINE_SEP);
+   }
+
+   /**
+    * @param root The root cause of a failure.
+    * @return Key of the group of the failure.
+    */
+   static String getKey (Throwable root)
+   {
+      return getKey (root.getClass().getName(), getTopFrames (root));
+   }
+
+   /**
+    * @param type Type of the root cause.
+    * @param frames Top frames of the root cause, one per line.
+    * @return Key of the group.
+    */
+   private static String getKey (String type, String frames)
+   {
+      return type + "\n" + frames;
+   }
+
+   /**
+    * @param throwable A throwable, may be null.
+    * @return The innermost cause of {@code throwable}, null if {@code throwable} is null.
+    */
+   static Throwable getRootCause (Throwable throwable)
+   {
+      Map<Throwable,Boolean> mapSeen = new IdentityHashMap<> ();
+      Throwable root = throwable;
+      while (root != null && root.getCause() != null && mapSeen.size() < MAX_CAUSE_DEPTH && mapSeen.put(root, Boolean.TRUE) == null)
+         root = root.getCause();
+      return root;
+   }
+
+   /**
+    * @param root The root cause.
+    * @return The top frames of {@code root} that identify its group, one per line. The top frames of all if every
+    *         frame is in a framework.
+    */
+   private static String getTopFrames (Throwable root)
+   {
+      StackTraceElement frame[] = root.getStackTrace();
+      List<String> listFrame = new ArrayList<> ();
+      for (StackTraceElement currFrame : frame)
+      {
+         if (listFrame.size() < TOP_FRAMES && !isFrameworkFrame (currFrame))
+            listFrame.add(normalize (currFrame));
+      }
+      for (int i = 0; listFrame.isEmpty() && i < Math.min(TOP_FRAMES, frame.length); ++i)
+         listFrame.add(normalize (frame[i]));
+      return String.join("\n", listFrame);
+   }
+
+   /**
+    * @param frame A stack frame.
+    * @return True if the frame is in TestNG, JUnit, reflection or the JDK.
+    */
+   private static boolean isFrameworkFrame (StackTraceElement frame)
+   {
+      String className = frame.getClassName();
+      for (String currPrefix : FRAMEWORK_PREFIX)
+         if (className.startsWith(currPrefix))
+            return true;
+      return false;
+   }
+
+   /**
+    * @param frame A stack frame.
+    * @return The frame as {@code class.method(file:line)}, with the numbers of generated lambda and proxy classes
+    *         removed, as they differ between JVMs.
+    */
+   private static String normalize (StackTraceElement frame)
+   {
+      String className = frame.getClassName();
+      if (className.indexOf('$') >= 0)
+         className = GENERATED_SUFFIX.matcher(className).replaceAll("$1");
+      String location = (frame.getFileName() == null) ? "Unknown Source" : frame.getFileName() + ":" + frame.getLineNumber();
+      return className + "." + frame.getMethodName() + "(" + location + ")";
+   }
+
+   /**
+    * @param root The root cause, may be null.
+    * @return Its message, cut to {@link #MAX_MESSAGE_LENGTH} characters, empty if none.
+    */
+   private static String getMessage (Throwable root)
+   {
+      String message = (root == null) ? null : root.getMessage();
+      if (message == null)
+         return "";
+      return (message.length() > MAX_MESSAGE_LENGTH) ? message.substring(0, MAX_MESSAGE_LENGTH) + " ..." : message;
+   }
+
+   /**
+    * Failures with the same cause.
+    */
+   private static final class Cluster
+   {
+      final String type;
+      final String frames;
+      final String message;
+      final LongAdder count = new LongAdder ();
+      final ConcurrentMap<String,Member> mapMember = new ConcurrentHashMap<> ();
+
+      Cluster (String type, String frames, String message)
+      {
+         this.type = type;
+         this.frames = frames;
+         this.message = message;
+      }
+
+      void add (String className, String methodName, boolean configuration, long count)
+      {
+         String key = className + " " + methodName + " " + configuration;
+         mapMember.computeIfAbsent(key, (k) -> new Member (className, methodName, configuration)).count.add(count);
+         this.count.add(count);
+      }
+   }
+
+   /**
+    * A method that failed with the cause of a group.
+    */
+   private static final class Member
+   {
+      final String className;
+      final String methodName;
+      final boolean configuration;
+      final LongAdder count = new LongAdder ();
+
+      Member (String className, String methodName, boolean configuration)
+      {
+         this.className = className;
+         this.methodName = methodName;
+         this.configuration = configuration;
+      }
+   }
+}
@@ -1,12 +1,16 @@
 package com.github.cafeduke.jreportng;
 
 import static com.github.cafeduke.jreportng.ReportProperties.LINE_SEP;
-import static com.github.cafeduke.jreportng.ReportProperties.LOG_DATE_FORMAT;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_DATE_TIME_FORMAT;
 import static com.github.cafeduke.jreportng.ReportProperties.LOG_TESTCLASS_CSS;
-import static com.github.cafeduke.jreportng.ReportProperties.getDisplayPackageName;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_TRACE_DEDUP;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -16,10 +20,15 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
  * This class is used to format log as HTML.
- * 
+ *
+ * <p>
+ * Rows are appended straight into a {@link StringBuilder}. {@link #format(LogRecord)} uses a buffer that is reused by
+ * the calling thread, while {@link #format(LogRecord, StringBuilder)} lets a handler supply its own buffer and avoid
+ * the intermediate {@code String} altogether. The formatter holds no mutable state and is safe for concurrent use.
+ *
  * @author Raghunandan.Seshadri
  */
-public class HtmlFormatter extends Formatter
+public class HtmlFormatter extends Formatter implements AppendableFormatter
 {
     /**
      * Table row style for success.
@@ -46,24 +55,61 @@ public class HtmlFormatter extends Formatter
      */
     public static final String STYLE_ROW_METADATA = "logMetaData";
 
+    /**
+     * Initial capacity of the per thread buffer.
+     */
+    private static final int BUFFER_CAPACITY = 1024;
+
+    /**
+     * A per thread buffer larger than this is discarded after use, so that one huge record does not pin memory.
+     */
+    private static final int BUFFER_CAPACITY_MAX = 64 * 1024;
+
+    /**
+     * Buffer reused by {@link #format(LogRecord)} on each thread.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(BUFFER_CAPACITY));
+
+    /**
+     * Class name as displayed in the log, by fully qualified class name.
+     */
+    private static final Map<String, String> DISPLAY_CLASS_NAME = new ConcurrentHashMap<>();
+
     /**
      * Date formatter
      */
-    private SimpleDateFormat formatter = LOG_DATE_FORMAT;
+    private final DateTimeFormatter formatter = LOG_DATE_TIME_FORMAT;
 
     /**
      * HTML page title
      */
     private String title = "";
 
+    /**
+     * Store of the stack traces rendered so far, null to render every stack trace.
+     */
+    private final TraceStore traceStore;
+
     /**
      * Create a Html Formatter with <b>title</b>
-     * 
+     *
      * @param title HTML title.
      */
     public HtmlFormatter(String title)
+    {
+        this(title, LOG_TRACE_DEDUP ? TraceStore.getDefault() : null);
+    }
+
+    /**
+     * Create a Html Formatter with <b>title</b> that renders each distinct stack trace once into {@code traceStore}.
+     *
+     * @param title HTML title.
+     * @param traceStore Store of the stack traces, null to render every stack trace.
+     */
+    public HtmlFormatter(String title, TraceStore traceStore)
     {
         this.title = title;
+        this.traceStore = traceStore;
     }
 
     /**
@@ -71,7 +117,16 @@ public class HtmlFormatter extends Formatter
      */
     public String getDateTimeString()
     {
-        return formatter.format(new Date());
+        return getDateTimeString(System.currentTimeMillis());
+    }
+
+    /**
+     * @param millis Time in milliseconds since epoch.
+     * @return The given time in access log format.
+     */
+    public String getDateTimeString(long millis)
+    {
+        return formatter.format(Instant.ofEpochMilli(millis));
     }
 
     /**
@@ -80,38 +135,63 @@ public class HtmlFormatter extends Formatter
     @Override
     public String format(LogRecord record)
     {
-        StringBuilder builder = new StringBuilder();
-        String styleColumn[] = getColumnStyles(record);
-        String column[] = getColumns(record);
+        StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+        format(record, builder);
+        String text = builder.toString();
+        if (builder.capacity() > BUFFER_CAPACITY_MAX)
+            BUFFER.remove();
+        return text;
+    }
 
-        int indexMessage = column.length - 1;
-        String message = column[indexMessage];
+    /**
+     * Append the HTML rows for {@code record} to {@code builder}.
+     *
+     * @param record LogRecord used by Logger.
+     * @param builder Buffer to which the rows are appended.
+     */
+    @Override
+    public void format(LogRecord record, StringBuilder builder)
+    {
+        Level level = record.getLevel();
+        int threadId = record.getThreadID();
 
-        String attribName = " name='Thread-" + record.getThreadID() + "'";
+        /* Meta-data row: Date, Level, Class, Method, ThreadID */
+        appendRowStart(builder, threadId).append(" class='").append(STYLE_ROW_METADATA).append("'>");
 
-        builder.append("<tr" + attribName + getMetaDataRowStyleClass() + ">");
-        for (int i = 0; i < column.length - 1; ++i)
-        {
-            String currColumnStyle = styleColumn[i].equals("") ? "" : " " + styleColumn[i];
-            builder.append("<td" + currColumnStyle + ">" + column[i] + "</td>");
-        }
-        builder.append("</tr>" + LINE_SEP);
+        builder.append("<td class='noWrapColumn'>");
+        formatter.formatTo(Instant.ofEpochMilli(record.getMillis()), builder);
+        builder.append("</td>");
 
-        builder.append("<tr" + attribName + getRowStyleClass(record) + ">");
-        builder.append("<td colspan='" + indexMessage + "' " + styleColumn[indexMessage] + ">" + message + "</td>");
-        builder.append("</tr>" + LINE_SEP);
+        builder.append("<td");
+        appendColumnStyle(builder, level);
+        builder.append('>').append(level.getName()).append("</td>");
+
+        builder.append("<td>").append(getDisplayClassName(record.getSourceClassName())).append("</td>");
+        builder.append("<td>").append(record.getSourceMethodName()).append("</td>");
+        builder.append("<td>").append(threadId).append("</td>");
+        builder.append("</tr>").append(LINE_SEP);
+
+        /* Message row */
+        appendRowStart(builder, threadId);
+        appendRowStyle(builder, record);
+        builder.append("><td colspan='5'>");
+        appendMessage(builder, record.getMessage());
+        builder.append("</td></tr>").append(LINE_SEP);
 
+        /* Stack trace row */
         Throwable throwable = record.getThrown();
         if (throwable != null)
         {
-            builder.append("<tr" + attribName + ">" + LINE_SEP);
-            builder.append("<td colspan='" + column.length + "'>" + LINE_SEP);
-            builder.append(getTraceTable(throwable));
-            builder.append("</td>" + LINE_SEP);
-            builder.append("</tr>" + LINE_SEP);
+            appendRowStart(builder, threadId).append('>').append(LINE_SEP);
+            builder.append("<td colspan='5'>").append(LINE_SEP);
+            if (traceStore == null)
+                appendTraceTable(builder, throwable);
+            else
+                appendSharedTrace(builder, throwable);
+            builder.append("</td>").append(LINE_SEP);
+            builder.append("</tr>").append(LINE_SEP);
         }
-
-        return builder.toString();
     }
 
     /**
@@ -162,112 +242,167 @@ public class HtmlFormatter extends Formatter
     }
 
     /**
-     * @return The style class used for meta-data row
+     * Append an open row tag, without the closing {@code >}, that names the logging thread.
+     *
+     * @param builder Buffer to append to.
+     * @param threadId Id of the logging thread.
+     * @return The {@code builder}.
      */
-    private String getMetaDataRowStyleClass()
+    private static StringBuilder appendRowStart(StringBuilder builder, int threadId)
     {
-        return " class='" + STYLE_ROW_METADATA + "'";
+        return builder.append("<tr name='Thread-").append(threadId).append('\'');
     }
 
     /**
+     * Append the style class attribute for the message row.
+     *
+     * @param builder Buffer to append to.
      * @param record LogRecord used by Logger.
-     * @return Style class for the entire row.
      */
-    private String getRowStyleClass(LogRecord record)
+    private static void appendRowStyle(StringBuilder builder, LogRecord record)
     {
         Object param[] = record.getParameters();
 
-        String style = "";
         if (param == null || param.length == 0)
         {
             Level currLevel = record.getLevel();
             if (currLevel == Level.SEVERE)
-                style = " class='" + STYLE_ROW_FAILURE + "'";
+                builder.append(" class='").append(STYLE_ROW_FAILURE).append('\'');
             else if (currLevel == Level.WARNING)
-                style = " class='" + STYLE_ROW_WARNING + "'";
+                builder.append(" class='").append(STYLE_ROW_WARNING).append('\'');
         }
         else
         {
-            style = " class='" + param[0].toString() + "'";
+            builder.append(" class='").append(param[0]).append('\'');
         }
-        return style;
     }
 
     /**
-     * @param record LogRecord used by Logger.
-     * @return Value of each column
+     * Append the style class attribute for the log level column.
+     *
+     * @param builder Buffer to append to.
+     * @param level Level of the record.
      */
-    private String[] getColumns(LogRecord record)
+    private static void appendColumnStyle(StringBuilder builder, Level level)
     {
-        /* Date */
-        //SimpleDateFormat dateFormat = new SimpleDateFormat ("EEE, dd-MMM-yyyy HH:mm:ss.SSS z");
-        String strDate = getDateTimeString();
-
-        /* Level */
-        String strLogLevel = record.getLevel().toString();
-
-        /* Class */
-        String strClass = getDisplayPackageName(record.getSourceClassName());
+        if (level == Level.SEVERE)
+            builder.append(" class='logColumnSevere'");
+        else if (level == Level.WARNING)
+            builder.append(" class='logColumnWarning'");
+    }
 
-        /* Method */
-        String strMethod = record.getSourceMethodName();
+    /**
+     * Append {@code message} replacing each line separator with a line break.
+     *
+     * @param builder Buffer to append to.
+     * @param message The log message.
+     */
+    private static void appendMessage(StringBuilder builder, String message)
+    {
+        if (message == null)
+            return;
 
-        /* ThreadID */
-        String strThreadID = "" + record.getThreadID();
+        int from = 0;
+        int index;
+        while ((index = message.indexOf(LINE_SEP, from)) != -1)
+        {
+            builder.append(message, from, index).append("<br>");
+            from = index + LINE_SEP.length();
+        }
+        builder.append(message, from, message.length());
+    }
 
-        /* Message */
-        String strMessage = record.getMessage();
-        strMessage = strMessage.replaceAll(LINE_SEP, "<br>");
+    /**
+     * @param text Text.
+     * @return {@code text} with the characters that are special in HTML escaped.
+     */
+    static String escapeHtml(String text)
+    {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); ++i)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '<':  builder.append("&lt;");   break;
+                case '>':  builder.append("&gt;");   break;
+                case '&':  builder.append("&amp;");  break;
+                case '\'': builder.append("&#39;");  break;
+                case '"':  builder.append("&quot;"); break;
+                default:   builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
 
-        String field[] = { strDate, strLogLevel, strClass, strMethod, strThreadID, strMessage };
-        return field;
+    /**
+     * @param className Fully qualified class name.
+     * @return Class name without the organization prefix.
+     */
+    static String getDisplayClassName(String className)
+    {
+        if (className == null)
+            return "";
+        return DISPLAY_CLASS_NAME.computeIfAbsent(className, ReportProperties::getDisplayPackageName);
     }
 
     /**
-     * 
-     * @param record LogRecord used by Logger.
-     * @return Style class for each column
+     * Append the trace table of the first occurrence of the stack trace of {@code throwable}, and write it to the trace
+     * store. Later occurrences append a row that links to the shared trace instead.
+     *
+     * @param builder Buffer to append to.
+     * @param throwable Throwable whose stack trace is appended.
      */
-    private String[] getColumnStyles(LogRecord record)
+    private void appendSharedTrace(StringBuilder builder, Throwable throwable)
     {
-        String styleDate = "class='noWrapColumn'";
-        String styleMessage = "";
-
-        String styleLogLevel = "";
-        Level logLevel = record.getLevel();
-        if (logLevel == Level.SEVERE)
-            styleLogLevel = "class='logColumnSevere'";
-        else if (logLevel == Level.WARNING)
-            styleLogLevel = "class='logColumnWarning'";
-
-        String style[] = { styleDate, styleLogLevel, "", "", "", styleMessage };
-        return style;
+        TraceStore.Trace trace = traceStore.getTrace(throwable);
+        int occurrence = trace.occur();
+        if (occurrence == 1)
+        {
+            int start = builder.length();
+            appendTraceTable(builder, throwable);
+            try
+            {
+                trace.write(builder.substring(start));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Error writing stack trace " + trace.getFingerprint(), e);
+            }
+            return;
+        }
+
+        builder.append("<table class='tableStacktrace'>").append(LINE_SEP);
+        builder.append("<tr class='traceOddRow'><td><b>StackTrace</b> <a href='").append(trace.getHref()).append("'>")
+               .append(trace.getFingerprint()).append("</a>, occurrence ").append(occurrence).append("</td></tr>").append(LINE_SEP);
+        builder.append("<tr><td>").append(escapeHtml(String.valueOf(throwable))).append("</td></tr>").append(LINE_SEP);
+        builder.append("</table>").append(LINE_SEP);
     }
 
     /**
+     * Append HTML table having stack trace.
+     *
+     * @param builder Buffer to append to.
      * @param throwable Throwable object having exception details.
-     * @return HTML table having stack trace.
      */
-    private String getTraceTable(Throwable throwable)
+    private static void appendTraceTable(StringBuilder builder, Throwable throwable)
     {
         final String oddTableStyle = " class='traceOddRow'";
         final String evenTableStyle = " class='traceEvenRow'";
 
-        StringBuilder builder = new StringBuilder();
-        builder.append("<table class='tableStacktrace'>" + LINE_SEP);
-        builder.append("<tr" + oddTableStyle + "><td><b>StackTrace</b></td></tr>" + LINE_SEP);
+        builder.append("<table class='tableStacktrace'>").append(LINE_SEP);
+        builder.append("<tr").append(oddTableStyle).append("><td><b>StackTrace</b></td></tr>").append(LINE_SEP);
 
-        builder.append("<tr><td>" + throwable.toString() + "</td></tr>" + LINE_SEP);
+        builder.append("<tr><td>").append(throwable).append("</td></tr>").append(LINE_SEP);
         String trace[] = ExceptionUtils.getStackFrames(throwable);
 
         int count = 0;
         for (String currTrace : trace)
         {
             String currStyle = (++count % 2 == 1) ? oddTableStyle : evenTableStyle;
-            builder.append("<tr" + currStyle + "><td>" + currTrace + "</td></tr>" + LINE_SEP);
+            builder.append("<tr").append(currStyle).append("><td>").append(currTrace).append("</td></tr>").append(LINE_SEP);
         }
 
-        builder.append("</table>" + LINE_SEP);
-        return builder.toString();
+        builder.append("</table>").append(LINE_SEP);
     }
 }
@@ -1,17 +1,25 @@
 package com.github.cafeduke.jreportng;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
 import org.testng.ISuite;
-import org.testng.ISuiteResult;
-import org.testng.ITestContext;
+import org.testng.ITestResult;
 import static com.github.cafeduke.jreportng.ReportProperties.*;
 
 /**
@@ -25,45 +33,117 @@ public class JReportLogUtil
    /**
     * Total number of tests that have passed (Summation of multiple TestNG runs).
     */
-   private static int testRunPass = 0;
+   private static final LongAdder testRunPass = new LongAdder ();
 
    /**
     * Total number of tests that have failed (Summation of multiple TestNG runs).
     */
-   private static int testRunFail = 0;
+   private static final LongAdder testRunFail = new LongAdder ();
 
    /**
     * Total number of tests that have skipped (Summation of multiple TestNG runs).
     */
-   private static int testRunSkip = 0;
+   private static final LongAdder testRunSkip = new LongAdder ();
+
+   /**
+    * Total number of tests that have started (Summation of multiple TestNG runs).
+    */
+   private static final LongAdder testRunStart = new LongAdder ();
+
+   /**
+    * Total number of tests that have completed, whatever the result (Summation of multiple TestNG runs).
+    */
+   private static final LongAdder testRunDone = new LongAdder ();
    
    /**
     * Track the start and end time of the test execution
     */
-   private static LocalDateTime startTime, endTime;
+   private static volatile LocalDateTime startTime, endTime;
    
    /**
     * A map of package name to the classes it contains.
     */
-   private static Map<String,TreeSet<String>> mapPackToClasses = new TreeMap <String, TreeSet<String>> ();
+   private static ConcurrentMap<String,Set<String>> mapPackToClasses = new ConcurrentSkipListMap<String,Set<String>> ();
    
-   static
-   {
-      handleTestRunStart();
-   }
+   /**
+    * Number of parts of the logs that rolled over, by class name.
+    */
+   private static ConcurrentMap<String,Integer> mapClassToParts = new ConcurrentHashMap<String,Integer> ();
+   
+   /**
+    * True if {@code packages.html} needs to be rewritten.
+    */
+   private static volatile boolean allPackagesDirty = false;
+   
+   /**
+    * Packages whose {@code package-<package name>.html} needs to be rewritten.
+    */
+   private static Set<String> setDirtyPackage = ConcurrentHashMap.newKeySet();
+   
+   /**
+    * Periodic writer of the log index pages, scheduled once.
+    */
+   private static ScheduledFuture<?> logIndexWriter = null;
+   
+   /**
+    * Periodic writer of the live overview page, scheduled once.
+    */
+   private static ScheduledFuture<?> overviewWriter = null;
+   
+   /**
+    * Guards the writes of the overview page.
+    */
+   private static final Object OVERVIEW_LOCK = new Object ();
+   
+   /**
+    * True once the final overview page is written, after which the live overview page is no longer written.
+    */
+   private static boolean overviewComplete = false;
+   
+   /**
+    * System properties that describe the environment of the run, shown on the overview page and saved in the fragment.
+    */
+   private static final String ENVIRONMENT_KEY[] = {"java.version", "java.home", "java.class.version", "os.name", "os.version", "os.arch"};
+   
+   /**
+    * Environment of the run, by system property name. Taken from the first fragment when merging.
+    */
+   private static final Map<String,String> mapEnvironment = new ConcurrentHashMap<String,String> ();
+   
+   /**
+    * Number of JVMs whose results are reported, more than 1 for a merged report.
+    */
+   private static volatile int forkCount = 1;
+   
+   /**
+    * True once reporting is initialized.
+    */
+   private static volatile boolean started = false;
 
    /**
-    * Initialize Reporting
+    * Initialize Reporting, if not already initialized.
+    * 
+    * Reporting is initialized on the first log or report event rather than when the class is loaded, so that a JVM that
+    * merely references JReportNG classes does no disk I/O. Invoking this more than once, from any number of threads,
+    * initializes reporting exactly once.
     */
    public static void handleTestRunStart()
    {      
-      startTime = LocalDateTime.now();
-      System.setProperty("org.uncommons.reportng.stylesheet", PATH_TO_CUSTOM_REPORTNG_CSS);
-      
-      if (new File (DIR_REPORT_LOG_HOME, "index.html").exists())
+      if (started)
          return;
       
-      setupJReportResources ();
+      synchronized (JReportLogUtil.class)
+      {
+         if (started)
+            return;
+         
+         startTime = LocalDateTime.now();
+         System.setProperty("org.uncommons.reportng.stylesheet", PATH_TO_CUSTOM_REPORTNG_CSS);
+         startLogIndexWriter ();
+         setupJReportResources ();
+         startOverviewWriter ();
+         started = true;
+      }
    }
 
    /**
@@ -71,68 +151,600 @@ public class JReportLogUtil
     *
     * <ul>
     *    <li> Extract the package name for <b>testClass</b>
-    *    <li> If the package name is not found in map of classes, add one and rewrite 
-    *         {@code packages.html - This has links for all packages }.   
-    *    <li> Rewrite {@code package-<package name>.html - This has links for all classes in this package} which
-    *         will now include a link for <b>testClass</b> as well.
+    *    <li> If the package name is not found in map of classes, add one and mark 
+    *         {@code packages.html - This has links for all packages } to be rewritten.   
+    *    <li> Mark {@code package-<package name>.html - This has links for all classes in this package} to be rewritten
+    *         so that it includes a link for <b>testClass</b> as well.
     * </ul>
+    * 
+    * The pages are rewritten by a background thread at most once every {@link ReportProperties#LOG_INDEX_INTERVAL} 
+    * milliseconds and finally by {@link #handleTestRunCompletion()}. Registering a class already known is a lock free lookup.
+    * 
     * @param testClass The test class to be updated in the log report.
     */
-   public synchronized static void updateLogReport (Class<?> testClass)
+   public static void updateLogReport (Class<?> testClass)
    {
-      String packageName = testClass.getPackage().getName();
-      String className   = testClass.getSimpleName();
+      handleTestRunStart ();
       
-      TreeSet<String> setClasses = mapPackToClasses.get(packageName);
+      registerClass (testClass.getPackage().getName(), testClass.getSimpleName());
+   }
+   
+   /**
+    * Add class {@code className} to package {@code packageName} and mark the log index pages to be rewritten if the
+    * class is new.
+    * 
+    * @param packageName Name of the package.
+    * @param className Simple name of the class.
+    */
+   private static void registerClass (String packageName, String className)
+   {
+      Set<String> setClasses = mapPackToClasses.get(packageName);
       if (setClasses == null)
       {
-         setClasses = new TreeSet<String> ();         
-         mapPackToClasses.put(packageName, setClasses);
+         Set<String> setNewClasses = new ConcurrentSkipListSet<String> ();
+         setClasses = mapPackToClasses.putIfAbsent(packageName, setNewClasses);
+         if (setClasses == null)
+         {
+            setClasses = setNewClasses;
+            allPackagesDirty = true;
+         }
+      }
+      
+      if (setClasses.add(className))
+      {
+         setDirtyPackage.add(packageName);
+         if (LOG_INDEX_INTERVAL <= 0)
+            flushLogIndex ();
+      }
+   }
+   
+   /**
+    * Record that the log of class {@code className} has rolled over to {@code part}, and mark the package page to be
+    * rewritten so that it links the part. See {@link BoundedLogHandler}.
+    * 
+    * @param className Fully qualified name of the class.
+    * @param part Number of the part, 2 or more.
+    */
+   public static void updateLogPart (String className, int part)
+   {
+      mapClassToParts.merge(className, part, Math::max);
+      int index = className.lastIndexOf('.');
+      setDirtyPackage.add((index < 0) ? "" : className.substring(0, index));
+      if (LOG_INDEX_INTERVAL <= 0)
+         flushLogIndex ();
+   }
+   
+   /**
+    * Rewrite the log index pages marked to be rewritten since the last flush. The package pages are written at the same
+    * time, see {@link ReportScheduler#forEach(Collection, java.util.function.Consumer)}.
+    */
+   public synchronized static void flushLogIndex ()
+   {
+      if (allPackagesDirty)
+      {
+         allPackagesDirty = false;
          writeAllPackagesHtml ();
       }
       
-      if (!setClasses.contains(className))
+      List<String> listPackage = new ArrayList<String> ();
+      for (Iterator<String> iter = setDirtyPackage.iterator(); iter.hasNext();)
       {
-         setClasses.add(className);
-         writePackageHtml (packageName);
+         String packageName = iter.next();
+         iter.remove();
+         if (mapPackToClasses.containsKey(packageName))
+            listPackage.add(packageName);
       }
+      ReportScheduler.forEach(listPackage, JReportLogUtil::writePackageHtml);
    }
    
    /**
     * Complete reporting.
-    * Add pages with details that are known at the end of test execution.
+    * Add pages with details that are known at the end of test execution and, if {@link ReportProperties#LOG_JOURNAL}
+    * is set, render the HTML logs from the journals.
+    * 
+    * The log index pages, the journals, {@code summary.json} and the search index do not depend on one another and are
+    * rendered at the same time, see {@link ReportScheduler#runAll(Runnable...)}, so that the JVM can exit sooner. The
+    * overview page follows the journals, as the stack traces are recorded while the journals render and the overview
+    * links them. The run is appended to the {@link ReportProperties#HISTORY_FILE} before, so that the overview page
+    * shows it.
     */
    public static void handleTestRunCompletion ()
    {
+      handleTestRunStart ();
       try
       {
          endTime = LocalDateTime.now();
-         setupOverviewHtml ();
+         appendRunHistory ();
+         ReportScheduler.runAll(
+            JReportLogUtil::flushLogIndex,
+            () -> { renderJournals (); writeTraceIndex (); writeFinalOverviewHtml (); },
+            JReportLogUtil::writeSummaryJson,
+            JReportLogUtil::writeSearchIndex,
+            JReportLogUtil::writeFragment);
       }
       catch (Exception e)
       {
          throw new IllegalStateException ("Error completing report", e);
       }
    }
+   
+   /**
+    * Write the report of several JVMs from their fragments, in place of the report of this JVM. The counts and
+    * timings are added up, the run starts at the earliest start and ends at the latest end. The class logs are expected
+    * to be in {@link ReportProperties#DIR_REPORT_LOG_HOME} already. See {@link ReportMerger}.
+    * 
+    * @param listFragment Fragments written by {@link #writeFragment()}.
+    * @throws IllegalArgumentException If a fragment is not valid.
+    */
+   static void writeMergedReport (List<Properties> listFragment)
+   {
+      handleTestRunStart ();
+      LocalDateTime mergedStartTime = null, mergedEndTime = null;
+      for (Properties currFragment : listFragment)
+      {
+         LocalDateTime currStartTime = LocalDateTime.parse(getFragmentProperty(currFragment, "time.start"));
+         LocalDateTime currEndTime   = LocalDateTime.parse(getFragmentProperty(currFragment, "time.end"));
+         mergedStartTime = (mergedStartTime == null || currStartTime.isBefore(mergedStartTime)) ? currStartTime : mergedStartTime;
+         mergedEndTime   = (mergedEndTime == null || currEndTime.isAfter(mergedEndTime)) ? currEndTime : mergedEndTime;
+         mergeFragment (currFragment, mapEnvironment.isEmpty());
+      }
+      
+      if (mergedStartTime != null)
+      {
+         startTime = mergedStartTime;
+         endTime = mergedEndTime;
+      }
+      else
+      {
+         endTime = LocalDateTime.now();
+      }
+      forkCount = listFragment.size();
+      ReportScheduler.runAll(
+         JReportLogUtil::flushLogIndex,
+         JReportLogUtil::writeFinalOverviewHtml,
+         JReportLogUtil::writeSummaryJson,
+         () -> writeMergedSearchIndex (listFragment));
+   }
+   
+   /**
+    * Add the results in {@code fragment} to the results of this JVM.
+    * 
+    * @param fragment A fragment written by {@link #writeFragment()}.
+    * @param useEnvironment Use the environment of the fragment for the report.
+    */
+   private static void mergeFragment (Properties fragment, boolean useEnvironment)
+   {
+      testRunPass.add(Long.parseLong(getFragmentProperty(fragment, "count.pass")));
+      testRunFail.add(Long.parseLong(getFragmentProperty(fragment, "count.fail")));
+      testRunSkip.add(Long.parseLong(getFragmentProperty(fragment, "count.skip")));
+      
+      for (String currKey : fragment.stringPropertyNames())
+      {
+         String value = fragment.getProperty(currKey);
+         if (currKey.startsWith("package."))
+         {
+            for (String currClass : value.trim().split(" "))
+               if (!currClass.isEmpty())
+                  registerClass (currKey.substring("package.".length()), currClass);
+         }
+         else if (currKey.startsWith("part."))
+         {
+            updateLogPart (currKey.substring("part.".length()), Integer.parseInt(value));
+         }
+         else if (currKey.startsWith("env.") && useEnvironment)
+         {
+            mapEnvironment.put(currKey.substring("env.".length()), value);
+         }
+      }
+      TestTimings.importFrom(fragment);
+      FailureClusters.importFrom(fragment);
+   }
+   
+   /**
+    * @param fragment A report fragment.
+    * @param key Property name.
+    * @return Value of the property.
+    * @throws IllegalArgumentException If the fragment does not have the property.
+    */
+   private static String getFragmentProperty (Properties fragment, String key)
+   {
+      String value = fragment.getProperty(key);
+      if (value == null)
+         throw new IllegalArgumentException ("Fragment without " + key + ": " + fragment.getProperty("fork.id"));
+      return value;
+   }
+   
+   /**
+    * Write the fragment of this JVM, {@code DIR_REPORT_FRAGMENT_HOME/<fork id>.properties}, with the counts, the classes
+    * by package, the log parts, the timings, the failure groups and the environment of the run. Several JVMs that share
+    * a report home, such as surefire forks, or that run shards of a suite on other machines overwrite one another's
+    * pages, but each leaves its fragment, from which {@link ReportMerger} writes the report of the whole run.
+    */
+   private static void writeFragment ()
+   {
+      TestResultSnapshot snapshot = getTestResultSnapshot ();
+      Properties fragment = new Properties ();
+      fragment.setProperty("fork.id", getForkId());
+      if (RUN_ID != null)
+         fragment.setProperty("run.id", RUN_ID);
+      fragment.setProperty("time.start", startTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+      fragment.setProperty("time.end", endTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+      fragment.setProperty("count.pass", String.valueOf(snapshot.getPass()));
+      fragment.setProperty("count.fail", String.valueOf(snapshot.getFail()));
+      fragment.setProperty("count.skip", String.valueOf(snapshot.getSkip()));
+      for (Map.Entry<String,Set<String>> currEntry : mapPackToClasses.entrySet())
+         fragment.setProperty("package." + currEntry.getKey(), String.join(" ", currEntry.getValue()));
+      for (Map.Entry<String,Integer> currEntry : mapClassToParts.entrySet())
+         fragment.setProperty("part." + currEntry.getKey(), String.valueOf(currEntry.getValue()));
+      for (String currKey : ENVIRONMENT_KEY)
+         fragment.setProperty("env." + currKey, getEnvironment(currKey));
+      TestTimings.exportTo(fragment);
+      FailureClusters.exportTo(fragment);
+      
+      try
+      {
+         DIR_REPORT_FRAGMENT_HOME.mkdirs();
+         Path pathFragment = new File (DIR_REPORT_FRAGMENT_HOME, getForkId() + ".properties").toPath();
+         Path pathTemp = ResourceExtractor.getTempPath(pathFragment);
+         try
+         {
+            try (Writer out = Files.newBufferedWriter(pathTemp, StandardCharsets.UTF_8))
+            {
+               fragment.store(out, "JReportNG report fragment");
+            }
+            ResourceExtractor.move(pathTemp, pathFragment);
+         }
+         finally
+         {
+            Files.deleteIfExists(pathTemp);
+         }
+      }
+      catch (IOException ioe)
+      {
+         throw new IllegalStateException("Error writing report fragment", ioe);
+      }
+   }
+   
+   /**
+    * Remove the fragments of runs other than {@link ReportProperties#RUN_ID} from
+    * {@link ReportProperties#DIR_REPORT_FRAGMENT_HOME}, with their search index segments, so that a report home that is
+    * used again does not merge their results with this run. Without a {@link ReportProperties#RUN_ID} nothing is
+    * removed, the fragments may be of other JVMs of this run that have already completed.
+    * 
+    * @return Fragments that could not be removed.
+    */
+   public static List<File> removeStaleFragments ()
+   {
+      List<File> listFailed = new ArrayList<> ();
+      File fragment[] = (RUN_ID == null) ? null : DIR_REPORT_FRAGMENT_HOME.listFiles((dir, name) -> name.endsWith(".properties"));
+      if (fragment == null)
+         return listFailed;
+      
+      File dirSearch = new File (DIR_REPORT_LOG_HOME, SearchIndex.DIR_NAME);
+      for (File currFragment : fragment)
+      {
+         Properties properties = new Properties ();
+         try (Reader in = Files.newBufferedReader(currFragment.toPath(), StandardCharsets.UTF_8))
+         {
+            properties.load(in);
+         }
+         catch (IOException | IllegalArgumentException e)
+         {
+            // Not a fragment that can be merged, remove it as well
+         }
+         if (RUN_ID.equals(properties.getProperty("run.id")))
+            continue;
+         
+         String forkId = properties.getProperty("fork.id");
+         if (forkId != null)
+            SearchIndex.getSegmentFile(dirSearch, forkId).delete();
+         if (!currFragment.delete() && currFragment.exists())
+            listFailed.add(currFragment);
+      }
+      return listFailed;
+   }
+   
+   /**
+    * @return {@link ReportProperties#FORK_ID}, by default {@code <process id>@<host name>}, usable as a file name.
+    */
+   private static String getForkId ()
+   {
+      String forkId = (FORK_ID == null) ? ManagementFactory.getRuntimeMXBean().getName() : FORK_ID;
+      return forkId.replaceAll("[^A-Za-z0-9._@-]", "_");
+   }
+   
+   /**
+    * @param key Name of a system property in {@link #ENVIRONMENT_KEY}.
+    * @return Value of the property for the run.
+    */
+   private static String getEnvironment (String key)
+   {
+      String value = mapEnvironment.get(key);
+      return (value == null) ? System.getProperty(key, "") : value;
+   }
+   
+   /**
+    * Render the HTML logs from the journals, if {@link ReportProperties#LOG_JOURNAL} is set.
+    */
+   private static void renderJournals ()
+   {
+      if (!LOG_JOURNAL)
+         return;
+      
+      try
+      {
+         JournalHandler.flushAll();
+         JournalRenderer.renderAll(DIR_REPORT_LOG_HOME);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error rendering journals", e);
+      }
+   }
+   
+   /**
+    * Write the search index of the class logs, if {@link ReportProperties#LOG_SEARCH} is set: the segment of this JVM,
+    * then the shards of the index from it. See {@link SearchIndex}.
+    */
+   private static void writeSearchIndex ()
+   {
+      if (!LOG_SEARCH)
+         return;
+      
+      try
+      {
+         LoggerUtil.drainHandlers ();
+         SearchIndex index = SearchIndex.getDefault();
+         File segment = index.writeSegment(getForkId());
+         SearchIndex.writeShards(index.getDir(), Collections.singletonList(segment));
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error writing search index", e);
+      }
+   }
+   
+   /**
+    * Write the shards of the search index from the segments of the JVMs of {@code listFragment}, if
+    * {@link ReportProperties#LOG_SEARCH} is set. A JVM that did not index its logs has no segment and is left out.
+    * 
+    * @param listFragment Fragments written by {@link #writeFragment()}.
+    */
+   private static void writeMergedSearchIndex (List<Properties> listFragment)
+   {
+      if (!LOG_SEARCH)
+         return;
+      
+      File dir = SearchIndex.getDefault().getDir();
+      List<File> listSegment = new ArrayList<> ();
+      for (Properties currFragment : listFragment)
+      {
+         File segment = SearchIndex.getSegmentFile(dir, getFragmentProperty(currFragment, "fork.id"));
+         if (segment.isFile())
+            listSegment.add(segment);
+      }
+      
+      try
+      {
+         SearchIndex.writeShards(dir, listSegment);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error writing merged search index", e);
+      }
+   }
+   
+   /**
+    * Write the index of the stack traces shared by the logs, with their final counts, if
+    * {@link ReportProperties#LOG_TRACE_DEDUP} is set. Journals record their traces as they are rendered, so this follows
+    * {@link #renderJournals()}.
+    */
+   private static void writeTraceIndex ()
+   {
+      if (!LOG_TRACE_DEDUP)
+         return;
+      
+      try
+      {
+         TraceStore.getDefault().writeIndex();
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error writing stack trace index", e);
+      }
+   }
+   
+   /**
+    * Write {@code failures.html}, the failures of the run grouped by cause, see {@link FailureClusters}. The page of an
+    * earlier run is removed if no test or configuration method failed.
+    * 
+    * @param live True if the run is in progress.
+    */
+   private static void writeFailuresHtml (boolean live)
+   {
+      try
+      {
+         Path pathFailures = new File (DIR_REPORT_HOME, "failures.html").toPath();
+         if (FailureClusters.getClusterCount() == 0)
+         {
+            Files.deleteIfExists(pathFailures);
+            return;
+         }
+         
+         StringBuilder builder = new StringBuilder ();
+         FailureClusters.appendHtml(builder, live);
+         Path pathTemp = ResourceExtractor.getTempPath(pathFailures);
+         try
+         {
+            Files.write(pathTemp, builder.toString().getBytes(StandardCharsets.UTF_8));
+            ResourceExtractor.move(pathTemp, pathFailures);
+         }
+         finally
+         {
+            Files.deleteIfExists(pathTemp);
+         }
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error writing failure groups", e);
+      }
+   }
+   
+   /**
+    * Write the overview page and the failure groups of the completed run, after which the live pages are no longer
+    * written.
+    */
+   private static void writeFinalOverviewHtml ()
+   {
+      synchronized (OVERVIEW_LOCK)
+      {
+         overviewComplete = true;
+         try
+         {
+            setupOverviewHtml (false);
+         }
+         catch (IOException e)
+         {
+            throw new IllegalStateException ("Error writing overview", e);
+         }
+         writeFailuresHtml (false);
+      }
+   }
 
    /**
-    * Add results from the {@code suite} to the total test result.
+    * Count a test that has started, so that the live overview shows the tests in progress.
+    * 
+    * @param result Result of the started test.
+    */
+   public static void handleTestStart (ITestResult result)
+   {
+      testRunStart.increment();
+   }
+   
+   /**
+    * Add the result of a completed test to the total test result.
+    * 
+    * Invoked by {@link TestListener} as each test completes, from any number of threads. An attempt that is retried is
+    * not counted, its retry is. The duration of the test is recorded for the overview, see {@link TestTimings}, and a
+    * failure is grouped by its cause, see {@link FailureClusters}. The outcome of the test is recorded for the run
+    * history if it is kept, see {@link RunHistory}.
+    * 
+    * @param result Result of the completed test.
+    */
+   public static void handleTestResult (ITestResult result)
+   {
+      testRunDone.increment();
+      TestTimings.recordTest(result);
+      if (HISTORY_FILE != null)
+         RunHistory.recordTest(result);
+      switch (result.getStatus())
+      {
+         case ITestResult.SUCCESS:
+            testRunPass.increment();
+            break;
+            
+         case ITestResult.FAILURE:
+            testRunFail.increment();
+            FailureClusters.record(result);
+            break;
+            
+         case ITestResult.SKIP:
+            if (!result.wasRetried())
+               testRunSkip.increment();
+            break;
+            
+         default:
+            break;
+      }
+   }
+   
+   /**
+    * Record the duration of a completed configuration method for the overview, see {@link TestTimings}, and group a
+    * failure by its cause, see {@link FailureClusters}.
+    * 
+    * @param result Result of the configuration method.
+    */
+   public static void handleConfigurationResult (ITestResult result)
+   {
+      TestTimings.recordConfiguration(result);
+      if (result.getStatus() == ITestResult.FAILURE)
+         FailureClusters.record(result);
+   }
+   
+   /**
+    * The total test result so far. Each count is read once without locking, so the snapshot of a run in progress may
+    * include a test that completed while it was taken in one count but not in another.
+    * 
+    * @return Number of tests that have passed, failed and skipped so far.
+    */
+   public static TestResultSnapshot getTestResultSnapshot ()
+   {
+      long running = Math.max(0, testRunStart.sum() - testRunDone.sum());
+      return new TestResultSnapshot (testRunPass.sum(), testRunFail.sum(), testRunSkip.sum(), running);
+   }
+
+   /**
+    * Used to add results from the {@code suite} to the total test result.
     * 
     * @param suite Suites that completed run.
+    * @deprecated Results are counted as each test completes, see {@link #handleTestResult(ITestResult)}. Does nothing.
     */
+   @Deprecated
    public static void handleTestSuitesCompletion (ISuite suite)
    {
-      Map<String,ISuiteResult> mapStringResult = suite.getResults();      
-      for (String suiteName : mapStringResult.keySet())
+      
+   }
+   
+   
+   /**
+    * Schedule the periodic writer of the log index pages and a final flush at JVM shutdown, for runs that do not
+    * reach {@link #handleTestRunCompletion()}.
+    */
+   private synchronized static void startLogIndexWriter ()
+   {
+      if (logIndexWriter != null || LOG_INDEX_INTERVAL <= 0)
+         return;
+      
+      logIndexWriter = ReportScheduler.schedule(JReportLogUtil::flushLogIndex, LOG_INDEX_INTERVAL);
+      Runtime.getRuntime().addShutdownHook(new Thread(JReportLogUtil::flushLogIndex, "JReportNG-LogIndexFlush"));
+   }
+   
+   /**
+    * Schedule the periodic writer of the live overview page and a final write at JVM shutdown, so that a run that is in
+    * progress or killed has an overview.
+    */
+   private synchronized static void startOverviewWriter ()
+   {
+      if (overviewWriter != null || OVERVIEW_INTERVAL <= 0)
+         return;
+      
+      writeLiveOverviewHtml ();
+      overviewWriter = ReportScheduler.schedule(JReportLogUtil::writeLiveOverviewHtml, OVERVIEW_INTERVAL);
+      Runtime.getRuntime().addShutdownHook(new Thread(JReportLogUtil::writeLiveOverviewHtml, "JReportNG-OverviewFlush"));
+   }
+   
+   /**
+    * Write the overview page and the failure groups of the run in progress, unless the run has completed.
+    */
+   private static void writeLiveOverviewHtml ()
+   {
+      synchronized (OVERVIEW_LOCK)
       {
-         ITestContext context = mapStringResult.get(suiteName).getTestContext();
-         testRunPass += context.getPassedTests().size();
-         testRunFail += context.getFailedTests().size();
-         testRunSkip += context.getSkippedTests().size();
+         if (overviewComplete)
+            return;
+         
+         try
+         {
+            setupOverviewHtml (true);
+         }
+         catch (IOException e)
+         {
+            throw new IllegalStateException ("Error writing live overview", e);
+         }
+         writeFailuresHtml (true);
       }
    }
    
-   
    /**
     * Write the title HTML page.
     */
@@ -141,7 +753,7 @@ public class JReportLogUtil
       try
       {
          File file = new File (DIR_REPORT_HOME, "title.html");
-         PrintWriter out = new PrintWriter (new FileWriter (file));
+         PrintWriter out = newPrintWriter (file);
 
          out.println ("<html>");
          out.println ("<head>");
@@ -201,15 +813,16 @@ public class JReportLogUtil
    {
       try
       {
-         String defaultHtmlLog   = LOG_DEFAULT_CLASS.getName() + ".html";
+         String defaultHtmlLog   = LOG_DEFAULT_CLASS.getName() + LOG_FILE_EXTENSION;
          String defaultClassName = LOG_DEFAULT_CLASS.getSimpleName();
          
          // Create the default log file if it does not exist
          File fileHtmlDefaultLog = new File (DIR_REPORT_LOG_HOME, defaultHtmlLog);
-         fileHtmlDefaultLog.createNewFile();
+         if (fileHtmlDefaultLog.createNewFile() && LOG_GZIP && !LOG_VIEWER)
+            new GZIPOutputStream (new FileOutputStream (fileHtmlDefaultLog)).close();
          
          File file = new File (DIR_REPORT_LOG_HOME, "index.html");
-         PrintWriter out = new PrintWriter (new FileWriter (file));
+         PrintWriter out = newPrintWriter (file);
          
          out.println ("<?xml version='1.0' encoding='utf-8' ?>");
          out.println ("<!doctype html>");
@@ -229,7 +842,7 @@ public class JReportLogUtil
          out.close();
          
          file = new File (DIR_REPORT_LOG_HOME, "package-root.html");
-         out = new PrintWriter (new FileWriter (file));
+         out = newPrintWriter (file);
          out.println ("<?xml version='1.0' encoding='utf-8' ?>");
          out.println ("<!doctype html>");
          out.println ("<html>");
@@ -264,7 +877,7 @@ public class JReportLogUtil
       try
       {
          File file = new File (DIR_REPORT_LOG_HOME, "package-" + packageName + ".html");
-         PrintWriter out = new PrintWriter (new FileWriter (file));
+         PrintWriter out = newPrintWriter (file);
 
          out.println ("<?xml version='1.0' encoding='utf-8' ?>");
          out.println ("<!doctype html>");
@@ -277,9 +890,17 @@ public class JReportLogUtil
          out.println ("<table class='tableLogLink'>");
          
          for (String currClass : mapPackToClasses.get(packageName))
+         {
+            String className = packageName + "." + currClass;
+            StringBuilder partLinks = new StringBuilder ();
+            int parts = mapClassToParts.getOrDefault(className, 1);
+            for (int part = 2; part <= parts; ++part)
+               partLinks.append(" <a href='" + LoggerUtil.getLogPartFileName(className, part) + "' target='content'>" + part + "</a>");
+            
             out.println ("<tr><td class='noWrapColumn'>" +
-                            "<a href='" + packageName + "." + currClass + ".html' target='content'>" + currClass + "" +
+                            "<a href='" + className + LOG_FILE_EXTENSION + "' target='content'>" + currClass + "</a>" + partLinks +
                          "</td></tr>");
+         }
                
          out.println ("</table>");
          out.println ("</body>");
@@ -300,7 +921,7 @@ public class JReportLogUtil
       try
       {
          File file = new File (DIR_REPORT_LOG_HOME, "packages.html");
-         PrintWriter out = new PrintWriter (new FileWriter (file));
+         PrintWriter out = newPrintWriter (file);
 
          out.println ("<html>");
          out.println ("<head>");
@@ -309,6 +930,8 @@ public class JReportLogUtil
          out.println ("<body>");
          out.println ("<table class='tableLogLink'>");
          out.println ("<tr><td class='noWrapColumn'>&nbsp</td></tr>");
+         if (LOG_SEARCH)
+            out.println ("<tr><td class='noWrapColumn'><b><a href='search.html' target='content'>Search</a></b></td></tr>");
          
          out.println ("<tr><td class='noWrapColumn'>" +
                          "<b><a href='package-root.html' target='classNames'>" + PACKAGE_ORG_PREFIX + " </b>" +
@@ -334,6 +957,8 @@ public class JReportLogUtil
    
    /**
     * Setup maven target directory DIR_REPORT_HOME with resources.
+    * 
+    * Resources already extracted by an earlier run are skipped, see {@link ResourceExtractor}.
     */
    private static void setupJReportResources ()
    {
@@ -342,18 +967,8 @@ public class JReportLogUtil
          // Create report log home directory
          DIR_REPORT_LOG_HOME.mkdirs();         
          
-         // Copy all the source resources to maven target report home
-         for (String currResource : LIST_SOURCE_RESOURCE)
-         {
-            Path pathResource = Paths.get(currResource.replace(JREPORT_PREFIX, ""));
-            String fileTarget = pathResource.getFileName().toString();            
-            File dirTarget = new File (DIR_REPORT_HOME, pathResource.getParent().toString());
-            
-            if (!dirTarget.exists())
-               dirTarget.mkdirs();
-            
-            Files.copy(JReportLogUtil.class.getResourceAsStream(currResource), new File (dirTarget, fileTarget).toPath(), StandardCopyOption.REPLACE_EXISTING);
-         }
+         // Extract the source resources that are missing or changed to maven target report home
+         ResourceExtractor.extract();
 
          // Create Index and Title pages
          JReportLogUtil.writeTitleHtml();
@@ -367,18 +982,27 @@ public class JReportLogUtil
    
    /**
     * Setup the overview.html
+    * 
+    * The page is written to a temporary file that then replaces overview.html, so that a viewer never sees a partly
+    * written page.
+    * 
+    * @param live True if the run is in progress. The page then refreshes itself and shows the tests in progress.
     */
-   private static void setupOverviewHtml () throws IOException
+   private static void setupOverviewHtml (boolean live) throws IOException
    {
-      int pieChartItemValue[] = new int[] {testRunPass, testRunFail, testRunSkip};
+      TestResultSnapshot snapshot = getTestResultSnapshot ();
+      long pieChartItemValue[] = new long[] {snapshot.getPass(), snapshot.getFail(), snapshot.getSkip()};
       
-      File fileOverview = new File (DIR_REPORT_HOME, "overview.html");
-      PrintWriter out = new PrintWriter (new FileWriter (fileOverview));      
+      Path pathOverview = new File (DIR_REPORT_HOME, "overview.html").toPath();
+      Path pathTemp = ResourceExtractor.getTempPath(pathOverview);
+      PrintWriter out = newPrintWriter (pathTemp.toFile());
       out.println ("<html>");
       out.println ("<head>   ");
+      if (live)
+         out.println ("<meta http-equiv='refresh' content='" + Math.max(1, OVERVIEW_INTERVAL / 1000) + "'>");
       
       out.println ("<link type='text/css' rel='stylesheet' href='css/overview.css'></link>");
-      out.println ("<link type='text/css' rel='stylesheet' href='jquery-ui/themes/start/jquery-ui-1.9.1.custom.css'></link>");    
+      out.println ("<link type='text/css' rel='stylesheet' href='jquery-ui/themes/start/jquery-ui-1.9.1.custom.min.css'></link>");    
       out.println ("<link type='text/css' rel='stylesheet' href='jqplot/jquery.jqplot.min.css' />");
       
       out.println ("<script type='text/javascript' src='jquery/jquery-1.8.2.min.js'></script>");
@@ -390,7 +1014,7 @@ public class JReportLogUtil
       out.println ("<script>");
       out.println ("$(document).ready(function()");
       out.println ("{");
-      out.println (String.format("   var s1 = [['fail',%d], ['skip',%d], ['pass',%d]];", testRunFail, testRunSkip, testRunPass));
+      out.println (String.format("   var s1 = [['fail',%d], ['skip',%d], ['pass',%d]];", snapshot.getFail(), snapshot.getSkip(), snapshot.getPass()));
       out.println ("   var plot3 = $.jqplot('chart', [s1], ");
       out.println ("   {");
       out.println ("      animate: true,");
@@ -440,22 +1064,31 @@ public class JReportLogUtil
       writeResultSummarySection (out, pieChartItemValue);
       out.println ("</td>");
       out.println ("<td width='40%' valign='top'>");
-      writeAccordionSection(out);
+      writeAccordionSection(out, snapshot, live);
       out.println ("</td>");
       out.println ("</tr>");
       out.println ("</table>");
       out.println ("</body>");
       out.println ("</html>");     
       out.close();
+      
+      try
+      {
+         ResourceExtractor.move(pathTemp, pathOverview);
+      }
+      finally
+      {
+         Files.deleteIfExists(pathTemp);
+      }
    }
    
-   private static void writeResultSummarySection (PrintWriter out, int pieChartItemValue[])
+   private static void writeResultSummarySection (PrintWriter out, long pieChartItemValue[])
    {
       final String pieChartItemName  [] = new String [] {"Pass", "Fail", "Skip"};
       final String pieChartItemStyle [] = new String [] {"pass", "fail", "skip"}; 
       
-      int pieChartItemSum = 0;
-      for (int currItem : pieChartItemValue)
+      long pieChartItemSum = 0;
+      for (long currItem : pieChartItemValue)
          pieChartItemSum += currItem;      
       
       out.println ("   <table class='stretch'>");
@@ -496,10 +1129,15 @@ public class JReportLogUtil
     * Write the test environment details as HTML accordion. 
     * 
     * @param out Writer to add the HTML section.
+    * @param snapshot Test results so far.
+    * @param live True if the run is in progress.
     */
-   private static void writeAccordionSection (PrintWriter out)
+   private static void writeAccordionSection (PrintWriter out, TestResultSnapshot snapshot, boolean live)
    {
-      long duration  = Duration.between(startTime, endTime).toMillis() / 1000;
+      LocalDateTime currEndTime = live ? LocalDateTime.now() : endTime;
+      long durationMillis = Duration.between(startTime, currEndTime).toMillis();
+      double testsPerMinute = (durationMillis == 0) ? 0 : snapshot.getTotal() * 60000.0 / durationMillis;
+      long duration  = durationMillis / 1000;
       long hrs = duration / 3600;
       long min = (duration % 3600) / 60;
       long sec = (duration % 60);      
@@ -513,18 +1151,35 @@ public class JReportLogUtil
       out.println ("      <div>");
       out.println ("         <table>");
       out.println ("            <tr><th>Start Time</th><td colspan='2'>" + startTime.format(DateTimeFormatter.ISO_DATE_TIME)   + "</td></tr>");
-      out.println ("            <tr><th>End Time  </th><td colspan='2'>" + endTime.format(DateTimeFormatter.ISO_DATE_TIME)     + "</td></tr>");
+      if (live)
+         out.println ("            <tr><th>End Time  </th><td colspan='2'>In progress</td></tr>");
+      else
+         out.println ("            <tr><th>End Time  </th><td colspan='2'>" + endTime.format(DateTimeFormatter.ISO_DATE_TIME)     + "</td></tr>");
       out.println ("            <tr><th>Duration  </th><td colspan='2'>" + strDuration + "</td></tr>");
+      if (live)
+         out.println ("            <tr><th>Tests Running</th><td colspan='2'>" + snapshot.getRunning() + "</td></tr>");
+      out.println ("            <tr><th>Tests / Minute</th><td colspan='2'>" + String.format("%.1f", testsPerMinute) + "</td></tr>");
+      if (forkCount > 1)
+         out.println ("            <tr><th>Forks</th><td colspan='2'>" + forkCount + "</td></tr>");
+      out.println ("            <tr><th>Configuration Time</th><td colspan='2'>" + formatMillis(TestTimings.getConfigurationTotal()) + "</td></tr>");
+      if (FailureClusters.getClusterCount() > 0)
+         out.println ("            <tr><th>Failure Groups</th><td colspan='2'><a href='failures.html'>" + FailureClusters.getFailureCount() + " failure(s) in " + FailureClusters.getClusterCount() + " group(s)</a></td></tr>");
+      if (LOG_TRACE_DEDUP && !live && TraceStore.getDefault().getTraceCount() > 0)
+         out.println ("            <tr><th>Stack Traces</th><td colspan='2'><a href='" + DIR_REPORT_LOG_HOME.getName() + "/" + TraceStore.DIR_NAME + "/index.html'>Distinct stack traces</a></td></tr>");
       out.println ("         </table>");
       out.println ("      </div>");
       
+      writeTimingSection (out);
+      if (HISTORY_FILE != null && !live)
+         writeHistorySection (out);
+      
       // Java Runtime Information
       out.println ("      <div id='accordionTitle'>Java Runtime</div>");
       out.println ("      <div>");
       out.println ("         <table>");
-      out.println ("            <tr><th>Java Version             </th><td colspan='2'>" + System.getProperty("java.version") + "</td></tr>");
-      out.println ("            <tr><th>Java Home                </th><td colspan='2'>" + System.getProperty("java.home")    + "</td></tr>");
-      out.println ("            <tr><th>Java Class Version       </th><td colspan='2'>" + System.getProperty("java.class.version") + "</td></tr>");
+      out.println ("            <tr><th>Java Version             </th><td colspan='2'>" + getEnvironment("java.version") + "</td></tr>");
+      out.println ("            <tr><th>Java Home                </th><td colspan='2'>" + getEnvironment("java.home")    + "</td></tr>");
+      out.println ("            <tr><th>Java Class Version       </th><td colspan='2'>" + getEnvironment("java.class.version") + "</td></tr>");
       out.println ("         </table>");
       out.println ("      </div>");
       
@@ -532,9 +1187,9 @@ public class JReportLogUtil
       out.println ("      <div id='accordionTitle'>Platform</div>");
       out.println ("      <div>");
       out.println ("         <table>");
-      out.println ("            <tr><th>Operating System         </th><td colspan='2'>" + System.getProperty("os.name")      + "</td></tr>");
-      out.println ("            <tr><th>Operating System Version </th><td colspan='2'>" + System.getProperty("os.version")   + "</td></tr>");      
-      out.println ("            <tr><th>Architecture             </th><td colspan='2'>" + System.getProperty("os.arch") + "</td></tr>");
+      out.println ("            <tr><th>Operating System         </th><td colspan='2'>" + getEnvironment("os.name")      + "</td></tr>");
+      out.println ("            <tr><th>Operating System Version </th><td colspan='2'>" + getEnvironment("os.version")   + "</td></tr>");      
+      out.println ("            <tr><th>Architecture             </th><td colspan='2'>" + getEnvironment("os.arch") + "</td></tr>");
       out.println ("         </table>");
       out.println ("      </div>");
       
@@ -542,4 +1197,222 @@ public class JReportLogUtil
       out.println ("");
    }
    
+   /**
+    * Write the slowest test methods and the slowest test classes, with percentiles of their test durations and the
+    * time in their configuration methods, as HTML accordion sections.
+    * 
+    * @param out Writer to add the HTML sections.
+    */
+   private static void writeTimingSection (PrintWriter out)
+   {
+      out.println ("      <div id='accordionTitle'>Slowest Tests</div>");
+      out.println ("      <div>");
+      out.println ("         <table>");
+      out.println ("            <tr><th>Test</th><th>Runs</th><th>Total</th><th>Max</th></tr>");
+      for (TestTimings.MethodTiming currTiming : TestTimings.getSlowestMethods(OVERVIEW_SLOWEST_COUNT))
+      {
+         out.println ("            <tr><td>" + currTiming.getName() + "</td>" +
+                      "<td>" + currTiming.getCount() + "</td>" +
+                      "<td>" + formatMillis(currTiming.getTotal()) + "</td>" +
+                      "<td>" + formatMillis(currTiming.getMax()) + "</td></tr>");
+      }
+      out.println ("         </table>");
+      out.println ("      </div>");
+      
+      out.println ("      <div id='accordionTitle'>Slowest Classes</div>");
+      out.println ("      <div>");
+      out.println ("         <table>");
+      out.println ("            <tr><th>Class</th><th>Tests</th><th>Total</th><th>p50</th><th>p95</th><th>p99</th><th>Configuration</th></tr>");
+      for (TestTimings.ClassTiming currTiming : TestTimings.getSlowestClasses(OVERVIEW_SLOWEST_COUNT))
+      {
+         DurationHistogram histogram = currTiming.histogram;
+         out.println ("            <tr><td>" + currTiming.getName() + "</td>" +
+                      "<td>" + histogram.getCount() + "</td>" +
+                      "<td>" + formatMillis(currTiming.getTotal()) + "</td>" +
+                      "<td>" + formatMillis(histogram.getPercentile(50)) + "</td>" +
+                      "<td>" + formatMillis(histogram.getPercentile(95)) + "</td>" +
+                      "<td>" + formatMillis(histogram.getPercentile(99)) + "</td>" +
+                      "<td>" + formatMillis(currTiming.getConfigurationTotal()) + "</td></tr>");
+      }
+      out.println ("         </table>");
+      out.println ("      </div>");
+   }
+   
+   /**
+    * Write the pass rate and the duration of the last runs of the {@link ReportProperties#HISTORY_FILE} as charts, and
+    * the tests that are flaky across them, as an HTML accordion section. See {@link RunHistory}.
+    * 
+    * @param out Writer to add the HTML section.
+    */
+   private static void writeHistorySection (PrintWriter out)
+   {
+      List<RunHistory.Run> listRun;
+      try
+      {
+         listRun = RunHistory.readLast(HISTORY_FILE, HISTORY_RUN_COUNT);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error reading run history " + HISTORY_FILE, e);
+      }
+      if (listRun.isEmpty())
+         return;
+      
+      DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+      double passRate[] = new double [listRun.size()];
+      double duration[] = new double [listRun.size()];
+      String label[] = new String [listRun.size()];
+      double maxDuration = 1;
+      for (int i = 0; i < listRun.size(); ++i)
+      {
+         RunHistory.Run currRun = listRun.get(i);
+         passRate[i] = currRun.getPassRate();
+         duration[i] = Math.max(0, currRun.end - currRun.start);
+         maxDuration = Math.max(maxDuration, duration[i]);
+         label[i] = LocalDateTime.ofInstant(Instant.ofEpochMilli(currRun.start), ZoneId.systemDefault()).format(formatter) +
+                    " : " + currRun.pass + " pass, " + currRun.fail + " fail, " + currRun.skip + " skip, " + formatMillis((long) duration[i]);
+      }
+      RunHistory.Run lastRun = listRun.get(listRun.size() - 1);
+      
+      out.println ("      <div id='accordionTitle'>Run History</div>");
+      out.println ("      <div>");
+      out.println ("         <table>");
+      out.println ("            <tr><th>Runs</th><td colspan='2'>Last " + listRun.size() + " of " + HISTORY_FILE.getName() + "</td></tr>");
+      out.println ("            <tr><th>Pass Rate</th><td>" + getTrendSvg(passRate, 100, label) + "</td><td>" + String.format("%.1f %%", lastRun.getPassRate()) + "</td></tr>");
+      out.println ("            <tr><th>Duration</th><td>" + getTrendSvg(duration, maxDuration, label) + "</td><td>" + formatMillis(lastRun.end - lastRun.start) + "</td></tr>");
+      out.println ("         </table>");
+      out.println ("         <table>");
+      out.println ("            <tr><th>Flaky Test</th><th>Runs</th><th>Failed</th><th>Changes</th><th>Last</th></tr>");
+      for (RunHistory.FlakyTest currTest : RunHistory.getFlakyTests(listRun, OVERVIEW_SLOWEST_COUNT))
+      {
+         out.println ("            <tr><td>" + currTest.name + "</td>" +
+                      "<td>" + currTest.runs + "</td>" +
+                      "<td>" + currTest.failed + "</td>" +
+                      "<td>" + currTest.changes + "</td>" +
+                      "<td>" + RunHistory.getOutcomeName(currTest.last) + "</td></tr>");
+      }
+      out.println ("         </table>");
+      out.println ("      </div>");
+   }
+   
+   /**
+    * @param value Values oldest first, from 0 to {@code max}.
+    * @param max Value at the top of the chart.
+    * @param label Tooltip of each value.
+    * @return Inline SVG line chart of {@code value}, which needs no script and draws in a collapsed accordion section.
+    */
+   private static String getTrendSvg (double value[], double max, String label[])
+   {
+      final int width = 300, height = 50, margin = 4;
+      double step = (value.length > 1) ? (width - 2.0 * margin) / (value.length - 1) : 0;
+      StringBuilder points = new StringBuilder ();
+      StringBuilder circles = new StringBuilder ();
+      for (int i = 0; i < value.length; ++i)
+      {
+         String x = String.format(Locale.ROOT, "%.1f", margin + i * step);
+         String y = String.format(Locale.ROOT, "%.1f", height - margin - (height - 2.0 * margin) * Math.min(value[i], max) / max);
+         points.append(x).append(',').append(y).append(' ');
+         circles.append("<circle cx='").append(x).append("' cy='").append(y).append("' r='3' fill='rgb(0,64,128)'><title>")
+                .append(label[i]).append("</title></circle>");
+      }
+      return "<svg width='" + width + "' height='" + height + "' viewBox='0 0 " + width + " " + height + "'>" +
+             "<line x1='0' y1='" + (height - margin) + "' x2='" + width + "' y2='" + (height - margin) + "' stroke='lightgray'/>" +
+             "<polyline points='" + points.toString().trim() + "' fill='none' stroke='rgb(0,64,128)' stroke-width='1.5'/>" +
+             circles + "</svg>";
+   }
+   
+   /**
+    * Append this run to the {@link ReportProperties#HISTORY_FILE}, before the overview page that shows the history is
+    * written. Each JVM appends its own run. See {@link RunHistory}.
+    */
+   private static void appendRunHistory ()
+   {
+      if (HISTORY_FILE == null)
+         return;
+      
+      TestResultSnapshot snapshot = getTestResultSnapshot ();
+      ZoneId zone = ZoneId.systemDefault();
+      RunHistory.Run run = RunHistory.getRun(startTime.atZone(zone).toInstant().toEpochMilli(), endTime.atZone(zone).toInstant().toEpochMilli(),
+                                             snapshot.getPass(), snapshot.getFail(), snapshot.getSkip());
+      try
+      {
+         RunHistory.append(HISTORY_FILE, run);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error appending to run history " + HISTORY_FILE, e);
+      }
+   }
+   
+   /**
+    * Write {@code summary.json}, the result of the completed run for tools that consume the report.
+    */
+   private static void writeSummaryJson ()
+   {
+      TestResultSnapshot snapshot = getTestResultSnapshot ();
+      try
+      {
+         File file = new File (DIR_REPORT_HOME, "summary.json");
+         PrintWriter out = newPrintWriter (file);
+         
+         out.println ("{");
+         out.println ("   \"title\": " + toJsonString(REPORT_TITLE) + ",");
+         out.println ("   \"startTime\": " + toJsonString(startTime.format(DateTimeFormatter.ISO_DATE_TIME)) + ",");
+         out.println ("   \"endTime\": " + toJsonString(endTime.format(DateTimeFormatter.ISO_DATE_TIME)) + ",");
+         out.println ("   \"durationMillis\": " + Duration.between(startTime, endTime).toMillis() + ",");
+         out.println ("   \"pass\": " + snapshot.getPass() + ",");
+         out.println ("   \"fail\": " + snapshot.getFail() + ",");
+         out.println ("   \"skip\": " + snapshot.getSkip() + ",");
+         out.println ("   \"total\": " + snapshot.getTotal() + ",");
+         out.println ("   \"forks\": " + forkCount + ",");
+         out.println ("   \"configurationMillis\": " + TestTimings.getConfigurationTotal() + ",");
+         out.println ("   \"slowestTests\": [");
+         List<TestTimings.MethodTiming> listTiming = TestTimings.getSlowestMethods(OVERVIEW_SLOWEST_COUNT);
+         for (int i = 0; i < listTiming.size(); ++i)
+         {
+            TestTimings.MethodTiming currTiming = listTiming.get(i);
+            out.println ("      {\"name\": " + toJsonString(currTiming.getName()) +
+                         ", \"runs\": " + currTiming.getCount() +
+                         ", \"totalMillis\": " + currTiming.getTotal() +
+                         ", \"maxMillis\": " + currTiming.getMax() + "}" +
+                         ((i < listTiming.size() - 1) ? "," : ""));
+         }
+         out.println ("   ]");
+         out.println ("}");
+         out.close();
+      }
+      catch (IOException ioe)
+      {
+         throw new IllegalStateException("Error writing summary file", ioe);
+      }
+   }
+   
+   /**
+    * @param value A string.
+    * @return {@code value} as a quoted JSON string.
+    */
+   private static String toJsonString (String value)
+   {
+      return NdjsonFormatter.appendString(new StringBuilder (value.length() + 2), value).toString();
+   }
+   
+   /**
+    * @param file File to write.
+    * @return Buffered writer of UTF-8 text to {@code file}, which the pages declare as their encoding.
+    * @throws IOException If the file could not be opened.
+    */
+   private static PrintWriter newPrintWriter (File file) throws IOException
+   {
+      return new PrintWriter (Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8));
+   }
+   
+   /**
+    * @param millis Duration in milliseconds.
+    * @return Duration in milliseconds below a second, in seconds otherwise.
+    */
+   private static String formatMillis (long millis)
+   {
+      return (millis < 1000) ? millis + " ms" : String.format("%.2f s", millis / 1000.0);
+   }
+   
 }
@@ -0,0 +1,274 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * A handler that appends compact binary records to a journal file instead of formatting them as HTML.
+ *
+ * <p>
+ * A journal is a sequence of segments, one for each time the file is opened. A segment starts with a header that holds
+ * the title of the log. Class names, method names, level names and style classes are interned: the first use of a
+ * string in a segment writes a definition that assigns it an id, later records refer to the id. A record holds the
+ * time, level, class, method, thread id, message, style class and an optional throwable, kept as its description and
+ * stack trace text.
+ *
+ * <p>
+ * {@link JournalReader} reads the records back and {@link JournalRenderer} renders them as the HTML log, at
+ * {@link JReportLogUtil#handleTestRunCompletion()} or from the command line.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.journal}. See {@link ReportProperties#LOG_JOURNAL}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class JournalHandler extends Handler
+{
+    /**
+     * Extension of a journal file.
+     */
+    public static final String EXTENSION = ".journal";
+
+    /**
+     * Magic number of a segment header, {@code JRNG}.
+     */
+    static final int MAGIC = 0x4A524E47;
+
+    /**
+     * Version of the journal format.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Tag of a segment header.
+     */
+    static final byte TAG_SEGMENT = 0;
+
+    /**
+     * Tag of a string definition.
+     */
+    static final byte TAG_STRING = 1;
+
+    /**
+     * Tag of a record.
+     */
+    static final byte TAG_RECORD = 2;
+
+    /**
+     * Id written for a null string.
+     */
+    static final int ID_NULL = -1;
+
+    /**
+     * Journal handlers that are open, flushed by {@link #flushAll()}.
+     */
+    private static final Set<JournalHandler> SET_OPEN_HANDLER = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * Flush after every record.
+     */
+    private final boolean autoFlush;
+
+    /**
+     * Stream to the journal file.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Ids of the strings defined in the current segment.
+     */
+    private final Map<String, Integer> mapStringToId = new HashMap<>();
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a handler that appends a new segment titled {@code title} to {@code file}.
+     *
+     * @param file The journal file.
+     * @param title Title of the log rendered from this journal.
+     * @param autoFlush Flush after every record.
+     * @throws IOException If the file could not be opened.
+     */
+    public JournalHandler(File file, String title, boolean autoFlush) throws IOException
+    {
+        this.file = file;
+        this.autoFlush = autoFlush;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        out.writeByte(TAG_SEGMENT);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, title);
+        out.flush();
+        SET_OPEN_HANDLER.add(this);
+    }
+
+    /**
+     * Flush all open journal handlers, so that their journals can be read.
+     */
+    public static void flushAll()
+    {
+        SET_OPEN_HANDLER.forEach(JournalHandler::flush);
+    }
+
+    /**
+     * @return The journal file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+            return;
+
+        try
+        {
+            Level level = record.getLevel();
+            Object param[] = record.getParameters();
+            String style = (param == null || param.length == 0 || param[0] == null) ? null : param[0].toString();
+
+            int levelId = getId(level.getName());
+            int classId = getId(record.getSourceClassName());
+            int methodId = getId(record.getSourceMethodName());
+            int styleId = getId(style);
+
+            out.writeByte(TAG_RECORD);
+            out.writeLong(record.getMillis());
+            out.writeInt(levelId);
+            out.writeInt(level.intValue());
+            out.writeInt(classId);
+            out.writeInt(methodId);
+            out.writeInt(record.getThreadID());
+            writeString(out, record.getMessage());
+            out.writeInt(styleId);
+
+            Throwable thrown = record.getThrown();
+            out.writeBoolean(thrown != null);
+            if (thrown != null)
+            {
+                writeString(out, thrown.toString());
+                writeString(out, ExceptionUtils.getStackTrace(thrown));
+            }
+
+            if (autoFlush)
+                out.flush();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush()
+    {
+        if (closed)
+            return;
+
+        try
+        {
+            out.flush();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        SET_OPEN_HANDLER.remove(this);
+        try
+        {
+            out.close();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Id of {@code value} in the current segment, writing its definition on first use.
+     *
+     * @param value String to intern.
+     * @return Id of the string, {@link #ID_NULL} for null.
+     * @throws IOException If the definition could not be written.
+     */
+    private int getId(String value) throws IOException
+    {
+        if (value == null)
+            return ID_NULL;
+
+        Integer id = mapStringToId.get(value);
+        if (id != null)
+            return id;
+
+        id = mapStringToId.size();
+        mapStringToId.put(value, id);
+        out.writeByte(TAG_STRING);
+        out.writeInt(id);
+        writeString(out, value);
+        return id;
+    }
+
+    /**
+     * Write {@code value} as its UTF-8 length followed by its UTF-8 bytes. Unlike {@link DataOutputStream#writeUTF(String)}
+     * there is no limit on the length.
+     *
+     * @param out Stream to write to.
+     * @param value String to write, may be null.
+     * @throws IOException If the string could not be written.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(ID_NULL);
+            return;
+        }
+
+        byte bytes[] = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
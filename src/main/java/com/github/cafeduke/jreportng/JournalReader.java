@@ -0,0 +1,261 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.JournalHandler.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Reads back the records of a journal written by {@link JournalHandler}.
+ *
+ * <p>
+ * Records are returned as {@link LogRecord} objects that format exactly like the records that were logged, so that
+ * they can be replayed to any handler. A record cut short, as left by a JVM that did not exit cleanly, ends the journal.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class JournalReader implements Closeable
+{
+    /**
+     * Stream from the journal file.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Title of the first segment.
+     */
+    private final String title;
+
+    /**
+     * Strings defined in the current segment, by id.
+     */
+    private final List<String> listString = new ArrayList<>();
+
+    /**
+     * Open {@code file} and read the header of its first segment.
+     *
+     * @param file The journal file.
+     * @throws IOException If the file could not be read or is not a journal.
+     */
+    public JournalReader(File file) throws IOException
+    {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            if (in.readByte() != TAG_SEGMENT)
+                throw new IOException("Not a journal " + file);
+            title = readSegmentHeader();
+        }
+        catch (IOException e)
+        {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Title of the log.
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return The next record, null at the end of the journal.
+     * @throws IOException If the journal could not be read.
+     */
+    public LogRecord next() throws IOException
+    {
+        try
+        {
+            while (true)
+            {
+                int tag = in.read();
+                if (tag == -1)
+                    return null;
+
+                switch (tag)
+                {
+                    case TAG_SEGMENT:
+                        readSegmentHeader();
+                        listString.clear();
+                        break;
+
+                    case TAG_STRING:
+                        int id = in.readInt();
+                        if (id != listString.size())
+                            throw new IOException("Unexpected string id " + id);
+                        listString.add(readString(in));
+                        break;
+
+                    case TAG_RECORD:
+                        return readRecord();
+
+                    default:
+                        throw new IOException("Unexpected tag " + tag);
+                }
+            }
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Read a segment header, following its tag.
+     *
+     * @return Title of the segment.
+     * @throws IOException If the header is not valid.
+     */
+    private String readSegmentHeader() throws IOException
+    {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Bad journal magic number");
+
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported journal version " + version);
+
+        return readString(in);
+    }
+
+    /**
+     * Read a record, following its tag.
+     *
+     * @return The record.
+     * @throws IOException If the record could not be read.
+     */
+    private LogRecord readRecord() throws IOException
+    {
+        long millis = in.readLong();
+        String levelName = getString(in.readInt());
+        int levelValue = in.readInt();
+        String className = getString(in.readInt());
+        String methodName = getString(in.readInt());
+        int threadId = in.readInt();
+        String message = readString(in);
+        String style = getString(in.readInt());
+        Throwable thrown = in.readBoolean() ? new JournalThrowable(readString(in), readString(in)) : null;
+
+        LogRecord record = new LogRecord(getLevel(levelName, levelValue), message);
+        record.setMillis(millis);
+        record.setSourceClassName(className);
+        record.setSourceMethodName(methodName);
+        record.setThreadID(threadId);
+        if (style != null)
+            record.setParameters(new String[] { style });
+        record.setThrown(thrown);
+        return record;
+    }
+
+    /**
+     * @param id String id.
+     * @return String defined with {@code id}, null for {@link JournalHandler#ID_NULL}.
+     * @throws IOException If {@code id} is not defined.
+     */
+    private String getString(int id) throws IOException
+    {
+        if (id == ID_NULL)
+            return null;
+        if (id < 0 || id >= listString.size())
+            throw new IOException("Undefined string id " + id);
+        return listString.get(id);
+    }
+
+    /**
+     * @param name Level name.
+     * @param value Level value.
+     * @return The standard level named {@code name}, otherwise a level with {@code value}.
+     */
+    private static Level getLevel(String name, int value)
+    {
+        try
+        {
+            return Level.parse(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return Level.parse(Integer.toString(value));
+        }
+    }
+
+    /**
+     * Read a string written by {@link JournalHandler#writeString(java.io.DataOutputStream, String)}.
+     *
+     * @param in Stream to read from.
+     * @return The string, may be null.
+     * @throws IOException If the string could not be read.
+     */
+    static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length == ID_NULL)
+            return null;
+
+        byte bytes[] = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A throwable that describes and prints itself as the throwable that was logged.
+     */
+    private static final class JournalThrowable extends Throwable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+
+        private final String trace;
+
+        JournalThrowable(String text, String trace)
+        {
+            super(text, null, false, false);
+            this.text = text;
+            this.trace = trace;
+        }
+
+        @Override
+        public String toString()
+        {
+            return text;
+        }
+
+        @Override
+        public void printStackTrace(PrintStream s)
+        {
+            s.print(trace);
+        }
+
+        @Override
+        public void printStackTrace(PrintWriter s)
+        {
+            s.print(trace);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Renders the journals written by {@link JournalHandler} as HTML logs, in a single pass over each journal.
+ *
+ * The log of {@code <logger name>.journal} is written to {@code <logger name>.html} in the same directory, which is where
+ * the log index pages link to. Run from the command line to render journals lazily, for instance after a run that did
+ * not complete:
+ *
+ * <pre>
+ * java -cp jreportng.jar com.github.cafeduke.jreportng.JournalRenderer [journal file or directory ...]
+ * </pre>
+ *
+ * Without arguments the journals in {@link ReportProperties#DIR_REPORT_LOG_HOME} are rendered.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public final class JournalRenderer
+{
+   private JournalRenderer ()
+   {
+
+   }
+
+   /**
+    * Render the journals given as arguments.
+    *
+    * @param arg Journal files or directories of journals.
+    * @throws IOException If a journal could not be rendered.
+    */
+   public static void main (String arg[]) throws IOException
+   {
+      if (arg.length == 0)
+         arg = new String[] {DIR_REPORT_LOG_HOME.getPath()};
+
+      for (String currArg : arg)
+      {
+         File file = new File (currArg);
+         int count = file.isDirectory() ? renderAll (file) : render (file) ? 1 : 0;
+         System.out.println ("Rendered " + count + " journal(s) from " + file);
+      }
+   }
+
+   /**
+    * Render every journal in {@code dir}. The journals are rendered at the same time, see
+    * {@link ReportScheduler#forEach(java.util.Collection, java.util.function.Consumer)}.
+    *
+    * @param dir Directory of journals.
+    * @return Number of journals rendered.
+    * @throws IOException If a journal could not be rendered.
+    */
+   public static int renderAll (File dir) throws IOException
+   {
+      File journal[] = dir.listFiles((d, name) -> name.endsWith(JournalHandler.EXTENSION));
+      if (journal == null)
+         return 0;
+
+      AtomicInteger count = new AtomicInteger ();
+      try
+      {
+         ReportScheduler.forEach(Arrays.asList(journal), (currJournal) ->
+         {
+            try
+            {
+               if (render (currJournal))
+                  count.incrementAndGet();
+            }
+            catch (IOException e)
+            {
+               throw new UncheckedIOException (e);
+            }
+         });
+      }
+      catch (UncheckedIOException e)
+      {
+         throw e.getCause();
+      }
+      return count.get();
+   }
+
+   /**
+    * Render {@code fileJournal} as the HTML log next to it, replacing an earlier rendering. The log is written for the
+    * log viewer if {@link ReportProperties#LOG_VIEWER} is set, or compressed if {@link ReportProperties#LOG_GZIP} is set.
+    *
+    * @param fileJournal The journal file.
+    * @return False if {@code fileJournal} is empty, nothing is rendered in that case.
+    * @throws IOException If the journal could not be read or the log could not be written.
+    */
+   public static boolean render (File fileJournal) throws IOException
+   {
+      if (fileJournal.length() == 0)
+         return false;
+
+      String name = fileJournal.getName();
+      File fileHtml = new File (fileJournal.getParentFile(), name.substring(0, name.length() - JournalHandler.EXTENSION.length()) + LOG_FILE_EXTENSION);
+
+      try (JournalReader reader = new JournalReader (fileJournal))
+      {
+         Handler handler;
+         if (ReportProperties.LOG_VIEWER)
+            handler = new ChunkedLogHandler (fileHtml, reader.getTitle(), false, ReportProperties.LOG_VIEWER_CHUNK_RECORDS, false);
+         else
+            handler = new LogFileHandler (fileHtml, new HtmlFormatter (reader.getTitle()), false, false, LOG_GZIP);
+         try
+         {
+            LogRecord record;
+            while ((record = reader.next()) != null)
+               handler.publish(record);
+         }
+         finally
+         {
+            handler.close();
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,360 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A handler that writes formatted records to a single file through a buffered UTF-8 writer.
+ *
+ * <p>
+ * Unlike {@link java.util.logging.FileHandler} this handler does not create lock files and flushes after each record
+ * only when {@code autoFlush} is set. With {@code autoFlush} off the owner decides when to flush, which lets an
+ * {@link AsyncLogHandler} write a batch of records with a single flush.
+ *
+ * <p>
+ * With {@code compress} set the file is written as gzip, {@code <name>.html.gz}, which shrinks the repetitive markup
+ * of a log several times over. The tail is written as a gzip member of its own after the records, so that a log
+ * opened again in append mode drops that member and continues the document in a new member. Readers of gzip files,
+ * such as {@code zcat} and {@link java.util.zip.GZIPInputStream}, read the concatenated members as one document. A
+ * browser inflates the file only when it is served with {@code Content-Encoding: gzip}, see
+ * {@link ReportProperties#LOG_GZIP}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class LogFileHandler extends Handler
+{
+    /**
+     * Initial capacity of the record buffer.
+     */
+    private static final int BUFFER_CAPACITY = 1024;
+
+    /**
+     * Record buffers larger than this are discarded after use, so that one huge record does not pin memory.
+     */
+    private static final int BUFFER_CAPACITY_MAX = 64 * 1024;
+
+    /**
+     * Size of the buffer of the compressor.
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The log file.
+     */
+    private final File file;
+
+    /**
+     * Flush after every record.
+     */
+    private final boolean autoFlush;
+
+    /**
+     * Stream to the log file that counts the bytes written.
+     */
+    private final CountingOutputStream stream;
+
+    /**
+     * Compressing stream between {@link #writer} and {@link #stream}, null if the file is not compressed.
+     */
+    private final GZIPOutputStream gzip;
+
+    /**
+     * Writer to the log file.
+     */
+    private Writer writer;
+
+    /**
+     * Buffer into which an {@link AppendableFormatter} appends a record.
+     */
+    private StringBuilder buffer = new StringBuilder(BUFFER_CAPACITY);
+
+    /**
+     * Characters copied from {@link #buffer} to be written.
+     */
+    private char chars[] = new char[BUFFER_CAPACITY];
+
+    /**
+     * True once the head returned by the formatter has been written.
+     */
+    private boolean doneHead = false;
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a handler that writes records to {@code file} formatted by {@code formatter}.
+     *
+     * <p>
+     * When appending to a file that has content, the records continue the document in the file: the tail of a closed
+     * document is removed and no second head is written.
+     *
+     * @param file The log file.
+     * @param formatter Formatter for the records.
+     * @param append Append to {@code file} if it exists, truncate otherwise.
+     * @param autoFlush Flush after every record.
+     * @throws IOException If the file could not be opened.
+     */
+    public LogFileHandler(File file, Formatter formatter, boolean append, boolean autoFlush) throws IOException
+    {
+        this(file, formatter, append, autoFlush, false);
+    }
+
+    /**
+     * Create a handler that writes records to {@code file} formatted by {@code formatter}, compressed with gzip if
+     * {@code compress} is set.
+     *
+     * @param file The log file.
+     * @param formatter Formatter for the records.
+     * @param append Append to {@code file} if it exists, truncate otherwise.
+     * @param autoFlush Flush after every record. A compressed file is flushed as the compressor fills its buffer.
+     * @param compress Write the file as gzip.
+     * @throws IOException If the file could not be opened.
+     */
+    public LogFileHandler(File file, Formatter formatter, boolean append, boolean autoFlush, boolean compress) throws IOException
+    {
+        this.file = file;
+        this.autoFlush = autoFlush && !compress;
+        setFormatter(formatter);
+        long size = 0;
+        if (append && file.length() > 0)
+        {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                String tail = formatter.getTail(this);
+                size = compress ? stripTail(channel, channel.size(), gzip(tail)) : stripTail(channel, channel.size(), tail);
+                channel.truncate(size);
+            }
+            doneHead = true;
+        }
+        stream = new CountingOutputStream(new FileOutputStream(file, append), size);
+        gzip = compress ? new GZIPOutputStream(stream, GZIP_BUFFER_SIZE) : null;
+        writer = new BufferedWriter(new OutputStreamWriter(compress ? gzip : stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The log file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return Size of the log file, including the content it had when appending. Bytes still buffered are not counted,
+     *         nor are records not yet compressed.
+     */
+    public long getSize()
+    {
+        return stream.count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+            return;
+
+        Formatter formatter = getFormatter();
+        buffer.setLength(0);
+        try
+        {
+            if (formatter instanceof AppendableFormatter)
+                ((AppendableFormatter) formatter).format(record, buffer);
+            else
+                buffer.append(formatter.format(record));
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try
+        {
+            writeHead();
+            int length = buffer.length();
+            if (chars.length < length)
+                chars = new char[Math.max(length, chars.length * 2)];
+            buffer.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+            if (autoFlush)
+                writer.flush();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+
+        if (chars.length > BUFFER_CAPACITY_MAX)
+        {
+            buffer = new StringBuilder(BUFFER_CAPACITY);
+            chars = new char[BUFFER_CAPACITY];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush()
+    {
+        if (closed)
+            return;
+
+        try
+        {
+            writer.flush();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * Write the tail returned by the formatter and close the file. The head is written first if no record was
+     * published, so that the file is always a complete document.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        try
+        {
+            writeHead();
+            String tail = getFormatter().getTail(this);
+            if (gzip == null)
+            {
+                writer.write(tail);
+            }
+            else
+            {
+                writer.flush();
+                gzip.finish();
+                stream.write(gzip(tail));
+            }
+            writer.close();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Write the head returned by the formatter, if not already written.
+     *
+     * @throws IOException If the head could not be written.
+     */
+    private void writeHead() throws IOException
+    {
+        if (doneHead)
+            return;
+
+        doneHead = true;
+        writer.write(getFormatter().getHead(this));
+    }
+
+    /**
+     * Size of the content of {@code channel} without the {@code tail} it ends with, so that records appended to a
+     * closed document continue it.
+     *
+     * @param channel Channel to the log file.
+     * @param size Size of the content of the log file.
+     * @param tail Tail written by the formatter on close.
+     * @return {@code size} less the size of the tail if the content ends with the tail, {@code size} otherwise.
+     * @throws IOException If the file could not be read.
+     */
+    static long stripTail(FileChannel channel, long size, String tail) throws IOException
+    {
+        return stripTail(channel, size, tail.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Size of the content of {@code channel} without the {@code tailBytes} it ends with.
+     *
+     * @param channel Channel to the log file.
+     * @param size Size of the content of the log file.
+     * @param tailBytes Bytes of the tail written on close.
+     * @return {@code size} less the size of the tail if the content ends with the tail, {@code size} otherwise.
+     * @throws IOException If the file could not be read.
+     */
+    static long stripTail(FileChannel channel, long size, byte tailBytes[]) throws IOException
+    {
+        if (tailBytes.length == 0 || size < tailBytes.length)
+            return size;
+
+        ByteBuffer buffer = ByteBuffer.allocate(tailBytes.length);
+        while (buffer.hasRemaining() && channel.read(buffer, size - tailBytes.length + buffer.position()) >= 0)
+            ;
+        return Arrays.equals(buffer.array(), tailBytes) ? size - tailBytes.length : size;
+    }
+
+    /**
+     * @param text Text to compress.
+     * @return {@code text} as a gzip member of its own. The same text always gives the same bytes.
+     * @throws IOException If the text could not be compressed.
+     */
+    private static byte[] gzip(String text) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipText = new GZIPOutputStream(out))
+        {
+            gzipText.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A stream that counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        private volatile long count;
+
+        CountingOutputStream(OutputStream out, long count)
+        {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
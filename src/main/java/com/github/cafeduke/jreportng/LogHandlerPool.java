@@ -0,0 +1,144 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Caps the number of {@link ReopenableHandler} objects that have their log open at the same time.
+ *
+ * <p>
+ * When a handler opens its log and the cap is exceeded, the handlers used least recently are released, closing their
+ * files and freeing their buffers. A released handler opens its log again, in append mode, when it is next used. Thus
+ * the number of open files and the memory they hold stay constant, however many test classes a suite has.
+ *
+ * <p>
+ * The pool keeps a clock that ticks each time a handler opens its log. A handler stamps itself with the clock as it
+ * publishes a record, with a volatile read and write and no lock of the pool, so logging does not contend on the pool.
+ * The pool compares the stamps only when a handler opens its log. Handlers used between the same two opens have the
+ * same stamp and are released in the order they were opened, so the order is least recently used to within an open.
+ *
+ * <p>
+ * A handler reports to the pool while holding its own lock, and the pool never calls a handler while holding its
+ * lock. The handlers to be released are returned to the caller, which releases them after giving up its own lock.
+ *
+ * <p>
+ * Set the cap using system property {@code jreport.log.maxopen}. See {@link ReportProperties#LOG_MAX_OPEN}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class LogHandlerPool
+{
+    /**
+     * Maximum number of open handlers.
+     */
+    private final int maxOpen;
+
+    /**
+     * Open handlers, in the order they were opened.
+     */
+    private final LinkedHashSet<ReopenableHandler> setOpen = new LinkedHashSet<>();
+
+    /**
+     * Number of times a handler opened its log, the stamp of a handler used now.
+     */
+    private volatile long clock = 0;
+
+    /**
+     * Number of handlers released to keep within {@link #maxOpen}.
+     */
+    private long evictions = 0;
+
+    /**
+     * Create a pool.
+     *
+     * @param maxOpen Maximum number of open handlers, at least 1.
+     */
+    public LogHandlerPool(int maxOpen)
+    {
+        if (maxOpen < 1)
+            throw new IllegalArgumentException("Maximum number of open handlers must be positive: " + maxOpen);
+        this.maxOpen = maxOpen;
+    }
+
+    /**
+     * @return Maximum number of open handlers.
+     */
+    public int getMaxOpen()
+    {
+        return maxOpen;
+    }
+
+    /**
+     * @return Number of open handlers.
+     */
+    public synchronized int getOpenCount()
+    {
+        return setOpen.size();
+    }
+
+    /**
+     * @return Number of handlers released to keep within the cap.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return The stamp of a handler used now.
+     */
+    long getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * Register {@code handler}, which has opened its log, as the most recently used.
+     *
+     * @param handler Handler that opened its log.
+     * @return Handlers to be released by the caller, least recently used first. Empty if the cap is not exceeded.
+     */
+    synchronized List<ReopenableHandler> opened(ReopenableHandler handler)
+    {
+        handler.setLastUsed(clock++);
+        setOpen.add(handler);
+        if (setOpen.size() <= maxOpen)
+            return Collections.emptyList();
+
+        // Stamps change as other handlers publish, so they are read once
+        ReopenableHandler open[] = setOpen.toArray(new ReopenableHandler[setOpen.size()]);
+        long lastUsed[] = new long[open.length];
+        for (int i = 0; i < open.length; ++i)
+            lastUsed[i] = open[i].getLastUsed();
+
+        List<ReopenableHandler> listEvict = new ArrayList<>();
+        while (setOpen.size() > maxOpen)
+        {
+            int eldest = -1;
+            for (int i = 0; i < open.length; ++i)
+            {
+                if (open[i] != null && open[i] != handler && (eldest < 0 || lastUsed[i] < lastUsed[eldest]))
+                    eldest = i;
+            }
+            if (eldest < 0)
+                break;
+            setOpen.remove(open[eldest]);
+            listEvict.add(open[eldest]);
+            open[eldest] = null;
+            ++evictions;
+        }
+        return listEvict;
+    }
+
+    /**
+     * Unregister {@code handler}, which has closed its log.
+     *
+     * @param handler Handler that closed its log.
+     */
+    synchronized void closed(ReopenableHandler handler)
+    {
+        setOpen.remove(handler);
+    }
+}
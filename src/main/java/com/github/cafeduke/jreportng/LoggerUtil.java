@@ -4,6 +4,9 @@ import static com.github.cafeduke.jreportng.ReportProperties.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.*;
 
 /**
@@ -20,9 +23,26 @@ public final class LoggerUtil
    public static List<Handler> LIST_HANDLER = new ArrayList<> (); 
    
    /**
-    * This is required to maintain a reference to the global default JReportNG logger.
+    * Loggers by class. Besides saving the {@code LogManager} lookup, this keeps a strong reference to each logger, so
+    * that a logger is never garbage collected and set up again.
     */
-   private static Logger DEFAULT_LOGGER = LoggerUtil.getLogger(LOG_DEFAULT_CLASS);
+   private static final ConcurrentMap<Class<?>,LoggerHolder> MAP_CLASS_TO_LOGGER = new ConcurrentHashMap<> ();
+   
+   /**
+    * Caps the number of open class logs, null if {@link ReportProperties#LOG_MAX_OPEN} sets no cap.
+    */
+   private static final LogHandlerPool HANDLER_POOL = (LOG_MAX_OPEN > 0) ? new LogHandlerPool (LOG_MAX_OPEN) : null;
+   
+   /**
+    * Write the class logs on a background thread, as set by {@link ReportProperties#LOG_ASYNC} or needed to compress
+    * the logs without delaying the test threads, see {@link ReportProperties#LOG_GZIP}.
+    */
+   private static final boolean WRITE_ASYNC = LOG_ASYNC || (LOG_GZIP && !LOG_VIEWER);
+   
+   /**
+    * True once the shutdown hook that closes the log files is registered.
+    */
+   private static boolean shutdownHookRegistered = false;
    
    private LoggerUtil ()
    {
@@ -30,22 +50,64 @@ public final class LoggerUtil
    }
    
    /**
-    * Create a logger object using the fully qualified name of the class as logger name.
+    * Get the logger for {@code testClass}, using the fully qualified name of the class as logger name.
+    * 
+    * A logger that is already set up is returned with lock free reads. Otherwise the logger is created and set up
+    * exactly once, even when several threads ask for it at the same time. The set up, which opens the log files, holds
+    * the lock of the class only, see {@link LoggerHolder}. Setting up the first logger initializes reporting,
+    * see {@link JReportLogUtil#handleTestRunStart()}.
     * 
     * @param testClass Class that needs logger object. 
     * @return Logger object for the the testClass. A new object is not created if one already exists with the same name.
     */
    protected static Logger getLogger (Class<?> testClass)
    {
-      if (testClass == LOG_DEFAULT_CLASS && DEFAULT_LOGGER != null)
-         return DEFAULT_LOGGER;
+      LoggerHolder holder = MAP_CLASS_TO_LOGGER.get(testClass);
+      Logger logger = (holder == null) ? null : holder.logger;
+      if (logger != null)
+         return logger;
       
+      JReportLogUtil.handleTestRunStart();
+      return MAP_CLASS_TO_LOGGER.computeIfAbsent(testClass, LoggerHolder::new).getLogger();
+   }
+   
+   /**
+    * Create a logger for {@code testClass}.
+    * 
+    * @param testClass Class that needs logger object.
+    * @return Logger object for the testClass.
+    */
+   private static Logger createLogger (Class<?> testClass)
+   {
       String loggerName  = testClass.getName();      
-      String logFileName = testClass.getName() + ".html";
+      String logFileName = testClass.getName() + LOG_FILE_EXTENSION;
       String logTitle    = testClass.getSimpleName();
       return createLogger (loggerName, logFileName, logTitle);
    }
    
+   /**
+    * @param testClass A class.
+    * @return Number of times the logger of {@code testClass} was set up, 1 once it is used.
+    */
+   static int getSetUpCount (Class<?> testClass)
+   {
+      LoggerHolder holder = MAP_CLASS_TO_LOGGER.get(testClass);
+      return (holder == null) ? 0 : holder.setUpCount.get();
+   }
+   
+   /**
+    * Wait until the records queued by asynchronous handlers are written to the log files.
+    * Does nothing if asynchronous logging was never used.
+    * 
+    * @return Number of records discarded due to {@link AsyncLogHandler.Backpressure#DROP} since the last drain.
+    */
+   protected static long drainHandlers ()
+   {
+      if (!AsyncLogWriter.isStarted())
+         return 0;
+      return AsyncLogWriter.getInstance().drain();
+   }
+   
    /**
     * Create a logger with given {@code loggerName} to log details to file {@code logFilename} with HTML title {@code logTitle}.  
     * 
@@ -70,6 +132,24 @@ public final class LoggerUtil
     *    <li>Set log level to {@link com.github.cafeduke.jreportng.LoggerUtil LoggerUtil}</li>
     *    <li>Create a file handler for file {@code DIR_JREPORT_TARGET_LOG/logFileName} </li>
     *    <li>Add HtmlFormatter with {@code logTitle} to the file hander</li>
+    *    <li>If {@link ReportProperties#LOG_JOURNAL} is set, use a {@link JournalHandler} for file
+    *        {@code DIR_JREPORT_TARGET_LOG/<logger name>.journal} instead</li>
+    *    <li>Otherwise, if {@link ReportProperties#LOG_VIEWER} is set, use a {@link ChunkedLogHandler}</li>
+    *    <li>Otherwise, if {@link ReportProperties#LOG_GZIP} is set, use a {@link LogFileHandler} that compresses</li>
+    *    <li>Otherwise, if {@link ReportProperties#LOG_MMAP} is set, use a {@link MappedLogFileHandler}</li>
+    *    <li>Wrap the handler with a {@link ReopenableHandler}, so that the log can be closed when its class completes.
+    *        The first open replaces the log of an earlier run, unless {@link ReportProperties#LOG_APPEND} is set.
+    *        At most {@link ReportProperties#LOG_MAX_OPEN} logs are open, the least recently used are closed
+    *        and opened again when next used</li>
+    *    <li>Cap the log with a {@link BoundedLogHandler} if {@link ReportProperties#LOG_LIMIT_BYTES} or
+    *        {@link ReportProperties#LOG_LIMIT_RECORDS} is set, unless a journal is written. Each part of the log has a
+    *        {@link ReopenableHandler} of its own, while the cap is kept for the class across the releases</li>
+    *    <li>Wrap the handler with an {@link AsyncLogHandler} if {@link ReportProperties#LOG_ASYNC} is set, or if the
+    *        logs are compressed, so that test threads do not wait for compression</li>
+    *    <li>If {@link ReportProperties#LOG_NDJSON} is set, add a handler set up the same way for
+    *        {@code DIR_JREPORT_TARGET_LOG/<logger name>.ndjson} with an {@link NdjsonFormatter}</li>
+    *    <li>If {@link ReportProperties#LOG_SEARCH} is set, add a {@link SearchIndexHandler} that indexes the records on
+    *        the background thread of {@link AsyncLogHandler}</li>
     * </ul>
     * @param logger The logger to be setup.
     * @param logFileName HTML log filename.
@@ -86,16 +166,265 @@ public final class LoggerUtil
       try
       {
          DIR_REPORT_LOG_HOME.mkdirs();
-         String logFilePath = new File (DIR_REPORT_LOG_HOME, logFileName).getAbsolutePath();
-         handler = new FileHandler (logFilePath, true);
+         String loggerName = logger.getName();
+         if (!LOG_JOURNAL && (LOG_LIMIT_BYTES > 0 || LOG_LIMIT_RECORDS > 0))
+         {
+            BoundedLogHandler.PartFactory factory = (part) -> new ReopenableHandler (
+               (reopen) -> openLogPart (loggerName, logFileName, logTitle, part, reopen || (LOG_APPEND && part == 1)), HANDLER_POOL);
+            handler = new BoundedLogHandler (factory, LOG_LIMIT_BYTES, LOG_LIMIT_RECORDS, LOG_LIMIT_MODE, LOG_LIMIT_TAIL);
+         }
+         else
+         {
+            handler = new ReopenableHandler ((reopen) -> openLogHandler (loggerName, logFileName, logTitle, reopen || LOG_APPEND), HANDLER_POOL);
+         }
          handler.setLevel(LOG_LEVEL);
-         handler.setFormatter(new HtmlFormatter(logTitle));
+         if (WRITE_ASYNC)
+            handler = new AsyncLogHandler (handler, LOG_ASYNC_BACKPRESSURE);
       }
       catch (IOException e)
       {
          throw new IllegalStateException ("Error setting log handler", e);
       }
       logger.addHandler(handler);
+      if (LOG_NDJSON)
+         logger.addHandler(createNdjsonHandler (logger.getName()));
+      if (LOG_SEARCH)
+         logger.addHandler(createSearchHandler (logger.getName()));
       LIST_HANDLER.forEach((h) -> logger.addHandler(h));
+      registerShutdownHook ();
+   }
+   
+   /**
+    * Create the handler that writes the records of logger {@code loggerName} as JSON lines to
+    * {@code <logger name>.ndjson}. Like the HTML log, it is closed when its class completes, counts against
+    * {@link ReportProperties#LOG_MAX_OPEN} and writes on a background thread if {@link ReportProperties#LOG_ASYNC} is set.
+    * 
+    * @param loggerName Name of the logger.
+    * @return The handler.
+    */
+   private static Handler createNdjsonHandler (String loggerName)
+   {
+      File logFile = new File (DIR_REPORT_LOG_HOME, loggerName + NdjsonFormatter.EXTENSION);
+      Handler handler;
+      try
+      {
+         handler = new ReopenableHandler ((reopen) -> new LogFileHandler (logFile, new NdjsonFormatter (), reopen || LOG_APPEND, !LOG_ASYNC), HANDLER_POOL);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException ("Error setting NDJSON log handler", e);
+      }
+      handler.setLevel(LOG_LEVEL);
+      if (LOG_ASYNC)
+         handler = new AsyncLogHandler (handler, LOG_ASYNC_BACKPRESSURE);
+      return handler;
+   }
+   
+   /**
+    * Create the handler that adds the records of logger {@code loggerName} to the search index. Records are indexed on
+    * the background thread of {@link AsyncLogHandler}, whether {@link ReportProperties#LOG_ASYNC} is set or not, so that
+    * test threads do not wait for the index.
+    * 
+    * @param loggerName Name of the logger.
+    * @return The handler.
+    */
+   private static Handler createSearchHandler (String loggerName)
+   {
+      Handler handler = new SearchIndexHandler (SearchIndex.getDefault(), loggerName);
+      handler.setLevel(LOG_LEVEL);
+      return new AsyncLogHandler (handler, LOG_ASYNC_BACKPRESSURE);
+   }
+   
+   /**
+    * Open the handler that writes the log of logger {@code loggerName}.
+    * 
+    * @param loggerName Name of the logger.
+    * @param logFileName HTML log filename.
+    * @param logTitle The title for the HTML file.
+    * @param append Continue the log in the file, rather than replace it.
+    * @return The handler.
+    * @throws IOException If the log could not be opened.
+    */
+   private static Handler openLogHandler (String loggerName, String logFileName, String logTitle, boolean append) throws IOException
+   {
+      Handler handler;
+      if (LOG_JOURNAL)
+      {
+         File journalFile = new File (DIR_REPORT_LOG_HOME, loggerName + JournalHandler.EXTENSION);
+         if (!append)
+            journalFile.delete();
+         handler = new JournalHandler (journalFile, logTitle, !WRITE_ASYNC);
+      }
+      else
+      {
+         handler = openLogFile (new File (DIR_REPORT_LOG_HOME, logFileName), logTitle, append);
+      }
+      handler.setLevel(LOG_LEVEL);
+      return handler;
+   }
+   
+   /**
+    * Close the log files of the logger of {@code testClass}, after writing the records queued for them. A record logged
+    * afterwards opens the log again.
+    * 
+    * When the logs are written asynchronously, the release is queued behind the records of the class and the calling
+    * thread does not wait for it, nor for the records of other classes.
+    * 
+    * @param testClass Class whose logger is released.
+    */
+   protected static void releaseLogger (Class<?> testClass)
+   {
+      LoggerHolder holder = MAP_CLASS_TO_LOGGER.get(testClass);
+      Logger logger = (holder == null) ? null : holder.logger;
+      if (logger == null)
+         return;
+      
+      if (WRITE_ASYNC && AsyncLogWriter.isStarted())
+         AsyncLogWriter.getInstance().execute(() -> releaseHandlers (logger, false));
+      else
+         releaseHandlers (logger, false);
+   }
+   
+   /**
+    * Close the log files of all loggers, after writing the queued records and the records that a capped log kept, see
+    * {@link BoundedLogHandler#complete()}. A record logged afterwards opens its log again.
+    * 
+    * The logs are closed at the same time, see {@link ReportScheduler#forEach(Collection, java.util.function.Consumer)},
+    * as closing a log writes its tail and flushes its buffer.
+    */
+   protected static void releaseAllLoggers ()
+   {
+      drainHandlers ();
+      List<Logger> listLogger = new ArrayList<> ();
+      for (LoggerHolder currHolder : MAP_CLASS_TO_LOGGER.values())
+         if (currHolder.logger != null)
+            listLogger.add(currHolder.logger);
+      ReportScheduler.forEach(listLogger, (logger) -> releaseHandlers (logger, true));
+   }
+   
+   /**
+    * Release the {@link ReopenableHandler} and {@link BoundedLogHandler} of {@code logger}. Records queued by an
+    * {@link AsyncLogHandler} must be drained first.
+    * 
+    * @param logger A logger set up by this class.
+    * @param complete True to write the records that a capped log kept, when the run completes.
+    */
+   private static void releaseHandlers (Logger logger, boolean complete)
+   {
+      for (Handler currHandler : logger.getHandlers())
+      {
+         if (currHandler instanceof AsyncLogHandler)
+            currHandler = ((AsyncLogHandler) currHandler).getDelegate();
+         if (currHandler instanceof BoundedLogHandler && complete)
+            ((BoundedLogHandler) currHandler).complete();
+         else if (currHandler instanceof BoundedLogHandler)
+            ((BoundedLogHandler) currHandler).release();
+         else if (currHandler instanceof ReopenableHandler)
+            ((ReopenableHandler) currHandler).release();
+      }
+   }
+   
+   /**
+    * Register, once, a shutdown hook that closes the log files, so that each log is a complete document even if the run
+    * does not complete.
+    */
+   private static synchronized void registerShutdownHook ()
+   {
+      if (shutdownHookRegistered)
+         return;
+      
+      shutdownHookRegistered = true;
+      Runtime.getRuntime().addShutdownHook(new Thread(LoggerUtil::releaseAllLoggers, "JReportNG-LogClose"));
+   }
+   
+   /**
+    * Open the handler for {@code part} of the log of logger {@code loggerName}. The first part is {@code logFileName},
+    * the parts that follow are {@code <logger name>.part<part>.html} and are linked from the package page.
+    * 
+    * @param loggerName Name of the logger.
+    * @param logFileName HTML log filename.
+    * @param logTitle The title for the HTML file.
+    * @param part Part number, 1 for the first part.
+    * @param append Continue the part in its file, rather than replace it.
+    * @return Handler that writes the part.
+    * @throws IOException If the file could not be opened.
+    */
+   private static Handler openLogPart (String loggerName, String logFileName, String logTitle, int part, boolean append) throws IOException
+   {
+      if (part == 1)
+         return openLogFile (new File (DIR_REPORT_LOG_HOME, logFileName), logTitle, append);
+      
+      Handler handler = openLogFile (new File (DIR_REPORT_LOG_HOME, getLogPartFileName(loggerName, part)), logTitle + " (part " + part + ")", append);
+      JReportLogUtil.updateLogPart(loggerName, part);
+      return handler;
+   }
+   
+   /**
+    * Open the HTML file handler for {@code logFile}. A {@link ChunkedLogHandler} is used for the log viewer if
+    * {@link ReportProperties#LOG_VIEWER} is set, otherwise the file is compressed if {@link ReportProperties#LOG_GZIP} is
+    * set or memory mapped if {@link ReportProperties#LOG_MMAP} is set.
+    * 
+    * @param logFile HTML log file.
+    * @param logTitle The title for the HTML file.
+    * @param append Append to the file if it exists.
+    * @return The handler.
+    * @throws IOException If the file could not be opened.
+    */
+   private static Handler openLogFile (File logFile, String logTitle, boolean append) throws IOException
+   {
+      Handler handler;
+      if (LOG_VIEWER)
+         handler = new ChunkedLogHandler (logFile, logTitle, append, LOG_VIEWER_CHUNK_RECORDS, !LOG_ASYNC);
+      else if (LOG_GZIP)
+         handler = new LogFileHandler (logFile, new HtmlFormatter(logTitle), append, false, true);
+      else if (LOG_MMAP)
+         handler = new MappedLogFileHandler (logFile, new HtmlFormatter(logTitle), append, LOG_MMAP_CHUNK_SIZE);
+      else
+         handler = new LogFileHandler (logFile, new HtmlFormatter(logTitle), append, !LOG_ASYNC);
+      handler.setLevel(LOG_LEVEL);
+      return handler;
+   }
+   
+   /**
+    * @param loggerName Name of the logger.
+    * @param part Part number, 2 or more.
+    * @return Name of the file for {@code part} of the log.
+    */
+   static String getLogPartFileName (String loggerName, int part)
+   {
+      return loggerName + ".part" + part + LOG_FILE_EXTENSION;
+   }
+   
+   /**
+    * The logger of a class, set up on first use while holding the lock of the holder rather than a lock of
+    * {@link LoggerUtil#MAP_CLASS_TO_LOGGER}, so that opening the log files of one class does not block other classes.
+    */
+   private static final class LoggerHolder
+   {
+      final Class<?> testClass;
+      volatile Logger logger;
+      final AtomicInteger setUpCount = new AtomicInteger ();
+      
+      LoggerHolder (Class<?> testClass)
+      {
+         this.testClass = testClass;
+      }
+      
+      Logger getLogger ()
+      {
+         Logger result = logger;
+         if (result != null)
+            return result;
+         
+         synchronized (this)
+         {
+            if (logger == null)
+            {
+               logger = createLogger (testClass);
+               setUpCount.incrementAndGet();
+            }
+            return logger;
+         }
+      }
    }
 }
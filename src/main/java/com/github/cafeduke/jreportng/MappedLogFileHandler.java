@@ -0,0 +1,376 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that encodes formatted records as UTF-8 straight into a memory-mapped region of the log file.
+ *
+ * <p>
+ * The file is mapped one chunk at a time. When a chunk is full the next one is mapped, growing the file by a chunk, so
+ * that appending a record costs no system call. Records are visible to readers of the file as soon as they are
+ * published, followed by the zero bytes of the unused part of the chunk until the handler is closed and the file is
+ * truncated to its content. A file left padded by a JVM that did not close the handler is trimmed when reopened.
+ * When appending to a file that has content, the records continue the document in the file: the tail of a closed
+ * document is removed and no second head is written.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.mmap}. See {@link ReportProperties#LOG_MMAP}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class MappedLogFileHandler extends Handler
+{
+    /**
+     * Initial capacity of the record buffer.
+     */
+    private static final int BUFFER_CAPACITY = 1024;
+
+    /**
+     * Record buffers larger than this are discarded after use, so that one huge record does not pin memory.
+     */
+    private static final int BUFFER_CAPACITY_MAX = 64 * 1024;
+
+    /**
+     * The log file.
+     */
+    private final File file;
+
+    /**
+     * Size of a mapped chunk in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * Channel to the log file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * UTF-8 encoder of the formatted records.
+     */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Encoded bytes to be copied to the mapped chunk.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+    /**
+     * The mapped chunk.
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * File position of the mapped chunk.
+     */
+    private long mapStart;
+
+    /**
+     * Buffer into which an {@link AppendableFormatter} appends a record.
+     */
+    private StringBuilder buffer = new StringBuilder(BUFFER_CAPACITY);
+
+    /**
+     * Characters copied from {@link #buffer} to be encoded.
+     */
+    private char chars[] = new char[BUFFER_CAPACITY];
+
+    /**
+     * True once the head returned by the formatter has been written.
+     */
+    private boolean doneHead = false;
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a handler that writes records to {@code file} formatted by {@code formatter}.
+     *
+     * @param file The log file.
+     * @param formatter Formatter for the records.
+     * @param append Append to {@code file} if it exists, truncate otherwise.
+     * @param chunkSize Size of a mapped chunk in bytes.
+     * @throws IOException If the file could not be opened or mapped.
+     */
+    public MappedLogFileHandler(File file, Formatter formatter, boolean append, int chunkSize) throws IOException
+    {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+
+        this.file = file;
+        this.chunkSize = chunkSize;
+        setFormatter(formatter);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            mapStart = append ? LogFileHandler.stripTail(channel, getContentSize(channel), formatter.getTail(this)) : 0;
+            doneHead = mapStart > 0;
+            channel.truncate(mapStart);
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, mapStart, chunkSize);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The log file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return Size of the log file, including the content it had when appending.
+     */
+    public synchronized long getSize()
+    {
+        return mapStart + mapped.position();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+            return;
+
+        Formatter formatter = getFormatter();
+        buffer.setLength(0);
+        try
+        {
+            if (formatter instanceof AppendableFormatter)
+                ((AppendableFormatter) formatter).format(record, buffer);
+            else
+                buffer.append(formatter.format(record));
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try
+        {
+            writeHead();
+            int length = buffer.length();
+            if (chars.length < length)
+                chars = new char[Math.max(length, chars.length * 2)];
+            buffer.getChars(0, length, chars, 0);
+            write(CharBuffer.wrap(chars, 0, length));
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+
+        if (chars.length > BUFFER_CAPACITY_MAX)
+        {
+            buffer = new StringBuilder(BUFFER_CAPACITY);
+            chars = new char[BUFFER_CAPACITY];
+        }
+    }
+
+    /**
+     * Does nothing. Published records are already in the page cache shared with readers of the file.
+     */
+    @Override
+    public void flush()
+    {
+
+    }
+
+    /**
+     * Write the tail returned by the formatter, truncate the file to its content and close it. The head is written
+     * first if no record was published, so that the file is always a complete document.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        try
+        {
+            writeHead();
+            write(CharBuffer.wrap(getFormatter().getTail(this)));
+            long size = mapStart + mapped.position();
+            unmap(mapped);
+            channel.truncate(size);
+            channel.close();
+        }
+        catch (Exception e)
+        {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Write the head returned by the formatter, if not already written.
+     *
+     * @throws IOException If the head could not be written.
+     */
+    private void writeHead() throws IOException
+    {
+        if (doneHead)
+            return;
+
+        doneHead = true;
+        write(CharBuffer.wrap(getFormatter().getHead(this)));
+    }
+
+    /**
+     * Encode {@code in} into the mapped chunk, mapping further chunks as they fill up. The characters are encoded into
+     * {@link #bytes} and copied to the chunk in bulk, which is much faster than encoding into the mapped buffer.
+     *
+     * @param in Characters to write.
+     * @throws IOException If a chunk could not be mapped.
+     */
+    private void write(CharBuffer in) throws IOException
+    {
+        encoder.reset();
+        CoderResult result;
+        do
+        {
+            bytes.clear();
+            result = encoder.encode(in, bytes, true);
+            if (result.isError())
+                result.throwException();
+            bytes.flip();
+            put(bytes);
+        }
+        while (result.isOverflow());
+
+        do
+        {
+            bytes.clear();
+            result = encoder.flush(bytes);
+            bytes.flip();
+            put(bytes);
+        }
+        while (result.isOverflow());
+    }
+
+    /**
+     * Copy {@code src} to the mapped chunk, mapping further chunks as they fill up.
+     *
+     * @param src Bytes to copy.
+     * @throws IOException If a chunk could not be mapped.
+     */
+    private void put(ByteBuffer src) throws IOException
+    {
+        while (src.remaining() > mapped.remaining())
+        {
+            int limit = src.limit();
+            src.limit(src.position() + mapped.remaining());
+            mapped.put(src);
+            src.limit(limit);
+            remap();
+        }
+        mapped.put(src);
+    }
+
+    /**
+     * Map the chunk that follows the written content of the current chunk.
+     *
+     * @throws IOException If the chunk could not be mapped.
+     */
+    private void remap() throws IOException
+    {
+        long position = mapStart + mapped.position();
+        unmap(mapped);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize);
+        mapStart = position;
+    }
+
+    /**
+     * Size of the content of {@code channel}, leaving out the zero bytes that pad the last chunk of a file that was not
+     * closed. UTF-8 encoded text has no zero bytes.
+     *
+     * @param channel Channel to the log file.
+     * @return Size of the content.
+     * @throws IOException If the file could not be read.
+     */
+    private static long getContentSize(FileChannel channel) throws IOException
+    {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0)
+        {
+            long start = Math.max(0, end - block.capacity());
+            block.clear();
+            block.limit((int) (end - start));
+            while (block.hasRemaining() && channel.read(block, start + block.position()) >= 0)
+                ;
+            for (int i = block.position() - 1; i >= 0; --i)
+                if (block.get(i) != 0)
+                    return start + i + 1;
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Release the mapping of {@code buffer} right away rather than when it is garbage collected, so that the mapped
+     * address space does not pile up as chunks are mapped. Left to the garbage collector if the JVM does not allow it.
+     *
+     * @param buffer The mapped buffer, not to be used afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer)
+    {
+        try
+        {
+            /* Java 9 and later */
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        }
+        catch (Exception e)
+        {
+            // Not Java 9 or later
+        }
+
+        try
+        {
+            /* Java 8 */
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        catch (Exception e)
+        {
+            // Unmapped when garbage collected
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.cafeduke.jreportng;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * This class is used to format log records as newline delimited JSON, one object per line, for log analysis tools.
+ *
+ * <p>
+ * Each record is written as
+ *
+ * <pre>
+ * {"millis":1700000000000,"time":"2023-11-14T22:13:20Z","level":"INFO","class":"...","method":"...","threadId":1,
+ *  "message":"...","style":null,"thrown":{"class":"...","message":"...","frames":["..."],"cause":{...}}}
+ * </pre>
+ *
+ * on a single line ending with {@code \n}. {@code style} is the row style passed as the first parameter of the record,
+ * such as {@link HtmlFormatter#STYLE_ROW_SUCCESS}, and {@code thrown} is left out if the record has no throwable. The
+ * JSON is appended straight into the buffer of the handler, field by field, with no intermediate objects, so that the
+ * memory used does not grow with the number of records. The formatter holds no mutable state and is safe for
+ * concurrent use.
+ *
+ * <p>
+ * Enable a {@code <logger name>.ndjson} log next to each HTML log using system property {@code jreport.log.ndjson},
+ * see {@link ReportProperties#LOG_NDJSON}, or add a {@link LogFileHandler} with this formatter to
+ * {@link LoggerUtil#LIST_HANDLER} for a single log of all classes.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class NdjsonFormatter extends Formatter implements AppendableFormatter
+{
+    /**
+     * Extension of an NDJSON log file.
+     */
+    public static final String EXTENSION = ".ndjson";
+
+    /**
+     * Maximum depth of nested causes written for a throwable.
+     */
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    /**
+     * Hexadecimal digits for {@code \}{@code u} escapes.
+     */
+    private static final char HEX[] = "0123456789abcdef".toCharArray();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String format(LogRecord record)
+    {
+        StringBuilder builder = new StringBuilder(256);
+        format(record, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Append the JSON line for {@code record} to {@code builder}.
+     *
+     * @param record LogRecord used by Logger.
+     * @param builder Buffer to which the line is appended.
+     */
+    @Override
+    public void format(LogRecord record, StringBuilder builder)
+    {
+        Object param[] = record.getParameters();
+        Object style = (param == null || param.length == 0) ? null : param[0];
+
+        builder.append("{\"millis\":").append(record.getMillis());
+        builder.append(",\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.getMillis()), builder);
+        builder.append("\",\"level\":");
+        appendString(builder, record.getLevel().getName());
+        builder.append(",\"class\":");
+        appendString(builder, record.getSourceClassName());
+        builder.append(",\"method\":");
+        appendString(builder, record.getSourceMethodName());
+        builder.append(",\"threadId\":").append(record.getThreadID());
+        builder.append(",\"message\":");
+        appendString(builder, record.getMessage());
+        builder.append(",\"style\":");
+        appendString(builder, (style == null) ? null : style.toString());
+
+        Throwable thrown = record.getThrown();
+        if (thrown != null)
+        {
+            builder.append(",\"thrown\":");
+            appendThrowable(builder, thrown, Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+        builder.append("}\n");
+    }
+
+    /**
+     * Append {@code value} as a JSON string, or {@code null}.
+     *
+     * @param builder Buffer to append to.
+     * @param value The string, may be null.
+     * @return The {@code builder}.
+     */
+    static StringBuilder appendString(StringBuilder builder, String value)
+    {
+        if (value == null)
+            return builder.append("null");
+
+        builder.append('"');
+        int from = 0;
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\')
+                continue;
+
+            builder.append(value, from, i);
+            from = i + 1;
+            switch (c)
+            {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    builder.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF]).append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+        }
+        return builder.append(value, from, value.length()).append('"');
+    }
+
+    /**
+     * Append {@code thrown} with its stack frames and causes as a JSON object.
+     *
+     * @param builder Buffer to append to.
+     * @param thrown The throwable.
+     * @param setSeen Throwables already appended, so that a cause that refers back ends the chain.
+     */
+    private static void appendThrowable(StringBuilder builder, Throwable thrown, Set<Throwable> setSeen)
+    {
+        setSeen.add(thrown);
+        builder.append("{\"class\":");
+        appendString(builder, thrown.getClass().getName());
+        builder.append(",\"message\":");
+        appendString(builder, thrown.getMessage());
+        builder.append(",\"frames\":[");
+        StackTraceElement frame[] = thrown.getStackTrace();
+        for (int i = 0; i < frame.length; ++i)
+        {
+            if (i > 0)
+                builder.append(',');
+            appendString(builder, frame[i].toString());
+        }
+        builder.append(']');
+
+        Throwable cause = thrown.getCause();
+        if (cause != null && !setSeen.contains(cause) && setSeen.size() < MAX_CAUSE_DEPTH)
+        {
+            builder.append(",\"cause\":");
+            appendThrowable(builder, cause, setSeen);
+        }
+        builder.append('}');
+    }
+}
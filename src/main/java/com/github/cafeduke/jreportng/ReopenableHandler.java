@@ -0,0 +1,208 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that can release the handler it wraps, closing its file, and opens it again when a record follows.
+ *
+ * <p>
+ * The log of a test class is released when the class completes, so that a large suite does not hold a file open for
+ * each class until the run ends. A record logged for the class afterwards, for instance from a shared static logger,
+ * reopens the log and continues the document in the file.
+ *
+ * <p>
+ * Handlers that share a {@link LogHandlerPool} are released when they are the least recently used and too many logs
+ * are open, so that a suite with thousands of classes running at once holds a bounded number of files open.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class ReopenableHandler extends Handler
+{
+    /**
+     * Opens the wrapped handler.
+     */
+    public interface Opener
+    {
+        /**
+         * Open the wrapped handler.
+         *
+         * @param reopen False for the first open, true when opened again after a release.
+         * @return The handler.
+         * @throws IOException If the handler could not be opened.
+         */
+        Handler open(boolean reopen) throws IOException;
+    }
+
+    /**
+     * Opens the wrapped handler.
+     */
+    private final Opener opener;
+
+    /**
+     * Pool that caps the number of open logs, null for no cap.
+     */
+    private final LogHandlerPool pool;
+
+    /**
+     * The wrapped handler, null while released.
+     */
+    private Handler delegate;
+
+    /**
+     * True once the handler is closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Clock of the pool when the handler was last used, see {@link LogHandlerPool}.
+     */
+    private volatile long lastUsed;
+
+    /**
+     * Create a handler and open the handler it wraps.
+     *
+     * @param opener Opens the wrapped handler.
+     * @throws IOException If the wrapped handler could not be opened.
+     */
+    public ReopenableHandler(Opener opener) throws IOException
+    {
+        this(opener, null);
+    }
+
+    /**
+     * Create a handler, open the handler it wraps and register it with {@code pool}.
+     *
+     * @param opener Opens the wrapped handler.
+     * @param pool Pool that caps the number of open logs, null for no cap.
+     * @throws IOException If the wrapped handler could not be opened.
+     */
+    public ReopenableHandler(Opener opener, LogHandlerPool pool) throws IOException
+    {
+        this.opener = opener;
+        this.pool = pool;
+        delegate = opener.open(false);
+        setLevel(delegate.getLevel());
+        if (pool != null)
+            release(pool.opened(this));
+    }
+
+    /**
+     * @return True if the wrapped handler is open.
+     */
+    public synchronized boolean isOpen()
+    {
+        return delegate != null;
+    }
+
+    /**
+     * @return The wrapped handler, null while released.
+     */
+    public synchronized Handler getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(LogRecord record)
+    {
+        List<ReopenableHandler> listEvict = null;
+        synchronized (this)
+        {
+            if (closed || !isLoggable(record))
+                return;
+
+            if (delegate == null)
+            {
+                try
+                {
+                    delegate = opener.open(true);
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    reportError(null, e, ErrorManager.OPEN_FAILURE);
+                    return;
+                }
+                if (pool != null)
+                    listEvict = pool.opened(this);
+            }
+            else if (pool != null)
+            {
+                lastUsed = pool.getClock();
+            }
+            delegate.publish(record);
+        }
+
+        // Outside the lock of this handler, another handler may be releasing this one at the same time
+        if (listEvict != null)
+            release(listEvict);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush()
+    {
+        if (delegate != null)
+            delegate.flush();
+    }
+
+    /**
+     * @return Clock of the pool when the handler was last used.
+     */
+    long getLastUsed()
+    {
+        return lastUsed;
+    }
+
+    /**
+     * @param lastUsed Clock of the pool when the handler was last used.
+     */
+    void setLastUsed(long lastUsed)
+    {
+        this.lastUsed = lastUsed;
+    }
+
+    /**
+     * Close the wrapped handler. It is opened again by the next record.
+     */
+    public synchronized void release()
+    {
+        if (delegate == null)
+            return;
+
+        Handler handler = delegate;
+        delegate = null;
+        if (pool != null)
+            pool.closed(this);
+        handler.close();
+    }
+
+    /**
+     * Close the wrapped handler for good.
+     */
+    @Override
+    public synchronized void close()
+    {
+        release();
+        closed = true;
+    }
+
+    /**
+     * Release the handlers evicted from the pool.
+     *
+     * @param listEvict Handlers to release.
+     */
+    private static void release(List<ReopenableHandler> listEvict)
+    {
+        for (ReopenableHandler currHandler : listEvict)
+            currHandler.release();
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Merges the reports of several JVMs into one report, from the fragment each JVM writes when its run completes.
+ *
+ * JVMs that share a report home, such as surefire forks with {@code forkCount} above 1, overwrite one another's
+ * overview and index pages. JVMs that run shards of a suite, say on several CI machines, each write a report home of
+ * their own. Either way every JVM leaves {@code fragments/<fork id>.properties} in its report home, see
+ * {@link ReportProperties#FORK_ID}. The merger adds up the counts and timings of the fragments and rewrites the
+ * overview, the log index pages, {@code summary.json} and the search index of {@link ReportProperties#DIR_REPORT_HOME}.
+ * The class logs of report homes other than {@link ReportProperties#DIR_REPORT_HOME} are copied to it. Each fragment and log is read
+ * once, so the merge takes time in proportion to the number of shards.
+ *
+ * <pre>
+ * java -Djreport.home=target/jreportng -cp jreportng.jar:testng.jar com.github.cafeduke.jreportng.ReportMerger [report home, fragment directory or fragment file ...]
+ * </pre>
+ *
+ * Without arguments the fragments in {@link ReportProperties#DIR_REPORT_FRAGMENT_HOME} are merged. If
+ * {@link ReportProperties#RUN_ID} is set, only the fragments of that run are merged.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public final class ReportMerger
+{
+   /**
+    * Extension of a fragment file.
+    */
+   private static final String EXTENSION = ".properties";
+
+   private ReportMerger ()
+   {
+
+   }
+
+   /**
+    * Merge the fragments given as arguments.
+    *
+    * @param arg Report homes, directories of fragments or fragment files.
+    * @throws IOException If a fragment could not be read or a log could not be copied.
+    */
+   public static void main (String arg[]) throws IOException
+   {
+      if (arg.length == 0)
+         arg = new String[] {DIR_REPORT_FRAGMENT_HOME.getPath()};
+
+      List<File> listInput = new ArrayList<> ();
+      for (String currArg : arg)
+         listInput.add(new File (currArg));
+
+      int count = merge (listInput);
+      System.out.println ("Merged " + count + " fragment(s) into " + DIR_REPORT_HOME);
+   }
+
+   /**
+    * Merge the fragments in {@code listInput} into the report at {@link ReportProperties#DIR_REPORT_HOME}.
+    *
+    * @param listInput Report homes, directories of fragments or fragment files. A fragment found more than once is
+    *        merged once.
+    * @return Number of fragments merged.
+    * @throws IOException If a fragment could not be read or a log could not be copied.
+    */
+   public static int merge (List<File> listInput) throws IOException
+   {
+      Map<File,Properties> mapFragment = new LinkedHashMap<> ();
+      for (File currInput : listInput)
+      {
+         if (new File (currInput, DIR_REPORT_FRAGMENT_HOME.getName()).isDirectory())
+         {
+            copyLogs (new File (currInput, DIR_REPORT_LOG_HOME.getName()));
+            readFragments (new File (currInput, DIR_REPORT_FRAGMENT_HOME.getName()), mapFragment);
+         }
+         else if (currInput.isDirectory())
+         {
+            readFragments (currInput, mapFragment);
+         }
+         else
+         {
+            readFragment (currInput, mapFragment);
+         }
+      }
+
+      if (mapFragment.isEmpty())
+         throw new IllegalArgumentException ("No report fragments in " + listInput);
+
+      JReportLogUtil.writeMergedReport(new ArrayList<> (mapFragment.values()));
+      return mapFragment.size();
+   }
+
+   /**
+    * Read the fragments in {@code dir}.
+    *
+    * @param dir Directory of fragments.
+    * @param mapFragment Fragments read so far, by canonical file.
+    * @throws IOException If a fragment could not be read.
+    */
+   private static void readFragments (File dir, Map<File,Properties> mapFragment) throws IOException
+   {
+      File fragment[] = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+      if (fragment == null)
+         return;
+
+      for (File currFragment : fragment)
+         readFragment (currFragment, mapFragment);
+   }
+
+   /**
+    * Read {@code file}, unless already read. A fragment of a run other than {@link ReportProperties#RUN_ID}, if set, is
+    * skipped.
+    *
+    * @param file Fragment file.
+    * @param mapFragment Fragments read so far, by canonical file.
+    * @throws IOException If the fragment could not be read.
+    */
+   private static void readFragment (File file, Map<File,Properties> mapFragment) throws IOException
+   {
+      File key = file.getCanonicalFile();
+      if (mapFragment.containsKey(key))
+         return;
+
+      Properties fragment = new Properties ();
+      try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+      {
+         fragment.load(in);
+      }
+      if (RUN_ID == null || RUN_ID.equals(fragment.getProperty("run.id")))
+         mapFragment.put(key, fragment);
+   }
+
+   /**
+    * Copy the class logs in {@code dirLog}, the log directory of another report home, to
+    * {@link ReportProperties#DIR_REPORT_LOG_HOME}, along with the chunks of logs written for the log viewer, the
+    * shared stack traces and the search index, whose shards are rewritten from its segments by the merge. The log index
+    * pages are left out, they are rewritten by the merge. A stack trace has the same
+    * page name in every JVM, so a trace shared by several JVMs is copied over itself; the index of the traces lists the
+    * last JVM copied.
+    *
+    * @param dirLog Log directory of a report home.
+    * @throws IOException If a log could not be copied.
+    */
+   private static void copyLogs (File dirLog) throws IOException
+   {
+      if (!dirLog.isDirectory() || dirLog.getCanonicalFile().equals(DIR_REPORT_LOG_HOME.getCanonicalFile()))
+         return;
+
+      DIR_REPORT_LOG_HOME.mkdirs();
+      File log[] = dirLog.listFiles((d, name) -> isClassLog(name));
+      if (log == null)
+         return;
+
+      for (File currLog : log)
+         Files.copy(currLog.toPath(), new File (DIR_REPORT_LOG_HOME, currLog.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+      File dir[] = dirLog.listFiles((d, name) -> name.endsWith(ChunkedLogHandler.CHUNK_DIR_SUFFIX) || name.equals(TraceStore.DIR_NAME) || name.equals(SearchIndex.DIR_NAME));
+      if (dir == null)
+         return;
+
+      for (File currDir : dir)
+      {
+         File dirTarget = new File (DIR_REPORT_LOG_HOME, currDir.getName());
+         dirTarget.mkdirs();
+         File file[] = currDir.listFiles();
+         if (file == null)
+            continue;
+         for (File currFile : file)
+            Files.copy(currFile.toPath(), new File (dirTarget, currFile.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   /**
+    * @param name Name of a file in a log directory.
+    * @return True if the file is the HTML log of a class, compressed or not, or its NDJSON log, or a part of either,
+    *         rather than a log index page.
+    */
+   private static boolean isClassLog (String name)
+   {
+      if (name.endsWith(NdjsonFormatter.EXTENSION))
+         return true;
+      if (name.endsWith(".html.gz"))
+         name = name.substring(0, name.length() - ".gz".length());
+      if (!name.endsWith(".html"))
+         return false;
+      return !name.equals("index.html") && !name.equals("packages.html") && !name.startsWith("package-");
+   }
+}
@@ -2,8 +2,11 @@ package com.github.cafeduke.jreportng;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Properties;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This class hosts the properties used by JReport.  
@@ -42,15 +45,242 @@ public class ReportProperties
    public static final String PACKAGE_ORG_PREFIX = getDefaultProperty("jreport.org.prefix", "package-root");
    
    /**
-    * Date format. Set using system property {@code jreport.log.dateformat}. 
+    * Default of {@link #LOG_DATE_PATTERN}.
     */
-   public static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat(getDefaultProperty("jreport.log.dateformat", "EEE, dd-MMM-yyyy HH:mm:ss.SSS z"));
+   private static final String LOG_DATE_PATTERN_DEFAULT = "EEE, dd-MMM-yyyy HH:mm:ss.SSS z";
+
+   /**
+    * Date format pattern. Set using system property {@code jreport.log.dateformat}.
+    * <p>
+    * The log dates are formatted by {@link #LOG_DATE_TIME_FORMAT}, so the pattern follows the rules of
+    * {@link DateTimeFormatter} rather than those of {@link SimpleDateFormat}. Most patterns mean the same under both,
+    * but some letters do not: {@code u} is the year rather than the day number of the week, {@code Y} is the week based
+    * year and {@code n} is the nano of second. A pattern that either of them rejects is replaced by the default,
+    * {@code EEE, dd-MMM-yyyy HH:mm:ss.SSS z}, with a warning.
+    */
+   public static final String LOG_DATE_PATTERN = getDatePattern(getDefaultProperty("jreport.log.dateformat", LOG_DATE_PATTERN_DEFAULT));
+
+   /**
+    * Date format. 
+    * 
+    * @deprecated {@code SimpleDateFormat} is not thread safe, use {@link #LOG_DATE_TIME_FORMAT} instead.
+    */
+   @Deprecated
+   public static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat(LOG_DATE_PATTERN);
+   
+   /**
+    * Thread safe date formatter for {@link #LOG_DATE_PATTERN} in the system default time zone. 
+    */
+   public static final DateTimeFormatter LOG_DATE_TIME_FORMAT = DateTimeFormatter.ofPattern(LOG_DATE_PATTERN).withZone(ZoneId.systemDefault());
 
    /**
     * Log level. Set using system property {@code jreport.loglevel}.
     */
    public static final Level LOG_LEVEL = Level.parse(getDefaultProperty("jreport.loglevel", "FINE"));
-   
+
+   /**
+    * Continue the log of a class from an earlier run in the same report home, rather than replace it.
+    * Set using system property {@code jreport.log.append}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_APPEND = Boolean.parseBoolean(getDefaultProperty("jreport.log.append", "false"));
+
+   /**
+    * Maximum number of class logs open at the same time. The logs used least recently are closed beyond this, and opened
+    * again in append mode when next used. A value of 0 or less opens as many logs as there are classes logging.
+    * Set using system property {@code jreport.log.maxopen}. Defaults to 128.
+    */
+   public static final int LOG_MAX_OPEN = Integer.parseInt(getDefaultProperty("jreport.log.maxopen", "128"));
+
+   /**
+    * Write class logs for the log viewer, a page that loads the records in chunks as they are scrolled into view and
+    * renders only the visible rows, so that very large logs open at once. See {@link ChunkedLogHandler}. Takes
+    * precedence over {@link #LOG_MMAP}. Set using system property {@code jreport.log.viewer}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_VIEWER = Boolean.parseBoolean(getDefaultProperty("jreport.log.viewer", "false"));
+
+   /**
+    * Number of records in a chunk of a viewer log. See {@link #LOG_VIEWER}.
+    * Set using system property {@code jreport.log.viewer.chunk}. Defaults to 1000.
+    */
+   public static final int LOG_VIEWER_CHUNK_RECORDS = Integer.parseInt(getDefaultProperty("jreport.log.viewer.chunk", "1000"));
+
+   /**
+    * Write each log record also as a line of JSON to {@code <logger name>.ndjson} next to the HTML log, for log analysis
+    * tools. See {@link NdjsonFormatter}. Set using system property {@code jreport.log.ndjson}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_NDJSON = Boolean.parseBoolean(getDefaultProperty("jreport.log.ndjson", "false"));
+
+   /**
+    * Write logs on a background thread. Set using system property {@code jreport.log.async}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_ASYNC = Boolean.parseBoolean(getDefaultProperty("jreport.log.async", "false"));
+
+   /**
+    * Maximum number of log records waiting to be written when logging asynchronously.
+    * Set using system property {@code jreport.log.async.queuesize}.
+    */
+   public static final int LOG_ASYNC_QUEUE_SIZE = Integer.parseInt(getDefaultProperty("jreport.log.async.queuesize", "8192"));
+
+   /**
+    * Maximum number of log records written between flushes when logging asynchronously.
+    * Set using system property {@code jreport.log.async.batchsize}.
+    */
+   public static final int LOG_ASYNC_BATCH_SIZE = Integer.parseInt(getDefaultProperty("jreport.log.async.batchsize", "512"));
+
+   /**
+    * Action taken when the queue is full while logging asynchronously. One of {@code BLOCK}, {@code DROP} or {@code CALLER_RUNS}.
+    * Set using system property {@code jreport.log.async.backpressure}. Defaults to {@code BLOCK}.
+    */
+   public static final AsyncLogHandler.Backpressure LOG_ASYNC_BACKPRESSURE =
+      AsyncLogHandler.Backpressure.valueOf(getDefaultProperty("jreport.log.async.backpressure", "BLOCK").toUpperCase());
+
+   /**
+    * Append binary records to a journal per class and render the HTML logs from the journals when the run completes,
+    * instead of formatting HTML as records are logged. See {@link JournalHandler}.
+    * Set using system property {@code jreport.log.journal}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_JOURNAL = Boolean.parseBoolean(getDefaultProperty("jreport.log.journal", "false"));
+
+   /**
+    * Render each distinct stack trace once per run, into a page of its own shared by the logs, and log later occurrences
+    * as a row that links to it. See {@link TraceStore}. Set using system property {@code jreport.log.trace.dedup}.
+    * Defaults to {@code false}.
+    */
+   public static final boolean LOG_TRACE_DEDUP = Boolean.parseBoolean(getDefaultProperty("jreport.log.trace.dedup", "false"));
+
+   /**
+    * Index the words, levels and methods of the records of the class logs as they are logged, for the search page of the
+    * log, {@code log/search.html}. The index is written when the run completes. See {@link SearchIndex}.
+    * Set using system property {@code jreport.log.search}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_SEARCH = Boolean.parseBoolean(getDefaultProperty("jreport.log.search", "false"));
+
+   /**
+    * Number of postings of the search index held in memory, beyond which they are written to disk. A posting takes
+    * about 40 bytes. See {@link #LOG_SEARCH}. Set using system property {@code jreport.log.search.postings}.
+    * Defaults to 1000000.
+    */
+   public static final long LOG_SEARCH_MAX_POSTINGS = Long.parseLong(getDefaultProperty("jreport.log.search.postings", "1000000"));
+
+   /**
+    * Write the HTML logs compressed with gzip, as {@code <class>.html.gz}, to cut the size of the report and the time to
+    * upload it. The logs are compressed on the background thread of {@link #LOG_ASYNC}, which is then used whether set
+    * or not. Takes precedence over {@link #LOG_MMAP} and is ignored for {@link #LOG_VIEWER}. A byte limit of
+    * {@link #LOG_LIMIT_BYTES} counts compressed bytes.
+    * <p>
+    * The log index pages link to the {@code .html.gz} files, which a browser shows as a page only when they are served
+    * with {@code Content-Encoding: gzip}, such as by a web server configured to serve precompressed files. Opened from
+    * the file system, or from an artifact server that serves them as {@code application/gzip}, the logs are downloaded
+    * instead, to be read with {@code zcat} or after {@code gunzip -k}. Set using system property
+    * {@code jreport.log.gzip}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_GZIP = Boolean.parseBoolean(getDefaultProperty("jreport.log.gzip", "false"));
+
+   /**
+    * Extension of the class logs, {@code .html.gz} if the logs are compressed, see {@link #LOG_GZIP}, {@code .html}
+    * otherwise.
+    */
+   public static final String LOG_FILE_EXTENSION = (LOG_GZIP && !LOG_VIEWER) ? ".html.gz" : ".html";
+
+   /**
+    * Write the HTML logs through a memory-mapped region of the log file. See {@link MappedLogFileHandler}.
+    * Set using system property {@code jreport.log.mmap}. Defaults to {@code false}.
+    */
+   public static final boolean LOG_MMAP = Boolean.parseBoolean(getDefaultProperty("jreport.log.mmap", "false"));
+
+   /**
+    * Size in bytes by which a memory-mapped log file grows. Set using system property {@code jreport.log.mmap.chunksize}.
+    * Defaults to 8 MB.
+    */
+   public static final int LOG_MMAP_CHUNK_SIZE = Integer.parseInt(getDefaultProperty("jreport.log.mmap.chunksize", "8388608"));
+
+   /**
+    * Maximum number of bytes in the log of a class, 0 for no limit. See {@link BoundedLogHandler}.
+    * Set using system property {@code jreport.log.limit}. Defaults to 0.
+    */
+   public static final long LOG_LIMIT_BYTES = Long.parseLong(getDefaultProperty("jreport.log.limit", "0"));
+
+   /**
+    * Maximum number of records in the log of a class, 0 for no limit. See {@link BoundedLogHandler}.
+    * Set using system property {@code jreport.log.limit.records}. Defaults to 0.
+    */
+   public static final long LOG_LIMIT_RECORDS = Long.parseLong(getDefaultProperty("jreport.log.limit.records", "0"));
+
+   /**
+    * Action once the log of a class reaches its limit. Either {@code TRUNCATE}, to keep the last
+    * {@link #LOG_LIMIT_TAIL} records, or {@code ROLL}, to continue in a numbered part file.
+    * Set using system property {@code jreport.log.limit.mode}. Defaults to {@code TRUNCATE}.
+    */
+   public static final BoundedLogHandler.Mode LOG_LIMIT_MODE =
+      BoundedLogHandler.Mode.valueOf(getDefaultProperty("jreport.log.limit.mode", "TRUNCATE").toUpperCase());
+
+   /**
+    * Number of last records kept once the log of a class reaches its limit in {@code TRUNCATE} mode. They are written
+    * to the log when the run completes. Set using system property {@code jreport.log.limit.tail}. Defaults to 1000.
+    */
+   public static final int LOG_LIMIT_TAIL = Integer.parseInt(getDefaultProperty("jreport.log.limit.tail", "1000"));
+
+   /**
+    * Minimum interval in milliseconds between rewrites of the log index pages as new test classes are registered.
+    * A value of 0 or less rewrites the pages on the registering thread, as soon as a class is registered.
+    * Set using system property {@code jreport.log.index.interval}. Defaults to 1000.
+    */
+   public static final long LOG_INDEX_INTERVAL = Long.parseLong(getDefaultProperty("jreport.log.index.interval", "1000"));
+
+   /**
+    * Interval in milliseconds between rewrites of the overview page while tests run, from the test counts so far.
+    * A value of 0 or less writes the overview page only when the run completes.
+    * Set using system property {@code jreport.overview.interval}. Defaults to 10000.
+    */
+   public static final long OVERVIEW_INTERVAL = Long.parseLong(getDefaultProperty("jreport.overview.interval", "10000"));
+
+   /**
+    * Number of slowest test methods and classes listed on the overview page.
+    * Set using system property {@code jreport.overview.slowest}. Defaults to 10.
+    */
+   public static final int OVERVIEW_SLOWEST_COUNT = Integer.parseInt(getDefaultProperty("jreport.overview.slowest", "10"));
+
+   /**
+    * History file to which each run appends its summary and the outcome and duration of each test, kept across builds
+    * unlike the report home. The overview page shows the trends and the flaky tests of the last runs from it.
+    * Set using system property {@code jreport.history}. Defaults to {@code null}, no history is kept.
+    */
+   public static final File HISTORY_FILE = getDefaultFile("jreport.history");
+
+   /**
+    * Number of the last runs of the {@link #HISTORY_FILE} shown on the overview page.
+    * Set using system property {@code jreport.history.runs}. Defaults to 20.
+    */
+   public static final int HISTORY_RUN_COUNT = Integer.parseInt(getDefaultProperty("jreport.history.runs", "20"));
+
+   /**
+    * Extract only the minified variant of scripts and style sheets that have one.
+    * Set using system property {@code jreport.resources.minified}. Defaults to {@code true}.
+    */
+   public static final boolean RESOURCES_MINIFIED_ONLY = Boolean.parseBoolean(getDefaultProperty("jreport.resources.minified", "true"));
+
+   /**
+    * Directory to extract the static report resources to, shared by many report homes that link to it.
+    * Set using system property {@code jreport.resources.shared}. Defaults to {@code null}, resources are extracted to each report home.
+    */
+   public static final File DIR_SHARED_RESOURCE = getDefaultFile("jreport.resources.shared");
+
+   /**
+    * Name of the report fragment of this JVM, unique among the JVMs that share a report home or whose reports are merged.
+    * Set using system property {@code jreport.fork.id}. Defaults to {@code null}, the fragment is named
+    * {@code <process id>@<host name>}.
+    */
+   public static final String FORK_ID = getDefaultProperty("jreport.fork.id", null);
+
+   /**
+    * Id of the run that the report fragment of this JVM belongs to, the same for all the JVMs whose reports make up one
+    * run, such as a build number. When a run starts, the fragments of other runs are removed from
+    * {@link #DIR_REPORT_FRAGMENT_HOME}, and {@link ReportMerger} merges only the fragments of this run.
+    * Set using system property {@code jreport.run.id}. Defaults to {@code null}, no fragment is removed and every
+    * fragment is merged, so a report home used again is expected to be cleaned first, as {@code mvn clean} does.
+    */
+   public static final String RUN_ID = getDefaultProperty("jreport.run.id", null);
+
    /* End: System properties */
 
    /**
@@ -64,6 +294,12 @@ public class ReportProperties
     */
    public static final File DIR_REPORT_LOG_HOME = new File (DIR_REPORT_HOME, "log");
    
+   /**
+    * Path to the directory of the report fragments, one for each JVM that reported to {@link #DIR_REPORT_HOME}.
+    * Path = {@link #DIR_REPORT_HOME}{@code /fragments}. See {@link ReportMerger}.
+    */
+   public static final File DIR_REPORT_FRAGMENT_HOME = new File (DIR_REPORT_HOME, "fragments");
+   
    /**
     * The class to be used when the source class of the message is TestListener or not known.
     */
@@ -84,71 +320,6 @@ public class ReportProperties
     */
    static final String LINE_SEP = System.getProperty("line.separator");
    
-   /**
-    * Resources in the JAR to be extracted to the the DIR_JREPORT_TARGET_LOG directory.
-    */
-   static final String LIST_SOURCE_RESOURCE [] = new String [] 
-   {
-      JREPORT_PREFIX + "/index.html",
-      JREPORT_PREFIX + "/css/overview.css",
-      JREPORT_PREFIX + "/css/reportng-custom.css",
-      JREPORT_PREFIX + "/images/java.png",
-      JREPORT_PREFIX + "/images/duke.png",
-      JREPORT_PREFIX + "/images/bg01.gif",
-      JREPORT_PREFIX + "/images/java.png",
-      JREPORT_PREFIX + "/images/cafeduke.png",
-      JREPORT_PREFIX + "/images/headerBG.jpg",
-      JREPORT_PREFIX + "/images/headingBarBlue.jpg",
-      JREPORT_PREFIX + "/images/headingBarDarkBlue.jpg",
-      JREPORT_PREFIX + "/images/headingBarDarkGray.jpg",
-      JREPORT_PREFIX + "/images/headingBarDarkGreen.jpg",
-      JREPORT_PREFIX + "/images/headingBarDarkOrange.jpg",
-      JREPORT_PREFIX + "/images/headingBarDarkRed.jpg",
-      JREPORT_PREFIX + "/images/headingBarLightGray.jpg",
-      JREPORT_PREFIX + "/images/headingBarLightGreen.jpg",
-      JREPORT_PREFIX + "/images/headingBarLightOrange.jpg",
-      JREPORT_PREFIX + "/images/headingBarLightPurple.jpg",
-      JREPORT_PREFIX + "/images/headingBarLightRed.jpg",
-      JREPORT_PREFIX + "/images/tableBGBlue.jpg",
-      JREPORT_PREFIX + "/images/tableBGBlueLight.jpg",
-      JREPORT_PREFIX + "/images/tableBGDarkBlue.jpg",
-      JREPORT_PREFIX + "/images/tableBGDarkBrown.jpg",
-      JREPORT_PREFIX + "/images/tableBGLightBlue.jpg",
-      JREPORT_PREFIX + "/images/tableBGLightGreen.jpg",
-      JREPORT_PREFIX + "/jquery-ui/js/jquery-ui-1.9.1.custom.js",
-      JREPORT_PREFIX + "/jquery-ui/js/jquery-ui-1.9.1.custom.min.js",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/jquery-ui-1.9.1.custom.css",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/jquery-ui-1.9.1.custom.min.css",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_flat_55_999999_40x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_flat_75_aaaaaa_40x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_glass_45_0078ae_1x400.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_glass_55_f8da4e_1x400.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_glass_75_79c9ec_1x400.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_gloss-wave_45_e14f1c_500x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_gloss-wave_50_6eac2c_500x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_gloss-wave_75_2191c0_500x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-bg_inset-hard_100_fcfdfd_1x100.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_0078ae_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_056b93_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_d8e7f3_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_e0fdff_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_f5e175_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_f7a50d_256x240.png",
-      JREPORT_PREFIX + "/jquery-ui/themes/start/images/ui-icons_fcd113_256x240.png",
-      JREPORT_PREFIX + "/jquery/jquery-1.8.2.js",
-      JREPORT_PREFIX + "/jquery/jquery-1.8.2.min.js",
-      JREPORT_PREFIX + "/jqplot/jqplot.donutRenderer.min.js",
-      JREPORT_PREFIX + "/jqplot/jquery.jqplot.min.css",
-      JREPORT_PREFIX + "/jqplot/jquery.jqplot.min.js",
-      JREPORT_PREFIX + "/log/css/log-testclass.css",
-      JREPORT_PREFIX + "/log/images/headingBarBlue.jpg",
-      JREPORT_PREFIX + "/log/images/headingBarLightGreen.jpg",
-      JREPORT_PREFIX + "/log/images/headingBarLightOrange.jpg",
-      JREPORT_PREFIX + "/log/images/headingBarLightRed.jpg",
-      JREPORT_PREFIX + "/log/images/tableBGDarkBlue.jpg",
-      JREPORT_PREFIX + "/log/images/tableBGDarkBrown.jpg",
-      JREPORT_PREFIX + "/log/images/tableBGLightBlue.jpg"
-   }; 
    
    private ReportProperties()
    {
@@ -171,6 +342,38 @@ public class ReportProperties
       return propertyValue;
    }
    
+   /**
+    * @param pattern Date format pattern.
+    * @return {@code pattern} if it is valid for both {@link DateTimeFormatter} and {@link SimpleDateFormat}, the default
+    *         of {@link #LOG_DATE_PATTERN} otherwise.
+    */
+   private static String getDatePattern(String pattern)
+   {
+      try
+      {
+         DateTimeFormatter.ofPattern(pattern);
+         new SimpleDateFormat(pattern);
+         return pattern;
+      }
+      catch (IllegalArgumentException e)
+      {
+         Logger.getLogger(ReportProperties.class.getName()).warning("Invalid date format '" + pattern + "' of jreport.log.dateformat, using '" + LOG_DATE_PATTERN_DEFAULT + "': " + e.getMessage());
+         return LOG_DATE_PATTERN_DEFAULT;
+      }
+   }
+   
+   /**
+    * Return a file for the path in property {@code propertyName}.
+    * 
+    * @param propertyName System property name.
+    * @return File for the property value if {@code propertyName} is set, null otherwise.
+    */
+   public static File getDefaultFile(String propertyName)
+   {
+      String propertyValue = getDefaultProperty(propertyName, null);
+      return (propertyValue == null || propertyValue.trim().isEmpty()) ? null : new File (propertyValue.trim());
+   }
+   
    /**
     * A package name without the  {@link #PACKAGE_ORG_PREFIX}
     * 
@@ -0,0 +1,155 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A single daemon thread that runs the periodic report writers, keeping report I/O off the test threads, and a pool of
+ * daemon threads that render independent report pages at the same time when the run completes.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class ReportScheduler
+{
+   /**
+    * Name of the scheduler thread.
+    */
+   private static final String THREAD_NAME = "JReportNG-Scheduler";
+
+   /**
+    * Executor created on first use.
+    */
+   private static ScheduledExecutorService executor = null;
+
+   /**
+    * Prefix of the names of the render pool threads.
+    */
+   private static final String RENDER_THREAD_PREFIX = "JReportNG-Render-";
+
+   /**
+    * Pool that renders report pages, created on first use.
+    */
+   private static ForkJoinPool renderPool = null;
+
+   private ReportScheduler ()
+   {
+
+   }
+
+   /**
+    * Run {@code task} every {@code intervalMillis} milliseconds, measured from the end of the previous run.
+    * An exception thrown by a run does not cancel the later runs.
+    *
+    * @param task The task to run.
+    * @param intervalMillis Interval in milliseconds.
+    * @return Future that can be used to cancel the task.
+    */
+   static synchronized ScheduledFuture<?> schedule (Runnable task, long intervalMillis)
+   {
+      if (executor == null)
+      {
+         executor = Executors.newSingleThreadScheduledExecutor((r) ->
+         {
+            Thread thread = new Thread(r, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+         });
+      }
+
+      Runnable safeTask = () ->
+      {
+         try
+         {
+            task.run();
+         }
+         catch (RuntimeException e)
+         {
+            // The next run retries, a failed write must not stop the periodic writer.
+         }
+      };
+      return executor.scheduleWithFixedDelay(safeTask, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Run the {@code tasks} at the same time on the render pool and wait for all of them to complete.
+    *
+    * @param tasks The tasks to run.
+    * @throws RuntimeException The exception of the first task that failed, once all tasks have completed.
+    */
+   static void runAll (Runnable... tasks)
+   {
+      List<Runnable> listTask = new ArrayList<> ();
+      for (Runnable currTask : tasks)
+         listTask.add(currTask);
+      forEach (listTask, Runnable::run);
+   }
+
+   /**
+    * Perform {@code action} for each of the {@code items} at the same time on the render pool and wait for all of them
+    * to complete. An action that fails does not stop the others, so that one page that could not be written does not
+    * leave the rest of the report unwritten. Called from a render pool thread, the caller takes part in the work.
+    *
+    * @param items Items to act on.
+    * @param action Action for an item.
+    * @param <T> Type of the items.
+    * @throws RuntimeException The exception of the first action that failed, once all actions have completed.
+    */
+   static <T> void forEach (Collection<T> items, Consumer<? super T> action)
+   {
+      AtomicReference<RuntimeException> failure = new AtomicReference<> ();
+      List<ForkJoinTask<?>> listTask = new ArrayList<> (items.size());
+      for (T currItem : items)
+      {
+         listTask.add(ForkJoinTask.adapt(() ->
+         {
+            try
+            {
+               action.accept(currItem);
+            }
+            catch (RuntimeException e)
+            {
+               if (!failure.compareAndSet(null, e))
+                  failure.get().addSuppressed(e);
+            }
+         }));
+      }
+
+      if (listTask.size() == 1)
+         listTask.get(0).invoke();
+      else if (ForkJoinTask.getPool() == getRenderPool ())
+         ForkJoinTask.invokeAll(listTask);
+      else if (!listTask.isEmpty())
+         getRenderPool ().submit(() -> ForkJoinTask.invokeAll(listTask)).join();
+
+      if (failure.get() != null)
+         throw failure.get();
+   }
+
+   /**
+    * @return The render pool, with a thread per processor.
+    */
+   private static synchronized ForkJoinPool getRenderPool ()
+   {
+      if (renderPool == null)
+      {
+         renderPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), (pool) ->
+         {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(RENDER_THREAD_PREFIX + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+         }, null, false);
+      }
+      return renderPool;
+   }
+}
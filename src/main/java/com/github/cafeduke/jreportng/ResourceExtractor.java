@@ -0,0 +1,392 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Extracts the static report resources (style sheets, images and scripts) from the JAR, driven by the manifest
+ * {@value #MANIFEST} that lists the SHA-1 and size of each resource.
+ *
+ * <ul>
+ *    <li>A record of the extracted manifest entries is kept in {@value #RECORD_FILE_NAME} of the target directory.
+ *        A resource is copied only if its entry differs from the record or the target file is missing or of another size.
+ *    <li>Unminified scripts and style sheets that have a minified variant are skipped, unless
+ *        {@link ReportProperties#RESOURCES_MINIFIED_ONLY} is turned off.
+ *    <li>If {@link ReportProperties#DIR_SHARED_RESOURCE} is set, resources are extracted once to the shared directory
+ *        and the report home links to its asset directories.
+ * </ul>
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class ResourceExtractor
+{
+   /**
+    * Manifest of the resources in the JAR.
+    */
+   static final String MANIFEST = JREPORT_PREFIX + "/resources.manifest";
+
+   /**
+    * Record of the manifest entries extracted to a directory.
+    */
+   static final String RECORD_FILE_NAME = ".jreportng-resources";
+
+   private ResourceExtractor ()
+   {
+
+   }
+
+   /**
+    * Extract the resources to {@link ReportProperties#DIR_REPORT_HOME}, either directly or through the shared resource directory.
+    *
+    * @throws IOException If a resource could not be extracted.
+    */
+   static void extract () throws IOException
+   {
+      List<Entry> listEntry = readManifest ();
+      if (DIR_SHARED_RESOURCE == null)
+      {
+         unlinkShared (listEntry);
+         extract (listEntry, DIR_REPORT_HOME);
+         return;
+      }
+
+      extract (listEntry, DIR_SHARED_RESOURCE);
+      linkShared (listEntry);
+   }
+
+   /**
+    * Extract the entries in {@code listEntry} that are not up to date in {@code dirTarget}.
+    *
+    * @param listEntry Manifest entries.
+    * @param dirTarget Directory to extract to.
+    * @throws IOException If a resource could not be extracted.
+    */
+   private static void extract (List<Entry> listEntry, File dirTarget) throws IOException
+   {
+      dirTarget.mkdirs();
+      File fileRecord = new File (dirTarget, RECORD_FILE_NAME);
+      Map<String,Entry> mapRecord = readRecord (fileRecord);
+
+      boolean changed = false;
+      for (Entry currEntry : listEntry)
+      {
+         File fileTarget = new File (dirTarget, currEntry.path);
+         if (currEntry.equals(mapRecord.get(currEntry.path)) && fileTarget.length() == currEntry.size)
+            continue;
+
+         copy (currEntry, fileTarget);
+         changed = true;
+      }
+
+      if (changed || mapRecord.size() != listEntry.size())
+         writeRecord (fileRecord, listEntry);
+   }
+
+   /**
+    * Make the asset directories of the shared resource directory visible in the report home.
+    *
+    * An asset directory is linked with a symbolic link, unless the report home already has a real directory of that name
+    * or links are not supported, in which case its resources are extracted to the report home.
+    *
+    * @param listEntry Manifest entries.
+    * @throws IOException If a resource could not be extracted.
+    */
+   private static void linkShared (List<Entry> listEntry) throws IOException
+   {
+      Map<String,List<Entry>> mapUnitToEntries = new LinkedHashMap<> ();
+      for (Entry currEntry : listEntry)
+         mapUnitToEntries.computeIfAbsent(getLinkUnit(currEntry.path), (k) -> new ArrayList<> ()).add(currEntry);
+
+      List<Entry> listCopy = new ArrayList<> ();
+      for (Map.Entry<String,List<Entry>> currUnit : mapUnitToEntries.entrySet())
+      {
+         String unit = currUnit.getKey();
+         if (unit == null || !link (unit))
+            listCopy.addAll(currUnit.getValue());
+      }
+      extract (listCopy, DIR_REPORT_HOME);
+   }
+
+   /**
+    * Remove the links to a shared resource directory left by an earlier run, so that the resources are extracted to the
+    * report home itself.
+    *
+    * @param listEntry Manifest entries.
+    * @throws IOException If a link could not be removed.
+    */
+   private static void unlinkShared (List<Entry> listEntry) throws IOException
+   {
+      for (Entry currEntry : listEntry)
+      {
+         String unit = getLinkUnit (currEntry.path);
+         if (unit != null)
+         {
+            Path pathLink = DIR_REPORT_HOME.toPath().resolve(unit);
+            if (Files.isSymbolicLink(pathLink))
+               Files.delete(pathLink);
+         }
+      }
+   }
+
+   /**
+    * Link report home directory {@code unit} to the same directory in the shared resource directory.
+    *
+    * @param unit Directory relative to the report home.
+    * @return True if the report home has a link to the shared directory.
+    */
+   private static boolean link (String unit)
+   {
+      Path pathLink   = DIR_REPORT_HOME.toPath().resolve(unit);
+      Path pathShared = DIR_SHARED_RESOURCE.toPath().resolve(unit).toAbsolutePath();
+      try
+      {
+         if (Files.isSymbolicLink(pathLink))
+         {
+            if (Files.readSymbolicLink(pathLink).equals(pathShared))
+               return true;
+            Files.delete(pathLink);
+         }
+         else if (Files.exists(pathLink))
+         {
+            return false;
+         }
+
+         Files.createDirectories(pathLink.getParent());
+         Files.createSymbolicLink(pathLink, pathShared);
+         return true;
+      }
+      catch (IOException | UnsupportedOperationException | SecurityException e)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * The directory linked as a whole for a resource at {@code path}. This is the top level directory, except under the
+    * log directory which also holds the generated logs.
+    *
+    * @param path Resource path relative to the report home.
+    * @return Directory relative to the report home, null if the resource is a file directly under the report home.
+    */
+   private static String getLinkUnit (String path)
+   {
+      String part[] = path.split("/");
+      if (part.length < 2)
+         return null;
+
+      if (part[0].equals(DIR_REPORT_LOG_HOME.getName()))
+         return (part.length < 3) ? null : part[0] + "/" + part[1];
+
+      return part[0];
+   }
+
+   /**
+    * Copy the resource of {@code entry} to {@code fileTarget}, through a temporary file so that a concurrent reader
+    * never sees a partial file.
+    *
+    * @param entry Manifest entry.
+    * @param fileTarget Target file.
+    * @throws IOException If the resource could not be copied.
+    */
+   private static void copy (Entry entry, File fileTarget) throws IOException
+   {
+      fileTarget.getParentFile().mkdirs();
+      Path pathTemp = getTempPath (fileTarget.toPath());
+      try (InputStream in = ResourceExtractor.class.getResourceAsStream(JREPORT_PREFIX + "/" + entry.path))
+      {
+         if (in == null)
+            throw new FileNotFoundException ("Resource " + entry.path + " listed in " + MANIFEST + " not found");
+         Files.copy(in, pathTemp);
+         move (pathTemp, fileTarget.toPath());
+      }
+      finally
+      {
+         Files.deleteIfExists(pathTemp);
+      }
+   }
+
+   /**
+    * A temporary path next to {@code pathTarget}. Unlike {@link Files#createTempFile} the file is not created, so that
+    * it gets the default permissions once written.
+    *
+    * @param pathTarget Target path.
+    * @return Temporary path in the directory of {@code pathTarget}.
+    */
+   static Path getTempPath (Path pathTarget)
+   {
+      return pathTarget.resolveSibling(pathTarget.getFileName() + "." + Long.toHexString(System.nanoTime()) + "." + Thread.currentThread().getId() + ".tmp");
+   }
+
+   /**
+    * Move {@code pathSource} to {@code pathTarget} atomically, if supported by the file system.
+    *
+    * @param pathSource Source path.
+    * @param pathTarget Target path.
+    * @throws IOException If the file could not be moved.
+    */
+   static void move (Path pathSource, Path pathTarget) throws IOException
+   {
+      try
+      {
+         Files.move(pathSource, pathTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         Files.move(pathSource, pathTarget, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   /**
+    * Read the manifest from the JAR, leaving out the unminified resources if {@link ReportProperties#RESOURCES_MINIFIED_ONLY} is set.
+    *
+    * @return Manifest entries.
+    * @throws IOException If the manifest could not be read.
+    */
+   static List<Entry> readManifest () throws IOException
+   {
+      InputStream in = ResourceExtractor.class.getResourceAsStream(MANIFEST);
+      if (in == null)
+         throw new FileNotFoundException ("Resource manifest " + MANIFEST + " not found");
+
+      List<Entry> listEntry = read (in);
+      if (!RESOURCES_MINIFIED_ONLY)
+         return listEntry;
+
+      Set<String> setPath = new HashSet<> ();
+      listEntry.forEach((e) -> setPath.add(e.path));
+      listEntry.removeIf((e) -> setPath.contains(getMinifiedPath(e.path)));
+      return listEntry;
+   }
+
+   /**
+    * @param path Resource path.
+    * @return Path of the minified variant of a script or style sheet, null for other resources.
+    */
+   private static String getMinifiedPath (String path)
+   {
+      int index = path.lastIndexOf('.');
+      if (index < 0 || path.contains(".min."))
+         return null;
+
+      String extension = path.substring(index);
+      return (extension.equals(".js") || extension.equals(".css")) ? path.substring(0, index) + ".min" + extension : null;
+   }
+
+   /**
+    * @param fileRecord Record file.
+    * @return Recorded entries by path, empty if there is no record.
+    */
+   private static Map<String,Entry> readRecord (File fileRecord)
+   {
+      Map<String,Entry> mapRecord = new HashMap<> ();
+      if (!fileRecord.exists())
+         return mapRecord;
+
+      try (InputStream in = new FileInputStream (fileRecord))
+      {
+         read(in).forEach((e) -> mapRecord.put(e.path, e));
+      }
+      catch (IOException | RuntimeException e)
+      {
+         // A damaged record only costs a full extraction.
+         mapRecord.clear();
+      }
+      return mapRecord;
+   }
+
+   /**
+    * Write {@code listEntry} as the record of extracted entries.
+    *
+    * @param fileRecord Record file.
+    * @param listEntry Extracted entries.
+    * @throws IOException If the record could not be written.
+    */
+   private static void writeRecord (File fileRecord, List<Entry> listEntry) throws IOException
+   {
+      Path pathTemp = getTempPath (fileRecord.toPath());
+      try
+      {
+         try (PrintWriter out = new PrintWriter (Files.newBufferedWriter(pathTemp, StandardCharsets.UTF_8)))
+         {
+            for (Entry currEntry : listEntry)
+               out.println (currEntry);
+         }
+         move (pathTemp, fileRecord.toPath());
+      }
+      finally
+      {
+         Files.deleteIfExists(pathTemp);
+      }
+   }
+
+   /**
+    * Read manifest lines, skipping blank lines and comments.
+    *
+    * @param in Stream of manifest lines, closed on return.
+    * @return Manifest entries.
+    * @throws IOException If the stream could not be read.
+    */
+   static List<Entry> read (InputStream in) throws IOException
+   {
+      List<Entry> listEntry = new ArrayList<> ();
+      try (BufferedReader reader = new BufferedReader (new InputStreamReader (in, StandardCharsets.UTF_8)))
+      {
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+               continue;
+
+            String field[] = line.split("\\s+", 3);
+            listEntry.add(new Entry (field[0], Long.parseLong(field[1]), field[2]));
+         }
+      }
+      return listEntry;
+   }
+
+   /**
+    * A manifest entry.
+    */
+   static final class Entry
+   {
+      final String sha1;
+
+      final long size;
+
+      final String path;
+
+      Entry (String sha1, long size, String path)
+      {
+         this.sha1 = sha1;
+         this.size = size;
+         this.path = path;
+      }
+
+      @Override
+      public boolean equals (Object object)
+      {
+         if (!(object instanceof Entry))
+            return false;
+
+         Entry entry = (Entry) object;
+         return sha1.equals(entry.sha1) && size == entry.size && path.equals(entry.path);
+      }
+
+      @Override
+      public int hashCode ()
+      {
+         return Objects.hash(sha1, size, path);
+      }
+
+      @Override
+      public String toString ()
+      {
+         return sha1 + " " + size + " " + path;
+      }
+   }
+}
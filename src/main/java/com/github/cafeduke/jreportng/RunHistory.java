@@ -0,0 +1,585 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.testng.ITestResult;
+
+/**
+ * History of the runs, appended to a file that is kept across builds, from which the overview shows the pass rate and
+ * the duration of the last runs and the tests that are flaky across them, without reading the reports of earlier runs.
+ *
+ * The outcome and the duration of each test method of this run are recorded as it completes, with a map lookup and a
+ * few atomic operations. The run is appended to the file when it completes, see {@link #append(File, Run)}.
+ *
+ * The file starts with a header that is rewritten in place as each run is appended:
+ * <pre>
+ * int magic "JRNH", int version, int number of runs, int number of test names,
+ * long offset of the last run, long end of the last run
+ * </pre>
+ * followed by a block for each run:
+ * <pre>
+ * int magic "JRNR", long offset of the previous run, -1 for the first
+ * long start, long end (epoch milliseconds), long pass, long fail, long skip
+ * int number of the first new test name, int number of new test names, UTF name ...
+ * int number of tests, var-int test number deltas ..., byte outcome ..., var-int milliseconds ...
+ * </pre>
+ * A test name is stored once, by the first run that has it, and numbered on from the names of earlier runs. The tests
+ * of a run are in the order of their numbers, stored as columns that compress to a few bytes per test.
+ *
+ * The last runs are read by following the offsets back from the header. A run is written past the end of the last run
+ * and the header is rewritten only after the run is forced to disk, so a run cut short by a crash is not read and is
+ * overwritten by the next one. The JVMs that share a history file append one at a time under a file lock.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class RunHistory
+{
+   /**
+    * Outcome bit of a test that passed.
+    */
+   static final int PASS = 1;
+
+   /**
+    * Outcome bit of a test that failed, including an attempt that was retried.
+    */
+   static final int FAIL = 2;
+
+   /**
+    * Outcome bit of a test that was skipped.
+    */
+   static final int SKIP = 4;
+
+   private static final int MAGIC = 0x4A524E48;
+
+   private static final int MAGIC_RUN = 0x4A524E52;
+
+   private static final int VERSION = 1;
+
+   private static final int HEADER_SIZE = 32;
+
+   /**
+    * Outcome and duration of each test method of this run, by {@code <class name>.<method name>}.
+    */
+   private static final ConcurrentMap<String,TestOutcome> MAP_TEST_OUTCOME = new ConcurrentHashMap<> ();
+
+   private RunHistory ()
+   {
+
+   }
+
+   /**
+    * Record the outcome and the duration of a completed test method.
+    *
+    * @param result Result of the test.
+    */
+   static void recordTest (ITestResult result)
+   {
+      int outcome;
+      if (result.getStatus() == ITestResult.SUCCESS)
+         outcome = PASS;
+      else if (result.getStatus() == ITestResult.FAILURE || result.wasRetried())
+         outcome = FAIL;
+      else
+         outcome = SKIP;
+
+      String name = TestTimings.getClassName(result) + "." + result.getMethod().getMethodName();
+      MAP_TEST_OUTCOME.computeIfAbsent(name, key -> new TestOutcome ()).record(outcome, TestTimings.getMillis(result));
+   }
+
+   /**
+    * @param start Start of the run in epoch milliseconds.
+    * @param end End of the run in epoch milliseconds.
+    * @param pass Number of tests that passed.
+    * @param fail Number of tests that failed.
+    * @param skip Number of tests that were skipped.
+    * @return This run, with the tests recorded by {@link #recordTest(ITestResult)}.
+    */
+   static Run getRun (long start, long end, long pass, long fail, long skip)
+   {
+      Map<String,TestOutcome> mapTest = new TreeMap<> (MAP_TEST_OUTCOME);
+      Run run = new Run (start, end, pass, fail, skip, mapTest.size());
+      int index = 0;
+      for (Map.Entry<String,TestOutcome> currEntry : mapTest.entrySet())
+      {
+         run.test[index] = currEntry.getKey();
+         run.outcome[index] = (byte) currEntry.getValue().outcome.get();
+         run.millis[index] = currEntry.getValue().millis.sum();
+         ++index;
+      }
+      return run;
+   }
+
+   /**
+    * Append {@code run} to the history {@code file}, creating the file if it does not exist.
+    *
+    * @param file History file.
+    * @param run Run to append.
+    * @throws IOException If the file could not be written or is not a history file.
+    */
+   static void append (File file, Run run) throws IOException
+   {
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+         throw new IOException ("Could not create directory " + dir);
+
+      try (RandomAccessFile raf = new RandomAccessFile (file, "rw"))
+      {
+         FileLock lock = raf.getChannel().lock();
+         try
+         {
+            Header header = readHeader (raf);
+            String name[] = new String [header.nameCount];
+            readNames (raf, header.last, name, 0);
+            Map<String,Integer> mapId = new HashMap<> ();
+            for (int i = 0; i < name.length; ++i)
+               mapId.put(name[i], i);
+
+            List<String> listNewName = new ArrayList<> ();
+            Integer order[] = new Integer [run.test.length];
+            int id[] = new int [run.test.length];
+            for (int i = 0; i < run.test.length; ++i)
+            {
+               Integer currId = mapId.get(run.test[i]);
+               if (currId == null)
+               {
+                  currId = header.nameCount + listNewName.size();
+                  mapId.put(run.test[i], currId);
+                  listNewName.add(run.test[i]);
+               }
+               id[i] = currId;
+               order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> id[i]));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream (64 + 8 * run.test.length);
+            DataOutputStream out = new DataOutputStream (bytes);
+            out.writeInt(MAGIC_RUN);
+            out.writeLong(header.last);
+            out.writeLong(run.start);
+            out.writeLong(run.end);
+            out.writeLong(run.pass);
+            out.writeLong(run.fail);
+            out.writeLong(run.skip);
+            out.writeInt(header.nameCount);
+            out.writeInt(listNewName.size());
+            for (String currName : listNewName)
+               out.writeUTF(currName);
+            out.writeInt(run.test.length);
+            int previousId = 0;
+            for (Integer currIndex : order)
+            {
+               writeVarLong (out, id[currIndex] - previousId);
+               previousId = id[currIndex];
+            }
+            for (Integer currIndex : order)
+               out.writeByte(run.outcome[currIndex]);
+            for (Integer currIndex : order)
+               writeVarLong (out, Math.max(0, run.millis[currIndex]));
+            out.flush();
+
+            raf.seek(header.end);
+            raf.write(bytes.toByteArray());
+            raf.setLength(header.end + bytes.size());
+            raf.getChannel().force(false);
+
+            header.runCount += 1;
+            header.nameCount += listNewName.size();
+            header.last = header.end;
+            header.end += bytes.size();
+            writeHeader (raf, header);
+            raf.getChannel().force(false);
+         }
+         finally
+         {
+            lock.release();
+         }
+      }
+   }
+
+   /**
+    * @param file History file.
+    * @param count Maximum number of runs.
+    * @return The last {@code count} runs of the history {@code file}, oldest first, none if the file does not exist.
+    * @throws IOException If the file could not be read or is not a history file.
+    */
+   static List<Run> readLast (File file, int count) throws IOException
+   {
+      if (!file.isFile())
+         return Collections.emptyList();
+
+      try (RandomAccessFile raf = new RandomAccessFile (file, "r"))
+      {
+         FileLock lock = raf.getChannel().lock(0, Long.MAX_VALUE, true);
+         try
+         {
+            Header header = readHeader (raf);
+            String name[] = new String [header.nameCount];
+            LinkedList<Run> listRun = new LinkedList<> ();
+            List<int[]> listId = new ArrayList<> ();
+            int minId = header.nameCount;
+            int firstName = header.nameCount;
+            long offset = header.last;
+            while (offset >= 0 && listRun.size() < count)
+            {
+               DataInputStream in = openAt (raf, offset);
+               long previous = readBlockStart (in, offset);
+               long start = in.readLong(), end = in.readLong();
+               long pass = in.readLong(), fail = in.readLong(), skip = in.readLong();
+               firstName = readNames (in, name);
+
+               int testCount = in.readInt();
+               Run run = new Run (start, end, pass, fail, skip, testCount);
+               int id[] = new int [testCount];
+               for (int i = 0; i < testCount; ++i)
+                  id[i] = ((i == 0) ? 0 : id[i - 1]) + (int) readVarLong (in);
+               in.readFully(run.outcome);
+               for (int i = 0; i < testCount; ++i)
+                  run.millis[i] = readVarLong (in);
+
+               if (testCount > 0)
+                  minId = Math.min(minId, id[0]);
+               listRun.addFirst(run);
+               listId.add(0, id);
+               offset = previous;
+            }
+
+            // Names of the tests of the last runs that were first stored by earlier runs
+            if (firstName > minId)
+               readNames (raf, offset, name, minId);
+            for (int i = 0; i < listRun.size(); ++i)
+            {
+               Run run = listRun.get(i);
+               int id[] = listId.get(i);
+               for (int j = 0; j < id.length; ++j)
+               {
+                  if (id[j] < 0 || id[j] >= name.length || name[id[j]] == null)
+                     throw new IOException ("Invalid test number " + id[j] + " in run history " + file);
+                  run.test[j] = name[id[j]];
+               }
+            }
+            return listRun;
+         }
+         finally
+         {
+            lock.release();
+         }
+      }
+   }
+
+   /**
+    * A test is flaky if it passed and failed in the same run, such as a test that passed when retried, or changed
+    * between passed and failed at least twice across the runs. A test that starts failing and keeps failing changed
+    * once, it is broken rather than flaky.
+    *
+    * @param listRun Runs, oldest first.
+    * @param count Maximum number of tests.
+    * @return The flaky tests of {@code listRun}, most changes first.
+    */
+   static List<FlakyTest> getFlakyTests (List<Run> listRun, int count)
+   {
+      Map<String,FlakyTest> mapFlaky = new HashMap<> ();
+      for (Run currRun : listRun)
+      {
+         for (int i = 0; i < currRun.test.length; ++i)
+            mapFlaky.computeIfAbsent(currRun.test[i], FlakyTest::new).add(currRun.outcome[i]);
+      }
+
+      return mapFlaky.values().stream()
+         .filter(flaky -> flaky.mixed || flaky.changes >= 2)
+         .sorted(Comparator.comparingInt((FlakyTest flaky) -> flaky.changes).reversed()
+            .thenComparing(Comparator.comparingInt((FlakyTest flaky) -> flaky.failed).reversed())
+            .thenComparing(flaky -> flaky.name))
+         .limit(count)
+         .collect(Collectors.toList());
+   }
+
+   /**
+    * @param outcome Outcome bits of a test in a run.
+    * @return The outcomes, such as {@code Pass, Fail} for a test that passed when retried.
+    */
+   static String getOutcomeName (int outcome)
+   {
+      List<String> listName = new ArrayList<> ();
+      if ((outcome & PASS) != 0)
+         listName.add("Pass");
+      if ((outcome & FAIL) != 0)
+         listName.add("Fail");
+      if ((outcome & SKIP) != 0)
+         listName.add("Skip");
+      return String.join(", ", listName);
+   }
+
+   /**
+    * @param raf History file.
+    * @return Header of the file, of a file with no runs if the file is empty.
+    * @throws IOException If the file is not a history file.
+    */
+   private static Header readHeader (RandomAccessFile raf) throws IOException
+   {
+      Header header = new Header ();
+      if (raf.length() == 0)
+      {
+         header.last = -1;
+         header.end = HEADER_SIZE;
+         return header;
+      }
+
+      if (raf.length() < HEADER_SIZE)
+         throw new IOException ("Not a run history file");
+      raf.seek(0);
+      if (raf.readInt() != MAGIC)
+         throw new IOException ("Not a run history file");
+      int version = raf.readInt();
+      if (version != VERSION)
+         throw new IOException ("Unsupported run history version " + version);
+      header.runCount = raf.readInt();
+      header.nameCount = raf.readInt();
+      header.last = raf.readLong();
+      header.end = raf.readLong();
+      if (header.end < HEADER_SIZE || header.end > raf.length() || header.last >= header.end)
+         throw new IOException ("Invalid run history header");
+      return header;
+   }
+
+   private static void writeHeader (RandomAccessFile raf, Header header) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream (HEADER_SIZE);
+      DataOutputStream out = new DataOutputStream (bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(header.runCount);
+      out.writeInt(header.nameCount);
+      out.writeLong(header.last);
+      out.writeLong(header.end);
+      out.flush();
+      raf.seek(0);
+      raf.write(bytes.toByteArray());
+   }
+
+   /**
+    * Read the test names stored by the run at {@code offset} and the runs before it, back to the run that stored name
+    * {@code minId}.
+    *
+    * @param raf History file.
+    * @param offset Offset of a run, -1 for none.
+    * @param name Test names by number, to which the names read are set.
+    * @param minId Lowest number of the names to read.
+    * @throws IOException If the file could not be read.
+    */
+   private static void readNames (RandomAccessFile raf, long offset, String name[], int minId) throws IOException
+   {
+      while (offset >= 0)
+      {
+         DataInputStream in = openAt (raf, offset);
+         long previous = readBlockStart (in, offset);
+         for (int i = 0; i < 5; ++i)
+            in.readLong();
+         if (readNames (in, name) <= minId)
+            return;
+         offset = previous;
+      }
+   }
+
+   /**
+    * @param in Input positioned at the test names of a run.
+    * @param name Test names by number, to which the names of the run are set.
+    * @return Number of the first name of the run.
+    * @throws IOException If the names are not valid.
+    */
+   private static int readNames (DataInput in, String name[]) throws IOException
+   {
+      int first = in.readInt();
+      int count = in.readInt();
+      if (first < 0 || count < 0 || first + count > name.length)
+         throw new IOException ("Invalid test names in run history");
+      for (int i = first; i < first + count; ++i)
+         name[i] = in.readUTF();
+      return first;
+   }
+
+   /**
+    * @param in Input positioned at the run at {@code offset}.
+    * @param offset Offset of the run.
+    * @return Offset of the previous run.
+    * @throws IOException If there is no run at {@code offset}.
+    */
+   private static long readBlockStart (DataInput in, long offset) throws IOException
+   {
+      if (in.readInt() != MAGIC_RUN)
+         throw new IOException ("No run at offset " + offset + " of run history");
+      long previous = in.readLong();
+      if (previous >= offset)
+         throw new IOException ("Invalid previous run of offset " + offset + " of run history");
+      return previous;
+   }
+
+   private static DataInputStream openAt (RandomAccessFile raf, long offset) throws IOException
+   {
+      raf.seek(offset);
+      return new DataInputStream (new BufferedInputStream (Channels.newInputStream(raf.getChannel())));
+   }
+
+   private static void writeVarLong (DataOutput out, long value) throws IOException
+   {
+      while ((value & ~0x7FL) != 0)
+      {
+         out.writeByte((int) ((value & 0x7F) | 0x80));
+         value >>>= 7;
+      }
+      out.writeByte((int) value);
+   }
+
+   private static long readVarLong (DataInput in) throws IOException
+   {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7)
+      {
+         int b = in.readUnsignedByte();
+         value |= (long) (b & 0x7F) << shift;
+         if ((b & 0x80) == 0)
+            return value;
+      }
+      throw new IOException ("Invalid number in run history");
+   }
+
+   /**
+    * Fields of the file header.
+    */
+   private static final class Header
+   {
+      int runCount;
+
+      int nameCount;
+
+      long last;
+
+      long end;
+   }
+
+   /**
+    * Outcome and duration of a test method of this run. A test that is retried or invoked many times has the outcomes
+    * of all its invocations and the sum of their durations.
+    */
+   private static final class TestOutcome
+   {
+      final AtomicInteger outcome = new AtomicInteger ();
+
+      final LongAdder millis = new LongAdder ();
+
+      void record (int outcome, long millis)
+      {
+         this.outcome.accumulateAndGet(outcome, (a, b) -> a | b);
+         this.millis.add(millis);
+      }
+   }
+
+   /**
+    * Summary of a run, with the outcome bits and the duration in milliseconds of each of its tests.
+    */
+   static final class Run
+   {
+      final long start;
+
+      final long end;
+
+      final long pass;
+
+      final long fail;
+
+      final long skip;
+
+      final String test[];
+
+      final byte outcome[];
+
+      final long millis[];
+
+      Run (long start, long end, long pass, long fail, long skip, int testCount)
+      {
+         this.start = start;
+         this.end = end;
+         this.pass = pass;
+         this.fail = fail;
+         this.skip = skip;
+         this.test = new String [testCount];
+         this.outcome = new byte [testCount];
+         this.millis = new long [testCount];
+      }
+
+      /**
+       * @return Percentage of the tests of the run that passed, 0 if there are none.
+       */
+      double getPassRate ()
+      {
+         long total = pass + fail + skip;
+         return (total == 0) ? 0 : pass * 100.0 / total;
+      }
+   }
+
+   /**
+    * Outcomes of a test across runs.
+    */
+   static final class FlakyTest
+   {
+      final String name;
+
+      int runs;
+
+      int failed;
+
+      int changes;
+
+      boolean mixed;
+
+      int last;
+
+      private int lastState;
+
+      FlakyTest (String name)
+      {
+         this.name = name;
+      }
+
+      void add (int outcome)
+      {
+         ++runs;
+         last = outcome;
+         if ((outcome & FAIL) != 0)
+            ++failed;
+         if ((outcome & (PASS | FAIL)) == (PASS | FAIL))
+            mixed = true;
+
+         int state = outcome & (PASS | FAIL);
+         if (state == 0)
+            return;
+         state = ((state & PASS) != 0) ? PASS : FAIL;
+         if (lastState != 0 && state != lastState)
+            ++changes;
+         lastState = state;
+      }
+   }
+}
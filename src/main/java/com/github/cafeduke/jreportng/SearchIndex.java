@@ -0,0 +1,692 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_FILE_EXTENSION;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * An inverted index of the class logs of a run, queried in the browser by {@code log/search.html}.
+ *
+ * <p>
+ * Each record is split into tokens: the lower case words of its message and of its exception and causes, along with
+ * {@code level:<level>} and {@code method:<method>}. For each token the index has the class logs, the documents, with
+ * the number of records of each that have the token. A message is taken to be HTML, as in the HTML logs, so the names
+ * of its tags are not indexed.
+ *
+ * <p>
+ * The postings are built in memory until they number {@link ReportProperties#LOG_SEARCH_MAX_POSTINGS}, then written to
+ * a run file sorted by token and dropped, so that memory stays bounded however many records are logged. When the run
+ * completes, the run files are merged into a segment, {@code search/segment-<fork id>.bin}, and the segments are merged
+ * into the shards of the index. Merging reads each file once, in order, holding the postings of one token per file.
+ *
+ * <p>
+ * The shards, {@code search/shard-<n>.js}, hold consecutive ranges of tokens, and {@code search/index.js} lists the
+ * first token of each, along with the documents. The search page loads the index and, for each term of a query, only
+ * the shard that has the term. Both are scripts rather than data, so that the report can be opened from the file system.
+ * {@link ReportMerger} writes the shards of several JVMs from the segments of each.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.search}. See {@link ReportProperties#LOG_SEARCH}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class SearchIndex
+{
+    /**
+     * Name of the directory of the index, next to the class logs.
+     */
+    public static final String DIR_NAME = "search";
+
+    /**
+     * Words are cut to this length.
+     */
+    static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * A shard is completed once it has this many characters.
+     */
+    static final int SHARD_CHARS = 128 * 1024;
+
+    /**
+     * Causes beyond this depth are not indexed, which also guards against a cycle of causes.
+     */
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_EXTENSION = ".bin";
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    private static final String SHARD_EXTENSION = ".js";
+
+    /**
+     * Directory of the index.
+     */
+    private final File dir;
+
+    /**
+     * Number of postings, and of tokens, held in memory before they are written to a run file.
+     */
+    private final long maxPostings;
+
+    /**
+     * Documents by their number.
+     */
+    private final List<Document> listDocument = new ArrayList<>();
+
+    /**
+     * Postings in memory by token.
+     */
+    private final Map<String, Postings> mapPostings = new HashMap<>();
+
+    /**
+     * Number of postings and tokens in {@link #mapPostings}.
+     */
+    private long postingCount = 0;
+
+    /**
+     * Run files not yet merged into a segment.
+     */
+    private final List<File> listRun = new ArrayList<>();
+
+    /**
+     * Tokens of the record being added, each counted once per record.
+     */
+    private final Set<String> setToken = new HashSet<>();
+
+    /**
+     * Token of each level.
+     */
+    private final Map<Level, String> mapLevelToken = new HashMap<>();
+
+    /**
+     * Formats the message of a record with its parameters.
+     */
+    private final SimpleFormatter formatter = new SimpleFormatter();
+
+    /**
+     * Create an index that writes its files to {@code dir}.
+     *
+     * @param dir Directory of the index, named {@link #DIR_NAME} and next to the class logs.
+     * @param maxPostings Number of postings held in memory before they are written to a run file.
+     */
+    public SearchIndex(File dir, long maxPostings)
+    {
+        this.dir = dir;
+        this.maxPostings = Math.max(1, maxPostings);
+    }
+
+    /**
+     * @return The index of the report, in {@link ReportProperties#DIR_REPORT_LOG_HOME}.
+     */
+    public static SearchIndex getDefault()
+    {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * @return Directory of the index.
+     */
+    public File getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * Add a class log to the index.
+     *
+     * @param name Name of the class log, the name of its logger.
+     * @return Number of the document, to add its records with.
+     */
+    public synchronized int addDocument(String name)
+    {
+        listDocument.add(new Document(name));
+        return listDocument.size() - 1;
+    }
+
+    /**
+     * Add a record of a class log. Postings are written to a run file once there are too many to hold.
+     *
+     * @param doc Number of the document, see {@link #addDocument(String)}.
+     * @param record The record.
+     * @throws IOException If a run file could not be written.
+     */
+    public synchronized void add(int doc, LogRecord record) throws IOException
+    {
+        ++listDocument.get(doc).records;
+        setToken.clear();
+        tokenize(formatter.formatMessage(record), setToken);
+        Throwable thrown = record.getThrown();
+        for (int depth = 0; thrown != null && depth < MAX_CAUSE_DEPTH; ++depth, thrown = thrown.getCause())
+            tokenize(thrown.toString(), setToken);
+        setToken.add(mapLevelToken.computeIfAbsent(record.getLevel(), (l) -> "level:" + l.getName().toLowerCase(Locale.ROOT)));
+        if (record.getSourceMethodName() != null)
+            setToken.add("method:" + record.getSourceMethodName().toLowerCase(Locale.ROOT));
+
+        for (String currToken : setToken)
+        {
+            Postings postings = mapPostings.get(currToken);
+            if (postings == null)
+            {
+                postings = new Postings();
+                mapPostings.put(currToken, postings);
+                ++postingCount;
+            }
+            if (postings.add(doc, 1))
+                ++postingCount;
+        }
+
+        if (postingCount >= maxPostings)
+            spill();
+    }
+
+    /**
+     * Write the segment of this index, {@code segment-<name>.bin}, with the postings of all records added so far. The
+     * run files are merged into it and removed.
+     *
+     * @param name Name of the segment, the fork id of the JVM.
+     * @return The segment file.
+     * @throws IOException If the segment could not be written.
+     */
+    public synchronized File writeSegment(String name) throws IOException
+    {
+        spill();
+        dir.mkdirs();
+        File segment = new File(dir, SEGMENT_PREFIX + name + SEGMENT_EXTENSION);
+        Path pathTemp = ResourceExtractor.getTempPath(segment.toPath());
+        List<SegmentReader> listReader = new ArrayList<>();
+        try
+        {
+            Map<String, Integer> mapDoc = new HashMap<>();
+            for (int i = 0; i < listDocument.size(); ++i)
+                mapDoc.put(listDocument.get(i).name, i);
+            for (File currRun : listRun)
+                listReader.add(new SegmentReader(currRun, mapDoc));
+
+            try (DataOutputStream out = openOutput(pathTemp.toFile()))
+            {
+                writeDocuments(out, listDocument);
+                merge(listReader, (token, postings) -> writeEntry(out, token, postings));
+                out.writeBoolean(false);
+            }
+            ResourceExtractor.move(pathTemp, segment.toPath());
+        }
+        finally
+        {
+            for (SegmentReader currReader : listReader)
+                currReader.close();
+            Files.deleteIfExists(pathTemp);
+        }
+
+        for (File currRun : listRun)
+            Files.deleteIfExists(currRun.toPath());
+        listRun.clear();
+        return segment;
+    }
+
+    /**
+     * Write the shards and {@code index.js} of the index in {@code dir} from {@code listSegment}. Shards left from an
+     * earlier index are removed.
+     *
+     * @param dir Directory of the index.
+     * @param listSegment Segments, see {@link #writeSegment(String)}. A class log in more than one segment has the
+     *        postings of all.
+     * @throws IOException If a segment could not be read or the index could not be written.
+     */
+    public static void writeShards(File dir, List<File> listSegment) throws IOException
+    {
+        writeShards(dir, listSegment, SHARD_CHARS);
+    }
+
+    /**
+     * @param dir Directory of the index.
+     * @param listSegment Segments.
+     * @param shardChars Number of characters after which a shard is completed.
+     * @throws IOException If a segment could not be read or the index could not be written.
+     * @see #writeShards(File, List)
+     */
+    static void writeShards(File dir, List<File> listSegment, int shardChars) throws IOException
+    {
+        Map<String, Integer> mapDoc = new LinkedHashMap<>();
+        List<Document> listDocument = new ArrayList<>();
+        List<SegmentReader> listReader = new ArrayList<>();
+        try
+        {
+            for (File currSegment : listSegment)
+            {
+                SegmentReader reader = new SegmentReader(currSegment, mapDoc);
+                listReader.add(reader);
+                for (int i = 0; i < reader.listDocument.size(); ++i)
+                {
+                    Document document = reader.listDocument.get(i);
+                    if (reader.mapDoc[i] == listDocument.size())
+                        listDocument.add(new Document(document.name));
+                    listDocument.get(reader.mapDoc[i]).records += document.records;
+                }
+            }
+
+            dir.mkdirs();
+            ShardWriter writer = new ShardWriter(dir, shardChars);
+            merge(listReader, writer::append);
+            writer.close();
+            writeIndex(dir, listDocument, writer.listFirstToken);
+
+            File shard[] = dir.listFiles((d, name) -> name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_EXTENSION));
+            for (File currShard : (shard == null) ? new File[0] : shard)
+            {
+                String number = currShard.getName().substring(SHARD_PREFIX.length(), currShard.getName().length() - SHARD_EXTENSION.length());
+                if (!number.matches("[0-9]+") || Integer.parseInt(number) >= writer.listFirstToken.size())
+                    Files.deleteIfExists(currShard.toPath());
+            }
+        }
+        finally
+        {
+            for (SegmentReader currReader : listReader)
+                currReader.close();
+        }
+    }
+
+    /**
+     * @param dir Directory of the index.
+     * @param name Name of a segment, the fork id of a JVM.
+     * @return The segment file, which may not exist.
+     */
+    public static File getSegmentFile(File dir, String name)
+    {
+        return new File(dir, SEGMENT_PREFIX + name + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Add the tokens of {@code text} to {@code setToken}. A token is a run of letters, digits and underscores, lower
+     * case and cut to {@link #MAX_TOKEN_LENGTH}. HTML tags and character references are skipped.
+     *
+     * @param text The text, may be null.
+     * @param setToken Set of tokens to add to.
+     */
+    static void tokenize(String text, Set<String> setToken)
+    {
+        if (text == null)
+            return;
+
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; ++i)
+        {
+            char c = (i < length) ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c) || c == '_')
+            {
+                if (start < 0)
+                    start = i;
+                continue;
+            }
+
+            if (start >= 0)
+            {
+                setToken.add(text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+            if (c == '<' && i + 1 < length && (Character.isLetter(text.charAt(i + 1)) || text.charAt(i + 1) == '/'))
+            {
+                int end = text.indexOf('>', i);
+                if (end > 0)
+                    i = end;
+            }
+            else if (c == '&')
+            {
+                int end = i + 1;
+                while (end < length && end - i <= 8 && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '#'))
+                    ++end;
+                if (end < length && end > i + 1 && text.charAt(end) == ';')
+                    i = end;
+            }
+        }
+    }
+
+    /**
+     * Write the postings in memory to a run file, sorted by token, and drop them.
+     *
+     * @throws IOException If the run file could not be written.
+     */
+    private void spill() throws IOException
+    {
+        if (mapPostings.isEmpty())
+            return;
+
+        dir.mkdirs();
+        File run = Files.createTempFile(dir.toPath(), "run-", SEGMENT_EXTENSION).toFile();
+        listRun.add(run);
+        List<String> listToken = new ArrayList<>(mapPostings.keySet());
+        Collections.sort(listToken);
+        try (DataOutputStream out = openOutput(run))
+        {
+            writeDocuments(out, listDocument);
+            for (String currToken : listToken)
+                writeEntry(out, currToken, mapPostings.get(currToken));
+            out.writeBoolean(false);
+        }
+        mapPostings.clear();
+        postingCount = 0;
+    }
+
+    /**
+     * Merge the entries of {@code listReader}, in token order, adding up the postings of a token found in more than one.
+     *
+     * @param listReader Readers of run files or segments.
+     * @param sink Receives each token with its postings.
+     * @throws IOException If a file could not be read or an entry could not be written.
+     */
+    private static void merge(List<SegmentReader> listReader, EntrySink sink) throws IOException
+    {
+        PriorityQueue<SegmentReader> queue = new PriorityQueue<>(Math.max(1, listReader.size()), (a, b) -> a.token.compareTo(b.token));
+        for (SegmentReader currReader : listReader)
+            if (currReader.next())
+                queue.add(currReader);
+
+        Postings postings = new Postings();
+        while (!queue.isEmpty())
+        {
+            String token = queue.peek().token;
+            postings.size = 0;
+            while (!queue.isEmpty() && queue.peek().token.equals(token))
+            {
+                SegmentReader reader = queue.poll();
+                for (int i = 0; i < reader.postings.size; ++i)
+                    postings.add(reader.mapDoc[reader.postings.doc[i]], reader.postings.count[i]);
+                if (reader.next())
+                    queue.add(reader);
+            }
+            sink.accept(token, postings);
+        }
+    }
+
+    /**
+     * Write {@code index.js}, which calls {@code jreportSearchIndex(index)} with the number of records, the extension of
+     * the class logs, the documents as {@code [name, records]} and the first token of each shard.
+     */
+    private static void writeIndex(File dir, List<Document> listDocument, List<String> listFirstToken) throws IOException
+    {
+        long records = 0;
+        for (Document currDocument : listDocument)
+            records += currDocument.records;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("jreportSearchIndex({\"records\":").append(records).append(",\"extension\":");
+        NdjsonFormatter.appendString(builder, LOG_FILE_EXTENSION).append(",\n\"docs\":[");
+        for (int i = 0; i < listDocument.size(); ++i)
+        {
+            builder.append((i == 0) ? "\n[" : ",\n[");
+            NdjsonFormatter.appendString(builder, listDocument.get(i).name).append(',').append(listDocument.get(i).records).append(']');
+        }
+        builder.append("],\n\"shards\":[");
+        for (int i = 0; i < listFirstToken.size(); ++i)
+            NdjsonFormatter.appendString((i == 0) ? builder : builder.append(','), listFirstToken.get(i));
+        builder.append("]});\n");
+
+        Path pathIndex = new File(dir, "index.js").toPath();
+        Path pathTemp = ResourceExtractor.getTempPath(pathIndex);
+        try
+        {
+            Files.write(pathTemp, builder.toString().getBytes(StandardCharsets.UTF_8));
+            ResourceExtractor.move(pathTemp, pathIndex);
+        }
+        finally
+        {
+            Files.deleteIfExists(pathTemp);
+        }
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException
+    {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    private static void writeDocuments(DataOutputStream out, List<Document> listDocument) throws IOException
+    {
+        out.writeInt(listDocument.size());
+        for (Document currDocument : listDocument)
+        {
+            out.writeUTF(currDocument.name);
+            out.writeLong(currDocument.records);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, String token, Postings postings) throws IOException
+    {
+        out.writeBoolean(true);
+        out.writeUTF(token);
+        out.writeInt(postings.size);
+        for (int i = 0; i < postings.size; ++i)
+        {
+            out.writeInt(postings.doc[i]);
+            out.writeInt(postings.count[i]);
+        }
+    }
+
+    /**
+     * Receives the merged entries.
+     */
+    private interface EntrySink
+    {
+        void accept(String token, Postings postings) throws IOException;
+    }
+
+    /**
+     * A class log.
+     */
+    private static final class Document
+    {
+        private final String name;
+
+        private long records = 0;
+
+        Document(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Documents that have a token, in order of their number, with the number of records of each that have it.
+     */
+    private static final class Postings
+    {
+        private int doc[] = new int[2];
+
+        private int count[] = new int[2];
+
+        private int size = 0;
+
+        /**
+         * @param d Number of a document.
+         * @param n Number of records to add.
+         * @return True if the document is new to the postings.
+         */
+        boolean add(int d, int n)
+        {
+            int i = (size > 0 && doc[size - 1] == d) ? size - 1 : Arrays.binarySearch(doc, 0, size, d);
+            if (i >= 0)
+            {
+                count[i] += n;
+                return false;
+            }
+
+            i = -i - 1;
+            if (size == doc.length)
+            {
+                doc = Arrays.copyOf(doc, 2 * size);
+                count = Arrays.copyOf(count, 2 * size);
+            }
+            System.arraycopy(doc, i, doc, i + 1, size - i);
+            System.arraycopy(count, i, count, i + 1, size - i);
+            doc[i] = d;
+            count[i] = n;
+            ++size;
+            return true;
+        }
+    }
+
+    /**
+     * Reads a run file or a segment: the documents, then the entries in token order.
+     */
+    private static final class SegmentReader implements Closeable
+    {
+        private final DataInputStream in;
+
+        private final List<Document> listDocument = new ArrayList<>();
+
+        /**
+         * Number of each document of the file in the merged documents.
+         */
+        private final int mapDoc[];
+
+        private final Postings postings = new Postings();
+
+        private String token;
+
+        /**
+         * @param file The file.
+         * @param mapDoc Numbers of the merged documents by name, to which the documents of the file are added.
+         */
+        SegmentReader(File file, Map<String, Integer> mapDoc) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try
+            {
+                int docs = in.readInt();
+                this.mapDoc = new int[docs];
+                for (int i = 0; i < docs; ++i)
+                {
+                    Document document = new Document(in.readUTF());
+                    document.records = in.readLong();
+                    listDocument.add(document);
+                    Integer number = mapDoc.get(document.name);
+                    if (number == null)
+                        mapDoc.put(document.name, number = mapDoc.size());
+                    this.mapDoc[i] = number;
+                }
+            }
+            catch (IOException e)
+            {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return True if the next entry was read, false at the end of the file.
+         */
+        boolean next() throws IOException
+        {
+            if (!in.readBoolean())
+                return false;
+
+            token = in.readUTF();
+            int size = in.readInt();
+            if (postings.doc.length < size)
+            {
+                postings.doc = new int[size];
+                postings.count = new int[size];
+            }
+            for (int i = 0; i < size; ++i)
+            {
+                postings.doc[i] = in.readInt();
+                postings.count[i] = in.readInt();
+            }
+            postings.size = size;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the merged entries to shards of about {@code shardChars} characters, each a call to
+     * {@code jreportSearchShard(n, [token, [doc, count, ...], ...])} with the tokens in order.
+     */
+    private static final class ShardWriter
+    {
+        private final File dir;
+
+        private final int shardChars;
+
+        private final StringBuilder builder = new StringBuilder();
+
+        private final List<String> listFirstToken = new ArrayList<>();
+
+        ShardWriter(File dir, int shardChars)
+        {
+            this.dir = dir;
+            this.shardChars = shardChars;
+        }
+
+        void append(String token, Postings postings) throws IOException
+        {
+            if (builder.length() == 0)
+            {
+                builder.append("jreportSearchShard(").append(listFirstToken.size()).append(",[\n");
+                listFirstToken.add(token);
+            }
+            else
+            {
+                builder.append(",\n");
+            }
+
+            NdjsonFormatter.appendString(builder, token).append(",[");
+            for (int i = 0; i < postings.size; ++i)
+                builder.append((i == 0) ? "" : ",").append(postings.doc[i]).append(',').append(postings.count[i]);
+            builder.append(']');
+
+            if (builder.length() >= shardChars)
+                close();
+        }
+
+        /**
+         * Complete the shard in progress, if any.
+         */
+        void close() throws IOException
+        {
+            if (builder.length() == 0)
+                return;
+
+            builder.append("\n]);\n");
+            File shard = new File(dir, SHARD_PREFIX + (listFirstToken.size() - 1) + SHARD_EXTENSION);
+            Files.write(shard.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+            builder.setLength(0);
+        }
+    }
+
+    private static final class DefaultHolder
+    {
+        static final SearchIndex INSTANCE = new SearchIndex(new File(ReportProperties.DIR_REPORT_LOG_HOME, DIR_NAME), ReportProperties.LOG_SEARCH_MAX_POSTINGS);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.IOException;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that adds the records of a class log to a {@link SearchIndex}, as a document of its own.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.search}. See {@link ReportProperties#LOG_SEARCH}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class SearchIndexHandler extends Handler
+{
+    /**
+     * The index.
+     */
+    private final SearchIndex index;
+
+    /**
+     * Number of the class log in the index.
+     */
+    private final int doc;
+
+    /**
+     * Create a handler that adds the records of class log {@code name} to {@code index}.
+     *
+     * @param index The index.
+     * @param name Name of the class log, the name of its logger.
+     */
+    public SearchIndexHandler(SearchIndex index, String name)
+    {
+        this.index = index;
+        this.doc = index.addDocument(name);
+    }
+
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (!isLoggable(record))
+            return;
+
+        try
+        {
+            index.add(doc, record);
+        }
+        catch (IOException e)
+        {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+
+    }
+
+    @Override
+    public void close()
+    {
+
+    }
+}
@@ -2,13 +2,16 @@ package com.github.cafeduke.jreportng;
 
 import static com.github.cafeduke.jreportng.ReportProperties.LOG_DEFAULT_CLASS;
 
+import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.testng.IClassListener;
 import org.testng.IConfigurationListener;
 import org.testng.IExecutionListener;
 import org.testng.ISuite;
 import org.testng.ISuiteListener;
+import org.testng.ITestClass;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestNGMethod;
@@ -19,7 +22,7 @@ import org.testng.ITestResult;
  * 
  * @author Raghunandan.Seshadri
  */
-public class TestListener implements ITestListener, ISuiteListener, IExecutionListener, IConfigurationListener
+public class TestListener implements ITestListener, ISuiteListener, IExecutionListener, IConfigurationListener, IClassListener
 {
     /**
      * --------------------------------------------------------
@@ -33,6 +36,9 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
         JReportLogUtil.handleTestRunStart();
         String mesg = "Started executing TestNG instance";
         log(mesg);
+
+        for (File currFragment : JReportLogUtil.removeStaleFragments())
+            log("Could not remove report fragment " + currFragment + " of an earlier run", null, Level.WARNING, HtmlFormatter.STYLE_ROW_WARNING);
     }
 
     @Override
@@ -40,6 +46,14 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     {
         String mesg = "Finished executing TestNG instance";
         log(mesg);
+
+        long dropped = LoggerUtil.drainHandlers();
+        if (dropped > 0)
+        {
+            log(dropped + " log records were dropped as the asynchronous log queue was full", null, Level.WARNING, HtmlFormatter.STYLE_ROW_WARNING);
+            LoggerUtil.drainHandlers();
+        }
+        LoggerUtil.releaseAllLoggers();
         JReportLogUtil.handleTestRunCompletion();
     }
 
@@ -59,7 +73,6 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onFinish(ISuite suite)
     {
-        JReportLogUtil.handleTestSuitesCompletion(suite);
         String mesg = "Finished executing suite " + suite.getName();
         log(mesg);
     }
@@ -80,6 +93,27 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     {
     }
 
+    /**
+     * --------------------------------------------------------
+     * Listener - Test Class Level
+     * --------------------------------------------------------
+     */
+
+    @Override
+    public void onBeforeClass(ITestClass testClass)
+    {
+    }
+
+    /**
+     * Close the log of the class that completed, so that its file descriptor is released and the log is a complete
+     * document. The log is opened again if the class logs afterwards.
+     */
+    @Override
+    public void onAfterClass(ITestClass testClass)
+    {
+        LoggerUtil.releaseLogger(testClass.getRealClass());
+    }
+
     /**
      * --------------------------------------------------------
      * Listener - Test Method Level
@@ -89,6 +123,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onTestStart(ITestResult result)
     {
+        JReportLogUtil.handleTestStart(result);
         String mesg = "Started executing test " + TestListener.getDisplayName(result);
         log(mesg, result, Level.INFO, HtmlFormatter.STYLE_ROW_HIGHLIGHT);
     }
@@ -96,6 +131,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onTestSuccess(ITestResult result)
     {
+        JReportLogUtil.handleTestResult(result);
         String mesg = "Test " + TestListener.getDisplayName(result) + " passed";
         log(mesg, result, Level.INFO, HtmlFormatter.STYLE_ROW_SUCCESS);
     }
@@ -103,6 +139,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onTestSkipped(ITestResult result)
     {
+        JReportLogUtil.handleTestResult(result);
         String mesg = "Test " + TestListener.getDisplayName(result) + " skipped";
         log(mesg, result, Level.WARNING, HtmlFormatter.STYLE_ROW_WARNING);
     }
@@ -110,6 +147,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onTestFailure(ITestResult result)
     {
+        JReportLogUtil.handleTestResult(result);
         String mesg = "Test " + TestListener.getDisplayName(result) + " failed";
         log(mesg, result, Level.SEVERE, result.getThrowable());
     }
@@ -117,8 +155,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onTestFailedButWithinSuccessPercentage(ITestResult result)
     {
-        // TODO Auto-generated method stub
-
+        JReportLogUtil.handleTestResult(result);
     }
 
     /**
@@ -130,6 +167,7 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onConfigurationSuccess(ITestResult result)
     {
+        JReportLogUtil.handleConfigurationResult(result);
         ITestNGMethod method = result.getMethod();
         String prefix = "[" + result.getMethod().getRealClass().getSimpleName() + "] ";
         String message = prefix + (method.isBeforeClassConfiguration() ? "Before Class passed" : "After Class passed");
@@ -140,12 +178,13 @@ public class TestListener implements ITestListener, ISuiteListener, IExecutionLi
     @Override
     public void onConfigurationSkip(ITestResult result)
     {
-        // TODO Auto-generated method stub
+        JReportLogUtil.handleConfigurationResult(result);
     }
 
     @Override
     public void onConfigurationFailure(ITestResult result)
     {
+        JReportLogUtil.handleConfigurationResult(result);
         ITestNGMethod method = result.getMethod();
         String prefix = "[" + result.getMethod().getRealClass().getSimpleName() + "] ";
         String message = prefix + (method.isBeforeClassConfiguration() ? "Before Class failed" : "After Class failed");
@@ -0,0 +1,72 @@
+package com.github.cafeduke.jreportng;
+
+/**
+ * The number of tests that have passed, failed, skipped and are running at the moment {@link JReportLogUtil#getTestResultSnapshot()}
+ * was invoked.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public final class TestResultSnapshot
+{
+   private final long pass;
+
+   private final long fail;
+
+   private final long skip;
+
+   private final long running;
+
+   TestResultSnapshot (long pass, long fail, long skip, long running)
+   {
+      this.pass = pass;
+      this.fail = fail;
+      this.skip = skip;
+      this.running = running;
+   }
+
+   /**
+    * @return Number of tests that have passed.
+    */
+   public long getPass ()
+   {
+      return pass;
+   }
+
+   /**
+    * @return Number of tests that have failed.
+    */
+   public long getFail ()
+   {
+      return fail;
+   }
+
+   /**
+    * @return Number of tests that have skipped.
+    */
+   public long getSkip ()
+   {
+      return skip;
+   }
+
+   /**
+    * @return Number of tests that have started and not yet completed.
+    */
+   public long getRunning ()
+   {
+      return running;
+   }
+
+   /**
+    * @return Number of tests that have completed with a pass, fail or skip result.
+    */
+   public long getTotal ()
+   {
+      return pass + fail + skip;
+   }
+
+   @Override
+   public String toString ()
+   {
+      return "pass=" + pass + ", fail=" + fail + ", skip=" + skip + ", running=" + running;
+   }
+}
@@ -0,0 +1,299 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+/**
+ * Durations of the test methods and configuration methods of the run, aggregated by method and by class, to find where
+ * the time of a suite goes.
+ *
+ * Each duration is recorded with a map lookup and a few atomic additions, on the thread that completed the test.
+ *
+ * The timings are saved in the report fragment of a JVM and added up across fragments, see {@link ReportMerger}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+final class TestTimings
+{
+   /**
+    * Timing of each test method, by {@code <class name>.<method name>}.
+    */
+   private static final ConcurrentMap<String,MethodTiming> MAP_METHOD_TIMING = new ConcurrentHashMap<> ();
+
+   /**
+    * Timing of each test class, by class name.
+    */
+   private static final ConcurrentMap<String,ClassTiming> MAP_CLASS_TIMING = new ConcurrentHashMap<> ();
+
+   /**
+    * Prefix of the fragment properties of method timings.
+    */
+   private static final String PREFIX_METHOD = "method.";
+
+   /**
+    * Prefix of the fragment properties of class timings.
+    */
+   private static final String PREFIX_CLASS = "class.";
+
+   private TestTimings ()
+   {
+
+   }
+
+   /**
+    * Record the duration of a completed test method.
+    *
+    * @param result Result of the test.
+    */
+   static void recordTest (ITestResult result)
+   {
+      String className = getClassName (result);
+      String methodName = className + "." + result.getMethod().getMethodName();
+      long millis = getMillis (result);
+
+      MAP_METHOD_TIMING.computeIfAbsent(methodName, MethodTiming::new).record(millis);
+      MAP_CLASS_TIMING.computeIfAbsent(className, ClassTiming::new).histogram.record(millis);
+   }
+
+   /**
+    * Record the duration of a completed configuration method, such as {@code @BeforeClass} or {@code @AfterMethod}.
+    *
+    * @param result Result of the configuration method.
+    */
+   static void recordConfiguration (ITestResult result)
+   {
+      ClassTiming timing = MAP_CLASS_TIMING.computeIfAbsent(getClassName (result), ClassTiming::new);
+      ITestNGMethod method = result.getMethod();
+      long millis = getMillis (result);
+      if (method.isBeforeClassConfiguration() || method.isAfterClassConfiguration())
+         timing.classConfiguration.add(millis);
+      else
+         timing.otherConfiguration.add(millis);
+   }
+
+   /**
+    * @param count Maximum number of methods.
+    * @return The test methods that took the most time in total, slowest first.
+    */
+   static List<MethodTiming> getSlowestMethods (int count)
+   {
+      return MAP_METHOD_TIMING.values().stream()
+         .sorted(Comparator.comparingLong(MethodTiming::getTotal).reversed())
+         .limit(count)
+         .collect(Collectors.toList());
+   }
+
+   /**
+    * @param count Maximum number of classes.
+    * @return The test classes that took the most time in total, including configuration methods, slowest first.
+    */
+   static List<ClassTiming> getSlowestClasses (int count)
+   {
+      return MAP_CLASS_TIMING.values().stream()
+         .sorted(Comparator.comparingLong(ClassTiming::getTotal).reversed())
+         .limit(count)
+         .collect(Collectors.toList());
+   }
+
+   /**
+    * @return Time in milliseconds spent in configuration methods of all classes.
+    */
+   static long getConfigurationTotal ()
+   {
+      long total = 0;
+      for (ClassTiming currTiming : MAP_CLASS_TIMING.values())
+         total += currTiming.getConfigurationTotal();
+      return total;
+   }
+
+   /**
+    * Save the timings to {@code fragment}. A method is saved as {@code method.<name>=<count>,<total>,<max>}, a class as
+    * {@code class.<name>=<class configuration>,<other configuration>,<total>,<max>,<bucket>:<count> ...}.
+    *
+    * @param fragment Properties of a report fragment.
+    */
+   static void exportTo (Properties fragment)
+   {
+      for (MethodTiming currTiming : MAP_METHOD_TIMING.values())
+         fragment.setProperty(PREFIX_METHOD + currTiming.name, currTiming.getCount() + "," + currTiming.getTotal() + "," + currTiming.getMax());
+
+      for (ClassTiming currTiming : MAP_CLASS_TIMING.values())
+      {
+         DurationHistogram histogram = currTiming.histogram;
+         StringBuilder value = new StringBuilder ();
+         value.append(currTiming.classConfiguration.sum()).append(',')
+              .append(currTiming.otherConfiguration.sum()).append(',')
+              .append(histogram.getTotal()).append(',')
+              .append(histogram.getMax()).append(',');
+         for (Map.Entry<Integer,Long> currBucket : histogram.getBuckets().entrySet())
+            value.append(' ').append(currBucket.getKey()).append(':').append(currBucket.getValue());
+         fragment.setProperty(PREFIX_CLASS + currTiming.name, value.toString());
+      }
+   }
+
+   /**
+    * Add the timings saved to {@code fragment} by {@link #exportTo(Properties)}.
+    *
+    * @param fragment Properties of a report fragment.
+    * @throws IllegalArgumentException If a timing is not valid.
+    */
+   static void importFrom (Properties fragment)
+   {
+      for (String currKey : fragment.stringPropertyNames())
+      {
+         String value = fragment.getProperty(currKey);
+         try
+         {
+            if (currKey.startsWith(PREFIX_METHOD))
+            {
+               String field[] = value.split(",");
+               MAP_METHOD_TIMING.computeIfAbsent(currKey.substring(PREFIX_METHOD.length()), MethodTiming::new)
+                  .merge(Long.parseLong(field[0]), Long.parseLong(field[1]), Long.parseLong(field[2]));
+            }
+            else if (currKey.startsWith(PREFIX_CLASS))
+            {
+               String field[] = value.split(",", 5);
+               ClassTiming timing = MAP_CLASS_TIMING.computeIfAbsent(currKey.substring(PREFIX_CLASS.length()), ClassTiming::new);
+               timing.classConfiguration.add(Long.parseLong(field[0]));
+               timing.otherConfiguration.add(Long.parseLong(field[1]));
+
+               Map<Integer,Long> mapBucket = new TreeMap<> ();
+               for (String currBucket : field[4].trim().split(" "))
+               {
+                  if (currBucket.isEmpty())
+                     continue;
+                  int index = currBucket.indexOf(':');
+                  mapBucket.put(Integer.parseInt(currBucket.substring(0, index)), Long.parseLong(currBucket.substring(index + 1)));
+               }
+               timing.histogram.merge(mapBucket, Long.parseLong(field[2]), Long.parseLong(field[3]));
+            }
+         }
+         catch (RuntimeException e)
+         {
+            throw new IllegalArgumentException ("Invalid timing " + currKey + "=" + value, e);
+         }
+      }
+   }
+
+   /**
+    * @param result Result of a test or configuration method.
+    * @return Display name of the test class, rather than of the base class that may declare a configuration method.
+    */
+   static String getClassName (ITestResult result)
+   {
+      Class<?> testClass = (result.getTestClass() == null) ? result.getMethod().getRealClass() : result.getTestClass().getRealClass();
+      return ReportProperties.getDisplayName(testClass);
+   }
+
+   /**
+    * @param result Result of a test or configuration method.
+    * @return Duration of the method in milliseconds.
+    */
+   static long getMillis (ITestResult result)
+   {
+      return Math.max(0, result.getEndMillis() - result.getStartMillis());
+   }
+
+   /**
+    * Durations of a test method.
+    */
+   static final class MethodTiming
+   {
+      private final String name;
+
+      private long count;
+
+      private long total;
+
+      private long max;
+
+      MethodTiming (String name)
+      {
+         this.name = name;
+      }
+
+      synchronized void record (long millis)
+      {
+         ++count;
+         total += millis;
+         max = Math.max(max, millis);
+      }
+
+      synchronized void merge (long count, long total, long max)
+      {
+         this.count += count;
+         this.total += total;
+         this.max = Math.max(this.max, max);
+      }
+
+      String getName ()
+      {
+         return name;
+      }
+
+      synchronized long getCount ()
+      {
+         return count;
+      }
+
+      synchronized long getTotal ()
+      {
+         return total;
+      }
+
+      synchronized long getMax ()
+      {
+         return max;
+      }
+   }
+
+   /**
+    * Durations of the test methods and configuration methods of a test class.
+    */
+   static final class ClassTiming
+   {
+      private final String name;
+
+      final DurationHistogram histogram = new DurationHistogram ();
+
+      final LongAdder classConfiguration = new LongAdder ();
+
+      final LongAdder otherConfiguration = new LongAdder ();
+
+      ClassTiming (String name)
+      {
+         this.name = name;
+      }
+
+      String getName ()
+      {
+         return name;
+      }
+
+      /**
+       * @return Time in test methods and configuration methods.
+       */
+      long getTotal ()
+      {
+         return histogram.getTotal() + getConfigurationTotal();
+      }
+
+      /**
+       * @return Time in configuration methods.
+       */
+      long getConfigurationTotal ()
+      {
+         return classConfiguration.sum() + otherConfiguration.sum();
+      }
+   }
+}
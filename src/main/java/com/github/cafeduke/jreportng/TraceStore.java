@@ -0,0 +1,338 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.LINE_SEP;
+import static com.github.cafeduke.jreportng.ReportProperties.LOG_TESTCLASS_CSS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Stack traces of a run, each rendered once and shared by the logs in which it occurs.
+ *
+ * <p>
+ * When a shared fixture breaks, many tests fail with the same stack trace. {@link HtmlFormatter} renders the trace
+ * table of the first occurrence and the store writes it to {@code traces/trace-<fingerprint>.html} as well. Later
+ * occurrences are logged as a row with the exception, the occurrence number and a link to the shared page, without
+ * splitting or rendering the trace again. The {@code traces} directory is next to the class logs, so that the link is
+ * relative to the log.
+ *
+ * <p>
+ * The fingerprint of a trace is computed from the class and frames of each throwable in its cause chain, not the
+ * messages, so traces that differ only in their messages are shared and the row of each occurrence shows its own
+ * message. A throwable without frames, as read back from a journal, is fingerprinted by its printed trace. The
+ * fingerprint of a trace is the same in every JVM, so the pages of a merged report do not clash.
+ *
+ * <p>
+ * Enable using system property {@code jreport.log.trace.dedup}. See {@link ReportProperties#LOG_TRACE_DEDUP}.
+ *
+ * @author Raghunandan.Seshadri
+ */
+public class TraceStore
+{
+    /**
+     * Name of the directory of the shared trace pages.
+     */
+    public static final String DIR_NAME = "traces";
+
+    /**
+     * Causes beyond this depth are left out of the fingerprint, which also guards against a cycle of causes.
+     */
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    /**
+     * Directory of the shared trace pages.
+     */
+    private final File dir;
+
+    /**
+     * Traces by their key.
+     */
+    private final ConcurrentMap<Key, Trace> mapTrace = new ConcurrentHashMap<>();
+
+    /**
+     * Fingerprints in use, to tell apart distinct traces with the same fingerprint.
+     */
+    private final Set<Long> setFingerprint = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a store that writes the shared trace pages to {@code dir}.
+     *
+     * @param dir Directory of the shared trace pages, named {@link #DIR_NAME} and next to the logs that link to them.
+     */
+    public TraceStore(File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * @return The store of the report, in {@link ReportProperties#DIR_REPORT_LOG_HOME}.
+     */
+    public static TraceStore getDefault()
+    {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * @return Directory of the shared trace pages.
+     */
+    public File getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * @return Number of distinct traces.
+     */
+    public int getTraceCount()
+    {
+        return mapTrace.size();
+    }
+
+    /**
+     * @param throwable The throwable.
+     * @return The trace of {@code throwable}, added to the store if new. Record the occurrence using
+     *         {@link Trace#occur()}.
+     */
+    public Trace getTrace(Throwable throwable)
+    {
+        return mapTrace.computeIfAbsent(new Key(throwable), this::newTrace);
+    }
+
+    /**
+     * Write {@code traces/index.html}, which lists the traces with the number of times each occurred. Nothing is
+     * written if no trace occurred.
+     *
+     * @throws IOException If the index could not be written.
+     */
+    public void writeIndex() throws IOException
+    {
+        if (mapTrace.isEmpty())
+            return;
+
+        List<Trace> listTrace = new ArrayList<>(mapTrace.values());
+        Collections.sort(listTrace, (a, b) -> Integer.compare(b.getCount(), a.getCount()));
+
+        StringBuilder builder = new StringBuilder();
+        appendHead(builder, "Stack Traces");
+        builder.append("<table class='tableLog'>").append(LINE_SEP);
+        builder.append("<tr class='logRowHeading'><th>Occurrences</th><th>Exception</th></tr>").append(LINE_SEP);
+        for (Trace currTrace : listTrace)
+        {
+            builder.append("<tr><td>").append(currTrace.getCount()).append("</td>");
+            builder.append("<td><a href='").append(currTrace.getFileName()).append("'>").append(HtmlFormatter.escapeHtml(currTrace.text)).append("</a></td></tr>").append(LINE_SEP);
+        }
+        builder.append("</table>").append(LINE_SEP);
+        appendTail(builder);
+        dir.mkdirs();
+        Files.write(new File(dir, "index.html").toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param key Key of a trace not in the store.
+     * @return A trace with a fingerprint not in use.
+     */
+    private Trace newTrace(Key key)
+    {
+        long fingerprint = key.fingerprint;
+        while (!setFingerprint.add(fingerprint))
+            ++fingerprint;
+        return new Trace(String.format("%016x", fingerprint), key.text);
+    }
+
+    /**
+     * Append the head of a page in the trace directory.
+     *
+     * @param builder Buffer to append to.
+     * @param title Title of the page.
+     */
+    private static void appendHead(StringBuilder builder, String title)
+    {
+        builder.append("<?xml version='1.0' encoding='utf-8' ?>").append(LINE_SEP);
+        builder.append("<!doctype html>").append(LINE_SEP);
+        builder.append("<html>").append(LINE_SEP);
+        builder.append("<head>").append(LINE_SEP);
+        builder.append("   <meta http-equiv='Content-Type' content='text/html;charset=utf-8' />").append(LINE_SEP);
+        builder.append("   <link rel='stylesheet' type='text/css' href='../").append(LOG_TESTCLASS_CSS).append("' />").append(LINE_SEP);
+        builder.append("</head>").append(LINE_SEP);
+        builder.append("<body>").append(LINE_SEP);
+        builder.append("<h1>").append(title).append("</h1>").append(LINE_SEP);
+        builder.append("<hr>").append(LINE_SEP);
+    }
+
+    /**
+     * Append the tail of a page in the trace directory.
+     *
+     * @param builder Buffer to append to.
+     */
+    private static void appendTail(StringBuilder builder)
+    {
+        builder.append("</body>").append(LINE_SEP);
+        builder.append("</html>").append(LINE_SEP);
+    }
+
+    /**
+     * A distinct stack trace.
+     */
+    public final class Trace
+    {
+        private final String fingerprint;
+
+        private final String text;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Trace(String fingerprint, String text)
+        {
+            this.fingerprint = fingerprint;
+            this.text = text;
+        }
+
+        /**
+         * @return Fingerprint of the trace, as hexadecimal.
+         */
+        public String getFingerprint()
+        {
+            return fingerprint;
+        }
+
+        /**
+         * Record an occurrence of the trace.
+         *
+         * @return The number of the occurrence, 1 for the first, which is to be rendered and passed to
+         *         {@link #write(String)}.
+         */
+        public int occur()
+        {
+            return count.incrementAndGet();
+        }
+
+        /**
+         * @return Number of occurrences so far.
+         */
+        public int getCount()
+        {
+            return count.get();
+        }
+
+        /**
+         * @return Name of the shared page of the trace.
+         */
+        public String getFileName()
+        {
+            return "trace-" + fingerprint + ".html";
+        }
+
+        /**
+         * @return Link to the shared page of the trace, relative to the logs next to the trace directory.
+         */
+        public String getHref()
+        {
+            return dir.getName() + "/" + getFileName();
+        }
+
+        /**
+         * Write the shared page of the trace.
+         *
+         * @param traceTable The trace rendered as HTML.
+         * @throws IOException If the page could not be written.
+         */
+        public void write(String traceTable) throws IOException
+        {
+            StringBuilder builder = new StringBuilder(traceTable.length() + 512);
+            appendHead(builder, "Stack Trace " + fingerprint);
+            builder.append("<div class='logContent'>").append(LINE_SEP);
+            builder.append(traceTable);
+            builder.append("</div>").append(LINE_SEP);
+            appendTail(builder);
+            dir.mkdirs();
+            Files.write(new File(dir, getFileName()).toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Identity of a trace: the class and frames of each throwable in the cause chain, or the printed trace of a
+     * throwable without frames.
+     */
+    private static final class Key
+    {
+        private final Object part[];
+
+        private final long fingerprint;
+
+        private final String text;
+
+        Key(Throwable throwable)
+        {
+            text = String.valueOf(throwable);
+            List<Object> listPart = new ArrayList<>();
+            Map<Throwable, Boolean> mapSeen = new IdentityHashMap<>();
+            for (Throwable curr = throwable; curr != null && listPart.size() < 2 * MAX_CAUSE_DEPTH && mapSeen.put(curr, Boolean.TRUE) == null; curr = curr.getCause())
+            {
+                StackTraceElement frame[] = curr.getStackTrace();
+                listPart.add(curr.getClass().getName());
+                listPart.add(frame.length > 0 ? frame : ExceptionUtils.getStackTrace(curr));
+            }
+            part = listPart.toArray();
+
+            long hash = 1125899906842597L;
+            for (Object currPart : part)
+            {
+                if (currPart instanceof StackTraceElement[])
+                {
+                    for (StackTraceElement currFrame : (StackTraceElement[]) currPart)
+                    {
+                        hash = mix(hash, currFrame.getClassName());
+                        hash = mix(hash, currFrame.getMethodName());
+                        hash = mix(hash, currFrame.getFileName());
+                        hash = 31 * hash + currFrame.getLineNumber();
+                    }
+                }
+                else
+                {
+                    hash = mix(hash, (String) currPart);
+                }
+            }
+            fingerprint = hash;
+        }
+
+        private static long mix(long hash, String text)
+        {
+            if (text == null)
+                return 31 * hash;
+            for (int i = 0; i < text.length(); ++i)
+                hash = 31 * hash + text.charAt(i);
+            return hash;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(fingerprint);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Key && ((Key) other).fingerprint == fingerprint && Arrays.deepEquals(((Key) other).part, part);
+        }
+    }
+
+    private static final class DefaultHolder
+    {
+        static final TraceStore INSTANCE = new TraceStore(new File(ReportProperties.DIR_REPORT_LOG_HOME, DIR_NAME));
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Search page for the index of the class logs written by SearchIndex.
+ *
+ * search/index.js calls jreportSearchIndex(index) with the class logs, the documents, and the first token of each
+ * shard. search/shard-<n>.js calls jreportSearchShard(n, entries) with its tokens in order, each followed by its
+ * postings: pairs of document and number of records. Scripts are loaded rather than fetched so that the report can be
+ * opened from the file system, and a query loads only the shards of its terms.
+ *
+ * A query lists the class logs that have every term, with the number of records that have each. A term is a word of
+ * the messages and exceptions, level:<level>, method:<method> or class:<part of the class name>. A term that ends
+ * with * matches the words it starts.
+ */
+(function ()
+{
+   var MAX_RESULTS = 500;
+   var MAX_PREFIX_SHARDS = 8;
+   var MAX_TOKEN_LENGTH = 64;
+
+   var NOT_TOKEN = (function ()
+   {
+      try
+      {
+         return new RegExp('[^\\p{L}\\p{Nd}_]+', 'u');
+      }
+      catch (e)
+      {
+         return /[^A-Za-z0-9_\u00C0-\uFFFF]+/;
+      }
+   })();
+
+   var dirIndex;
+   var index = null;
+   var shards = {};
+   var waiting = {};
+   var generation = 0;
+   var input, status, results;
+
+   window.jreportSearchIndex = function (newIndex)
+   {
+      index = newIndex;
+      status.textContent = index.records + ' records in ' + index.docs.length + ' class logs';
+      if (input.value)
+         search();
+   };
+
+   window.jreportSearchShard = function (shard, entries)
+   {
+      shards[shard] = entries;
+      var callbacks = waiting[shard] || [];
+      delete waiting[shard];
+      for (var i = 0; i < callbacks.length; ++i)
+         callbacks[i]();
+   };
+
+   function loadScript (src, onError)
+   {
+      var script = document.createElement('script');
+      script.src = src;
+      script.onload = function () { script.parentNode.removeChild(script); };
+      script.onerror = function () { script.parentNode.removeChild(script); if (onError) onError(); };
+      document.getElementsByTagName('head')[0].appendChild(script);
+   }
+
+   function loadShard (shard, callback)
+   {
+      if (shards[shard])
+      {
+         callback();
+         return;
+      }
+      if (waiting[shard])
+      {
+         waiting[shard].push(callback);
+         return;
+      }
+
+      waiting[shard] = [callback];
+      loadScript(dirIndex + '/shard-' + shard + '.js', function () { window.jreportSearchShard(shard, []); });
+   }
+
+   function parse (query)
+   {
+      var parsed = { terms: [], classes: [] };
+      var words = query.toLowerCase().split(/\s+/);
+      for (var i = 0; i < words.length; ++i)
+      {
+         var word = words[i];
+         var prefix = word.charAt(word.length - 1) === '*';
+         if (prefix)
+            word = word.substring(0, word.length - 1);
+         if (!word)
+            continue;
+
+         var field = /^(class|level|method):(.*)$/.exec(word);
+         if (field && field[1] === 'class')
+         {
+            if (field[2])
+               parsed.classes.push(field[2]);
+            continue;
+         }
+         if (field)
+         {
+            if (field[2])
+               parsed.terms.push({ token: word, prefix: prefix });
+            continue;
+         }
+
+         var tokens = word.split(NOT_TOKEN).filter(function (t) { return t; });
+         for (var t = 0; t < tokens.length; ++t)
+            parsed.terms.push({ token: tokens[t].substring(0, MAX_TOKEN_LENGTH), prefix: prefix && t === tokens.length - 1 });
+      }
+      return parsed;
+   }
+
+   // Last shard whose first token is at or before the token, -1 if none
+   function shardOf (token)
+   {
+      var low = 0, high = index.shards.length - 1;
+      if (high < 0 || token < index.shards[0])
+         return -1;
+      while (low < high)
+      {
+         var mid = (low + high + 1) >> 1;
+         if (index.shards[mid] <= token)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      return low;
+   }
+
+   function shardsOf (term)
+   {
+      var first = shardOf(term.token);
+      if (!term.prefix)
+         return (first < 0) ? [] : [first];
+
+      var list = [];
+      if (first >= 0)
+         list.push(first);
+      for (var i = first + 1; i < index.shards.length && index.shards[i].indexOf(term.token) === 0 && list.length < MAX_PREFIX_SHARDS; ++i)
+         list.push(i);
+      return list;
+   }
+
+   // First entry of the shard at or after the token
+   function lowerBound (entries, token)
+   {
+      var low = 0, high = entries.length / 2;
+      while (low < high)
+      {
+         var mid = (low + high) >> 1;
+         if (entries[2 * mid] < token)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      return low;
+   }
+
+   // Number of records by document that have the term
+   function postingsOf (term)
+   {
+      var counts = {};
+      for (var s = 0; s < term.shards.length; ++s)
+      {
+         var entries = shards[term.shards[s]];
+         for (var e = lowerBound(entries, term.token); e < entries.length / 2; ++e)
+         {
+            var token = entries[2 * e];
+            if (term.prefix ? token.indexOf(term.token) !== 0 : token !== term.token)
+               break;
+            var postings = entries[2 * e + 1];
+            for (var p = 0; p < postings.length; p += 2)
+               counts[postings[p]] = (counts[postings[p]] || 0) + postings[p + 1];
+         }
+      }
+      return counts;
+   }
+
+   function search ()
+   {
+      if (!index)
+         return false;
+
+      var parsed = parse(input.value);
+      var current = ++generation;
+      var pending = 1;
+      var done = function ()
+      {
+         if (--pending === 0 && current === generation)
+            show(parsed);
+      };
+      for (var i = 0; i < parsed.terms.length; ++i)
+      {
+         parsed.terms[i].shards = shardsOf(parsed.terms[i]);
+         for (var s = 0; s < parsed.terms[i].shards.length; ++s)
+         {
+            ++pending;
+            loadShard(parsed.terms[i].shards[s], done);
+         }
+      }
+      if (pending > 1)
+         status.textContent = 'Searching ...';
+      done();
+      return false;
+   }
+
+   function show (parsed)
+   {
+      results.innerHTML = '';
+      if (!parsed.terms.length && !parsed.classes.length)
+      {
+         status.textContent = index.records + ' records in ' + index.docs.length + ' class logs';
+         return;
+      }
+
+      var counts = [];
+      for (var i = 0; i < parsed.terms.length; ++i)
+         counts.push(postingsOf(parsed.terms[i]));
+
+      var matches = [];
+      for (var doc = 0; doc < index.docs.length; ++doc)
+      {
+         var name = index.docs[doc][0].toLowerCase();
+         var match = { doc: doc, counts: [], total: 0 };
+         for (var c = 0; c < parsed.classes.length && match; ++c)
+            match = (name.indexOf(parsed.classes[c]) >= 0) ? match : null;
+         for (var t = 0; t < counts.length && match; ++t)
+         {
+            var count = counts[t][doc];
+            match = count ? match : null;
+            if (match)
+            {
+               match.counts.push(count);
+               match.total += count;
+            }
+         }
+         if (match)
+            matches.push(match);
+      }
+      matches.sort(function (a, b) { return b.total - a.total || a.doc - b.doc; });
+
+      status.textContent = matches.length + ' class logs match' + (matches.length > MAX_RESULTS ? ', showing the first ' + MAX_RESULTS : '');
+      if (!matches.length)
+         return;
+
+      var table = create('table', 'tableLog searchResults', results);
+      var heading = create('tr', 'logRowHeading', table);
+      create('th', '', heading).textContent = 'Class Log';
+      create('th', '', heading).textContent = 'Records';
+      for (var h = 0; h < parsed.terms.length; ++h)
+         create('th', '', heading).textContent = parsed.terms[h].token + (parsed.terms[h].prefix ? '*' : '');
+
+      for (var m = 0; m < Math.min(matches.length, MAX_RESULTS); ++m)
+      {
+         var docEntry = index.docs[matches[m].doc];
+         var row = create('tr', '', table);
+         var link = create('a', '', create('td', 'noWrapColumn', row));
+         link.href = docEntry[0] + index.extension;
+         link.textContent = docEntry[0];
+         create('td', '', row).textContent = docEntry[1];
+         for (var k = 0; k < matches[m].counts.length; ++k)
+            create('td', '', row).textContent = matches[m].counts[k];
+      }
+   }
+
+   function create (tag, className, parent)
+   {
+      var element = document.createElement(tag);
+      element.className = className;
+      parent.appendChild(element);
+      return element;
+   }
+
+   function init ()
+   {
+      var page = document.getElementById('logSearch');
+      dirIndex = page.getAttribute('data-index');
+
+      var form = create('form', 'searchToolbar', page);
+      input = create('input', 'searchInput', form);
+      input.type = 'text';
+      input.placeholder = 'timeout level:severe method:testLogin* class:Login';
+      create('input', '', form).type = 'submit';
+      form.lastChild.value = 'Search';
+      status = create('span', 'searchStatus', form);
+      form.onsubmit = search;
+      create('div', 'searchHelp', page).textContent =
+         'Lists the class logs that have every term, with the number of records that have each. ' +
+         'A term is a word, level:<level>, method:<method> or class:<part of class name>; end a term with * to match the words it starts.';
+      results = create('div', '', page);
+
+      status.textContent = 'Loading the index ...';
+      loadScript(dirIndex + '/index.js', function ()
+      {
+         status.textContent = 'No search index. Run with -Djreport.log.search=true, the index is written when the run completes.';
+      });
+   }
+
+   if (document.readyState === 'loading')
+      document.addEventListener('DOMContentLoaded', init);
+   else
+      init();
+})();
@@ -0,0 +1,324 @@
+/*
+ * Log viewer for the class logs written by ChunkedLogHandler.
+ *
+ * The records are in chunk scripts, <log>.chunks/chunk-<n>.js, that call jreportChunk(n, rows), and the number of
+ * records is in <log>.chunks/index.js, that calls jreportIndex(index). Scripts are loaded rather than fetched so that
+ * the report can be opened from the file system.
+ *
+ * Only the rows in view are rendered, and only the chunks they are in are loaded. At most MAX_CHUNKS chunks are kept,
+ * so a log of millions of records opens at once and takes bounded memory. Click a row to see the complete message and
+ * stack trace.
+ *
+ * <log>.chunks/filter.js calls jreportFilter(type, value, runs) with the runs of records of each thread and method.
+ * Choosing one shows only its records, mapping each row to a record through the runs, so that only the chunks with
+ * its records are loaded.
+ */
+(function ()
+{
+   var ROW_HEIGHT = 22;
+   var OVERSCAN_ROWS = 20;
+   var MAX_CHUNKS = 16;
+   var MAX_HEIGHT = 10000000;
+   var REFRESH_MILLIS = 5000;
+
+   var COLUMN = ['viewerDate', 'viewerLevel', 'viewerClass', 'viewerMethod', 'viewerThread', 'viewerMessage'];
+   var HEADING = ['Date', 'Verbosity', 'Class', 'Method', 'ThreadId', 'Message'];
+
+   var dirChunks;
+   var index = { records: 0, chunkSize: 1, complete: false };
+   var cache = {};
+   var cacheOrder = [];
+   var loading = {};
+   var filters = {};
+   var filterKey = '';
+   var active = null;
+   var viewport, spacer, rows, detail, status, select;
+   var renderPending = false;
+
+   window.jreportIndex = function (newIndex)
+   {
+      index = newIndex;
+      resize();
+      loadFilters();
+      if (!index.complete)
+         setTimeout(loadIndex, REFRESH_MILLIS);
+   };
+
+   window.jreportFilter = function (type, value, runs)
+   {
+      var key = type + ':' + value;
+      var filter = filters[key] || (filters[key] = { type: type, value: value, runs: [], prefix: [], total: 0 });
+      for (var i = 0; i < runs.length; i += 2)
+      {
+         filter.prefix.push(filter.total);
+         filter.runs.push(runs[i], runs[i + 1]);
+         filter.total += runs[i + 1];
+      }
+   };
+
+   window.jreportChunk = function (chunk, chunkRows)
+   {
+      delete loading[chunk];
+      cache[chunk] = chunkRows;
+      touch(chunk);
+      requestRender();
+   };
+
+   function loadScript (src, onError, onLoad)
+   {
+      var script = document.createElement('script');
+      script.src = src;
+      script.onload = function () { script.parentNode.removeChild(script); if (onLoad) onLoad(); };
+      script.onerror = function () { script.parentNode.removeChild(script); if (onError) onError(); };
+      document.getElementsByTagName('head')[0].appendChild(script);
+   }
+
+   function loadIndex ()
+   {
+      loadScript(dirChunks + '/index.js?' + new Date().getTime(), function ()
+      {
+         status.textContent = 'The log could not be loaded';
+      });
+   }
+
+   function loadFilters ()
+   {
+      filters = {};
+      loadScript(dirChunks + '/filter.js?' + new Date().getTime(), showFilters, showFilters);
+   }
+
+   function showFilters ()
+   {
+      var keys = Object.keys(filters).sort(function (a, b)
+      {
+         var fa = filters[a], fb = filters[b];
+         if (fa.type !== fb.type)
+            return (fa.type < fb.type) ? 1 : -1;
+         return (fa.type === 'thread') ? fa.value - fb.value : (fa.value < fb.value ? -1 : (fa.value > fb.value ? 1 : 0));
+      });
+
+      select.innerHTML = '';
+      select.appendChild(new Option('All records', ''));
+      var group = {};
+      for (var i = 0; i < keys.length; ++i)
+      {
+         var filter = filters[keys[i]];
+         if (!group[filter.type])
+         {
+            group[filter.type] = document.createElement('optgroup');
+            group[filter.type].label = (filter.type === 'thread') ? 'Threads' : 'Methods';
+            select.appendChild(group[filter.type]);
+         }
+         var label = ((filter.type === 'thread') ? 'Thread-' + filter.value : filter.value) + ' (' + filter.total + ')';
+         group[filter.type].appendChild(new Option(label, keys[i]));
+      }
+      select.value = filters[filterKey] ? filterKey : '';
+      active = filters[filterKey] || null;
+      resize();
+   }
+
+   function choose ()
+   {
+      filterKey = select.value;
+      active = filters[filterKey] || null;
+      viewport.scrollTop = 0;
+      detail.style.display = 'none';
+      resize();
+   }
+
+   function total ()
+   {
+      return active ? active.total : index.records;
+   }
+
+   function recordAt (row)
+   {
+      if (!active)
+         return row;
+
+      // Last run that starts at or before the row
+      var low = 0, high = active.prefix.length - 1;
+      while (low < high)
+      {
+         var mid = (low + high + 1) >> 1;
+         if (active.prefix[mid] <= row)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      return active.runs[2 * low] + (row - active.prefix[low]);
+   }
+
+   function resize ()
+   {
+      spacer.style.height = Math.min(total() * ROW_HEIGHT, MAX_HEIGHT) + 'px';
+      var text = active ? total() + ' of ' + index.records + ' records' : index.records + ' records';
+      status.textContent = text + (index.complete ? '' : ' so far, the log is being written');
+      requestRender();
+   }
+
+   function loadChunk (chunk)
+   {
+      if (loading[chunk])
+         return;
+
+      loading[chunk] = true;
+      loadScript(dirChunks + '/chunk-' + chunk + '.js', function () { loading[chunk] = 'failed'; });
+   }
+
+   function touch (chunk)
+   {
+      var i = cacheOrder.indexOf(chunk);
+      if (i >= 0)
+         cacheOrder.splice(i, 1);
+      cacheOrder.push(chunk);
+   }
+
+   function evict (needed)
+   {
+      for (var i = 0; i < cacheOrder.length && cacheOrder.length > MAX_CHUNKS; )
+      {
+         var chunk = cacheOrder[i];
+         if (needed[chunk])
+         {
+            ++i;
+            continue;
+         }
+         cacheOrder.splice(i, 1);
+         delete cache[chunk];
+      }
+   }
+
+   function requestRender ()
+   {
+      if (renderPending)
+         return;
+
+      renderPending = true;
+      (window.requestAnimationFrame || setTimeout)(render);
+   }
+
+   function render ()
+   {
+      renderPending = false;
+
+      // Beyond MAX_HEIGHT the scroll position is scaled to the rows, browsers cap the height of an element
+      var height = viewport.clientHeight;
+      var scrollRange = Math.max(1, parseInt(spacer.style.height, 10) - height);
+      var rowRange = Math.max(0, total() * ROW_HEIGHT - height);
+      var offset = Math.min(viewport.scrollTop, scrollRange) / scrollRange * rowRange;
+      var first = Math.max(0, Math.floor(offset / ROW_HEIGHT) - OVERSCAN_ROWS);
+      var last = Math.min(total(), Math.ceil((offset + height) / ROW_HEIGHT) + OVERSCAN_ROWS);
+
+      var needed = {};
+      var fragment = document.createDocumentFragment();
+      for (var i = first; i < last; ++i)
+      {
+         var record = recordAt(i);
+         var chunk = Math.floor(record / index.chunkSize);
+         needed[chunk] = true;
+         var chunkRows = cache[chunk];
+         if (!chunkRows)
+            loadChunk(chunk);
+         fragment.appendChild(createRow(record, chunkRows ? chunkRows[record % index.chunkSize] : null, loading[chunk] === 'failed'));
+      }
+      for (var key in needed)
+         if (cache[key])
+            touch(+key);
+      evict(needed);
+
+      rows.innerHTML = '';
+      rows.style.top = (viewport.scrollTop - (offset - first * ROW_HEIGHT)) + 'px';
+      rows.appendChild(fragment);
+   }
+
+   function createRow (i, record, failed)
+   {
+      var row = document.createElement('div');
+      row.className = 'viewerRow';
+      if (!record)
+      {
+         row.className += ' viewerPending';
+         row.textContent = failed ? 'Record ' + (i + 1) + ' could not be loaded' : 'Loading record ' + (i + 1);
+         return row;
+      }
+
+      if (record[6])
+         row.className += ' ' + record[6];
+      var value = [record[0], record[1], record[2], record[3], record[4], firstLine(record[5])];
+      for (var c = 0; c < COLUMN.length; ++c)
+      {
+         var cell = document.createElement('span');
+         cell.className = COLUMN[c];
+         cell.textContent = (value[c] == null) ? '' : value[c];
+         row.appendChild(cell);
+      }
+      if (record[1] === 'SEVERE')
+         row.childNodes[1].className += ' logColumnSevere';
+      else if (record[1] === 'WARNING')
+         row.childNodes[1].className += ' logColumnWarning';
+      row.onclick = function () { showDetail(i, record); };
+      return row;
+   }
+
+   function firstLine (message)
+   {
+      if (message == null)
+         return '';
+      var text = message.replace(/<br\s*\/?>/gi, '\n').replace(/<[^>]*>/g, '');
+      var end = text.indexOf('\n');
+      return (end < 0) ? text : text.substring(0, end) + ' ...';
+   }
+
+   function showDetail (i, record)
+   {
+      // Messages are HTML, as in the HTML logs
+      var builder = ['<div class="viewerDetailHeading">Record ', i + 1, ', ', record[1], ' at ', record[0], '</div>'];
+      builder.push('<div class="viewerDetailMessage">', (record[5] == null) ? '' : record[5].replace(/\r?\n/g, '<br>'), '</div>');
+      detail.innerHTML = builder.join('');
+      if (record[7])
+      {
+         var trace = document.createElement('pre');
+         trace.className = 'viewerDetailTrace';
+         trace.textContent = record[7];
+         detail.appendChild(trace);
+      }
+      detail.style.display = 'block';
+   }
+
+   function create (tag, className, parent)
+   {
+      var element = document.createElement(tag);
+      element.className = className;
+      parent.appendChild(element);
+      return element;
+   }
+
+   function init ()
+   {
+      var viewer = document.getElementById('logViewer');
+      dirChunks = viewer.getAttribute('data-chunks');
+
+      var toolbar = create('div', 'viewerToolbar', viewer);
+      select = create('select', 'viewerFilter', toolbar);
+      select.onchange = choose;
+      status = create('span', 'viewerStatus', toolbar);
+      var heading = create('div', 'viewerRow logRowHeading', viewer);
+      for (var c = 0; c < COLUMN.length; ++c)
+         create('span', COLUMN[c], heading).textContent = HEADING[c];
+
+      viewport = create('div', 'viewerViewport', viewer);
+      spacer = create('div', 'viewerSpacer', viewport);
+      rows = create('div', 'viewerRows', spacer);
+      detail = create('div', 'viewerDetail', viewer);
+
+      viewport.onscroll = requestRender;
+      window.onresize = requestRender;
+      loadIndex();
+   }
+
+   if (document.readyState === 'loading')
+      document.addEventListener('DOMContentLoaded', init);
+   else
+      init();
+})();
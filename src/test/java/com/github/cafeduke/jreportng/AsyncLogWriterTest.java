@@ -0,0 +1,138 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.cafeduke.jreportng.AsyncLogHandler.Backpressure;
+
+@SuppressWarnings("javadoc")
+public class AsyncLogWriterTest extends AbstractTestCase
+{
+    @Test
+    public void testBackpressure() throws Exception
+    {
+        AsyncLogWriter writer = new AsyncLogWriter(4, 2);
+        RecordingHandler target = new RecordingHandler();
+
+        // Hold the writer thread, so that the queue fills up
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        writer.execute(() ->
+        {
+            started.countDown();
+            await(blocked);
+        });
+        started.await();
+
+        for (int i = 0; i < 3; ++i)
+            writer.submit(target, newRecord("Record " + i), Backpressure.DROP);
+        writer.execute(() -> target.add("Release"));
+        writer.submit(target, newRecord("Record 3"), Backpressure.DROP);
+        writer.submit(target, newRecord("Record 4"), Backpressure.DROP);
+        writer.submit(target, newRecord("Record 5"), Backpressure.CALLER_RUNS);
+        Assert.assertEquals(target.getWritten(), Arrays.asList("Record 5"));
+        Assert.assertEquals(target.getThreads(), Arrays.asList(Thread.currentThread().getName()));
+
+        blocked.countDown();
+        Assert.assertEquals(writer.drain(), 2);
+        Assert.assertEquals(target.getWritten(), Arrays.asList("Record 5", "Record 0", "Record 1", "Record 2", "Release"));
+        Assert.assertTrue(target.flushed > 0);
+
+        // Records are written in order once the queue has space
+        for (int i = 6; i < 20; ++i)
+            writer.submit(target, newRecord("Record " + i), Backpressure.BLOCK);
+        Assert.assertEquals(writer.drain(), 0);
+        List<String> listWritten = target.getWritten();
+        Assert.assertEquals(listWritten.size(), 19);
+        for (int i = 6; i < 20; ++i)
+            Assert.assertEquals(listWritten.get(i - 1), "Record " + i);
+    }
+
+    @Test
+    public void testHandler()
+    {
+        RecordingHandler target = new RecordingHandler();
+        AsyncLogHandler handler = new AsyncLogHandler(target, Backpressure.BLOCK);
+        for (int i = 0; i < 100; ++i)
+            handler.publish(newRecord("Record " + i));
+        handler.flush();
+
+        List<String> listWritten = target.getWritten();
+        Assert.assertEquals(listWritten.size(), 100);
+        for (int i = 0; i < 100; ++i)
+            Assert.assertEquals(listWritten.get(i), "Record " + i);
+        Assert.assertFalse(target.getThreads().contains(Thread.currentThread().getName()));
+    }
+
+    private static LogRecord newRecord(String message)
+    {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setSourceClassName(AsyncLogWriterTest.class.getName());
+        record.setSourceMethodName("publish");
+        return record;
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingHandler extends Handler
+    {
+        private final List<String> listWritten = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<String> listThread = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile int flushed = 0;
+
+        void add(String message)
+        {
+            listWritten.add(message);
+            listThread.add(Thread.currentThread().getName());
+        }
+
+        List<String> getWritten()
+        {
+            return new ArrayList<>(listWritten);
+        }
+
+        List<String> getThreads()
+        {
+            return new ArrayList<>(listThread);
+        }
+
+        @Override
+        public void publish(LogRecord record)
+        {
+            add(record.getMessage());
+        }
+
+        @Override
+        public void flush()
+        {
+            ++flushed;
+        }
+
+        @Override
+        public void close()
+        {
+
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class BoundedLogHandlerTest extends AbstractTestCase
+{
+    @Test
+    public void testTruncate() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-bounded").toFile();
+        BoundedLogHandler handler = new BoundedLogHandler((part) -> open(dir, part), 0, 3, BoundedLogHandler.Mode.TRUNCATE, 2);
+        publish(handler, 10);
+
+        String text = read(new File(dir, "part1.html"));
+        for (int i : new int[] { 0, 1, 2, 8, 9 })
+            Assert.assertTrue(text.contains(">Record " + i + "<"), "Record " + i + " is kept");
+        for (int i = 3; i < 8; ++i)
+            Assert.assertFalse(text.contains(">Record " + i + "<"), "Record " + i + " is elided");
+        Assert.assertTrue(text.indexOf("Record 2") < text.indexOf("\u2026 5 records elided \u2026"));
+        Assert.assertTrue(text.indexOf("\u2026 5 records elided \u2026") < text.indexOf("Record 8"));
+        Assert.assertFalse(new File(dir, "part2.html").exists());
+    }
+
+    @Test
+    public void testRoll() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-bounded").toFile();
+        BoundedLogHandler handler = new BoundedLogHandler((part) -> open(dir, part), 0, 4, BoundedLogHandler.Mode.ROLL, 0);
+        publish(handler, 10);
+
+        Assert.assertEquals(handler.getPart(), 3);
+        Assert.assertTrue(read(new File(dir, "part1.html")).contains(">Record 3<"));
+        Assert.assertTrue(read(new File(dir, "part2.html")).contains(">Record 4<"));
+        Assert.assertTrue(read(new File(dir, "part3.html")).endsWith("</html>" + ReportProperties.LINE_SEP));
+        Assert.assertTrue(read(new File(dir, "part3.html")).contains(">Record 9<"));
+    }
+
+    @Test
+    public void testByteLimit() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-bounded").toFile();
+        BoundedLogHandler handler = new BoundedLogHandler((part) -> open(dir, part), 2000, 0, BoundedLogHandler.Mode.ROLL, 0);
+        publish(handler, 100);
+
+        logger.info("100 records rolled over to " + handler.getPart() + " parts");
+        Assert.assertTrue(handler.getPart() > 2);
+        for (int part = 1; part < handler.getPart(); ++part)
+            Assert.assertTrue(new File(dir, "part" + part + ".html").length() < 4000);
+    }
+
+    @Test
+    public void testCapAcrossRelease() throws Exception
+    {
+        // The parts are released and opened again, as a class log is when its class completes
+        File dir = Files.createTempDirectory("jreportng-bounded").toFile();
+        BoundedLogHandler handler = new BoundedLogHandler((part) -> new ReopenableHandler((reopen) -> open(dir, part, reopen)), 0, 3, BoundedLogHandler.Mode.TRUNCATE, 2);
+        for (int i = 0; i < 15; ++i)
+        {
+            handler.publish(newRecord("Record " + i));
+            if (i % 5 == 4)
+                handler.release();
+        }
+        handler.complete();
+
+        String text = read(new File(dir, "part1.html"));
+        for (int i : new int[] { 0, 1, 2, 13, 14 })
+            Assert.assertTrue(text.contains(">Record " + i + "<"), "Record " + i + " is kept");
+        for (int i = 3; i < 13; ++i)
+            Assert.assertFalse(text.contains(">Record " + i + "<"), "Record " + i + " is elided");
+        Assert.assertEquals(text.split("records elided", -1).length, 2, text);
+        Assert.assertTrue(text.contains("\u2026 10 records elided \u2026"));
+        Assert.assertEquals(text.split("</html>", -1).length, 2);
+
+        // Records that follow the completion are still capped
+        for (int i = 15; i < 18; ++i)
+            handler.publish(newRecord("Record " + i));
+        handler.close();
+        text = read(new File(dir, "part1.html"));
+        Assert.assertTrue(text.contains("\u2026 1 records elided \u2026"));
+        Assert.assertFalse(text.contains(">Record 15<"));
+        Assert.assertTrue(text.contains(">Record 17<"));
+
+        File dirRoll = Files.createTempDirectory("jreportng-bounded").toFile();
+        BoundedLogHandler roll = new BoundedLogHandler((part) -> new ReopenableHandler((reopen) -> open(dirRoll, part, reopen)), 0, 4, BoundedLogHandler.Mode.ROLL, 0);
+        for (int i = 0; i < 6; ++i)
+        {
+            roll.publish(newRecord("Record " + i));
+            roll.release();
+        }
+        roll.close();
+        Assert.assertEquals(roll.getPart(), 2);
+        Assert.assertTrue(read(new File(dirRoll, "part2.html")).contains(">Record 5<"));
+        Assert.assertFalse(read(new File(dirRoll, "part1.html")).contains(">Record 4<"));
+    }
+
+    private static Handler open(File dir, int part) throws java.io.IOException
+    {
+        return open(dir, part, false);
+    }
+
+    private static Handler open(File dir, int part, boolean append) throws java.io.IOException
+    {
+        return new LogFileHandler(new File(dir, "part" + part + ".html"), new HtmlFormatter("Part " + part), append, true);
+    }
+
+    private static LogRecord newRecord(String message)
+    {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setSourceClassName(BoundedLogHandlerTest.class.getName());
+        record.setSourceMethodName("publish");
+        return record;
+    }
+
+    private static void publish(Handler handler, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            handler.publish(newRecord("Record " + i));
+        }
+        handler.close();
+    }
+
+    private static String read(File file) throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ChunkedLogHandlerTest extends AbstractTestCase
+{
+    @Test
+    public void testChunks() throws Exception
+    {
+        File file = new File(Files.createTempDirectory("jreportng-viewer").toFile(), "Log.html");
+        ChunkedLogHandler handler = new ChunkedLogHandler(file, "Log", false, 10, true);
+        for (int i = 0; i < 25; ++i)
+            handler.publish(newRecord(Level.INFO, "Record " + i));
+        File dir = ChunkedLogHandler.getChunkDir(file);
+        Assert.assertTrue(read(new File(dir, "index.js")).contains("\"records\":20,"));
+        handler.close();
+
+        Assert.assertTrue(read(file).contains("data-chunks='Log.chunks'"));
+        Assert.assertEquals(read(new File(dir, "index.js")), "jreportIndex({\"records\":25,\"chunkSize\":10,\"complete\":true});\n");
+        String chunk = read(new File(dir, "chunk-2.js"));
+        Assert.assertTrue(chunk.startsWith("jreportChunk(2,[\n[\""));
+        Assert.assertTrue(chunk.endsWith("]);\n"));
+        Assert.assertEquals(count(chunk, "\"Record 2"), 5);
+        Assert.assertFalse(new File(dir, "chunk-3.js").exists());
+    }
+
+    @Test
+    public void testAppend() throws Exception
+    {
+        File file = new File(Files.createTempDirectory("jreportng-viewer").toFile(), "Log.html");
+        ChunkedLogHandler handler = new ChunkedLogHandler(file, "Log", false, 4, false);
+        for (int i = 0; i < 6; ++i)
+            handler.publish(newRecord(Level.INFO, "First " + i));
+        handler.close();
+
+        handler = new ChunkedLogHandler(file, "Log", true, 4, false);
+        handler.publish(newRecord(Level.SEVERE, "Second \"quoted\"\nline"));
+        handler.close();
+
+        File dir = ChunkedLogHandler.getChunkDir(file);
+        Assert.assertTrue(read(new File(dir, "index.js")).contains("\"records\":7,"));
+        String chunk = read(new File(dir, "chunk-1.js"));
+        Assert.assertEquals(count(chunk, "]);"), 1);
+        Assert.assertEquals(count(chunk, "\"First "), 2);
+        Assert.assertTrue(chunk.contains(",[\"") && chunk.contains("\"SEVERE\""));
+        Assert.assertTrue(chunk.contains("\"Second \\\"quoted\\\"\\nline\""));
+        Assert.assertTrue(chunk.contains("\"" + HtmlFormatter.STYLE_ROW_FAILURE + "\""));
+
+        // Replacing the log removes the chunks written before
+        handler = new ChunkedLogHandler(file, "Log", false, 4, false);
+        handler.publish(newRecord(Level.INFO, "Third"));
+        handler.close();
+        Assert.assertTrue(read(new File(dir, "index.js")).contains("\"records\":1,"));
+        Assert.assertFalse(new File(dir, "chunk-1.js").exists());
+    }
+
+    @Test
+    public void testFilter() throws Exception
+    {
+        File file = new File(Files.createTempDirectory("jreportng-viewer").toFile(), "Log.html");
+        ChunkedLogHandler handler = new ChunkedLogHandler(file, "Log", false, 4, false);
+        for (int i = 0; i < 6; ++i)
+        {
+            LogRecord record = newRecord(Level.INFO, "Record " + i);
+            record.setThreadID((i < 2 || i == 5) ? 1 : 2);
+            record.setSourceMethodName((i % 2 == 0) ? "even" : "odd");
+            handler.publish(record);
+        }
+        handler.close();
+
+        String filter = read(new File(ChunkedLogHandler.getChunkDir(file), "filter.js"));
+        String className = ReportProperties.getDisplayPackageName(ChunkedLogHandlerTest.class.getName());
+        Assert.assertEquals(filter,
+            "jreportFilter(\"thread\",\"1\",[0,2]);\n" +
+            "jreportFilter(\"thread\",\"2\",[2,2]);\n" +
+            "jreportFilter(\"method\",\"" + className + ".even\",[0,1,2,1]);\n" +
+            "jreportFilter(\"method\",\"" + className + ".odd\",[1,1,3,1]);\n" +
+            "jreportFilter(\"thread\",\"2\",[4,1]);\n" +
+            "jreportFilter(\"thread\",\"1\",[5,1]);\n" +
+            "jreportFilter(\"method\",\"" + className + ".even\",[4,1]);\n" +
+            "jreportFilter(\"method\",\"" + className + ".odd\",[5,1]);\n");
+    }
+
+    private static String read(File file) throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static int count(String text, String part)
+    {
+        int count = 0;
+        for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1))
+            ++count;
+        return count;
+    }
+
+    private static LogRecord newRecord(Level level, String message)
+    {
+        LogRecord record = new LogRecord(level, message);
+        record.setSourceClassName(ChunkedLogHandlerTest.class.getName());
+        record.setSourceMethodName("newRecord");
+        return record;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.cafeduke.jreportng;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class DurationHistogramTest extends AbstractTestCase
+{
+    @Test
+    public void testPercentiles()
+    {
+        DurationHistogram histogram = new DurationHistogram();
+        for (long millis = 1; millis <= 10000; ++millis)
+            histogram.record(millis);
+
+        Assert.assertEquals(histogram.getCount(), 10000);
+        Assert.assertEquals(histogram.getTotal(), 10000L * 10001 / 2);
+        Assert.assertEquals(histogram.getMax(), 10000);
+        assertClose(histogram.getPercentile(50), 5000);
+        assertClose(histogram.getPercentile(95), 9500);
+        assertClose(histogram.getPercentile(99), 9900);
+        logger.info("p50=" + histogram.getPercentile(50) + " p95=" + histogram.getPercentile(95) + " p99=" + histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testBuckets()
+    {
+        Assert.assertEquals(new DurationHistogram().getPercentile(50), 0);
+        for (long millis : new long[] { 0, 1, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE })
+        {
+            long middle = DurationHistogram.getBucketMiddle(DurationHistogram.getBucket(millis));
+            Assert.assertTrue(Math.abs(middle - millis) <= millis / 8, millis + " in bucket with middle " + middle);
+        }
+    }
+
+    @Test
+    public void testMerge()
+    {
+        DurationHistogram histogram = new DurationHistogram();
+        DurationHistogram odd = new DurationHistogram();
+        DurationHistogram even = new DurationHistogram();
+        for (long millis = 1; millis <= 1000; ++millis)
+        {
+            histogram.record(millis);
+            ((millis % 2 == 0) ? even : odd).record(millis);
+        }
+
+        DurationHistogram merged = new DurationHistogram();
+        merged.merge(odd.getBuckets(), odd.getTotal(), odd.getMax());
+        merged.merge(even.getBuckets(), even.getTotal(), even.getMax());
+        Assert.assertEquals(merged.getBuckets(), histogram.getBuckets());
+        Assert.assertEquals(merged.getCount(), histogram.getCount());
+        Assert.assertEquals(merged.getTotal(), histogram.getTotal());
+        Assert.assertEquals(merged.getMax(), histogram.getMax());
+        Assert.assertEquals(merged.getPercentile(95), histogram.getPercentile(95));
+    }
+
+    private static void assertClose(long actual, long expected)
+    {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected / 8, actual + " is not close to " + expected);
+    }
+}
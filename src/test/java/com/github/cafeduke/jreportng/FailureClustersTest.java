@@ -0,0 +1,50 @@
+package com.github.cafeduke.jreportng;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class FailureClustersTest extends AbstractTestCase
+{
+    @Test
+    public void testKey()
+    {
+        AssertionError error[] = new AssertionError[3];
+        for (int i = 0; i < error.length; ++i)
+            error[i] = (i < 2) ? assertValue(i) : assertOther();
+
+        String key = FailureClusters.getKey(error[0]);
+        Assert.assertTrue(key.startsWith(AssertionError.class.getName() + "\n" + FailureClustersTest.class.getName() + ".assertValue(FailureClustersTest.java:"), key);
+        Assert.assertFalse(key.contains("org.testng.") || key.contains("reflect."), key);
+
+        // Messages are left out, the site of the failure is not
+        Assert.assertEquals(FailureClusters.getKey(error[1]), key);
+        Assert.assertNotEquals(FailureClusters.getKey(error[2]), key);
+    }
+
+    @Test
+    public void testRootCause()
+    {
+        AssertionError root = assertValue(1);
+        Throwable wrapped = new IllegalStateException("Setup failed", new RuntimeException(root));
+        Assert.assertSame(FailureClusters.getRootCause(wrapped), root);
+        Assert.assertSame(FailureClusters.getRootCause(root), root);
+        Assert.assertNull(FailureClusters.getRootCause(null));
+
+        // A cycle of causes ends
+        Exception first = new Exception("first");
+        Exception second = new Exception("second", first);
+        first.initCause(second);
+        Assert.assertNotNull(FailureClusters.getRootCause(first));
+    }
+
+    private static AssertionError assertValue(int value)
+    {
+        return new AssertionError("Unexpected value " + value);
+    }
+
+    private static AssertionError assertOther()
+    {
+        return new AssertionError("Unexpected value 1");
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.LINE_SEP;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class HtmlFormatterTest extends AbstractTestCase
+{
+    @Test
+    public void testMessageRow()
+    {
+        LogRecord record = new LogRecord(Level.WARNING, "first" + LINE_SEP + "second" + LINE_SEP);
+        record.setSourceClassName(HtmlFormatterTest.class.getName());
+        record.setSourceMethodName("testMessageRow");
+
+        String row = new HtmlFormatter("HtmlFormatterTest").format(record);
+        logger.info("Formatted row has " + row.length() + " characters");
+
+        Assert.assertTrue(row.contains("<td class='logColumnWarning'>WARNING</td>"));
+        Assert.assertTrue(row.contains("<td>testMessageRow</td>"));
+        Assert.assertTrue(row.contains(" class='" + HtmlFormatter.STYLE_ROW_WARNING + "'><td colspan='5'>first<br>second<br></td></tr>"));
+    }
+
+    @Test
+    public void testRecordTime()
+    {
+        HtmlFormatter formatter = new HtmlFormatter("HtmlFormatterTest");
+        LogRecord record = new LogRecord(Level.INFO, "time");
+        record.setMillis(0);
+
+        Assert.assertTrue(formatter.format(record).contains("<td class='noWrapColumn'>" + formatter.getDateTimeString(0) + "</td>"));
+    }
+
+    @Test
+    public void testStyleParameter()
+    {
+        LogRecord record = new LogRecord(Level.INFO, "styled");
+        record.setParameters(new String[] { HtmlFormatter.STYLE_ROW_SUCCESS });
+
+        StringBuilder builder = new StringBuilder();
+        new HtmlFormatter("HtmlFormatterTest").format(record, builder);
+        Assert.assertTrue(builder.indexOf(" class='" + HtmlFormatter.STYLE_ROW_SUCCESS + "'><td colspan='5'>styled</td></tr>") > 0);
+    }
+
+    @Test
+    public void testSharedTrace() throws Exception
+    {
+        TraceStore store = new TraceStore(new File(Files.createTempDirectory("jreportng-trace").toFile(), TraceStore.DIR_NAME));
+        HtmlFormatter formatter = new HtmlFormatter("HtmlFormatterTest", store);
+
+        String row[] = new String[3];
+        for (int i = 0; i < row.length; ++i)
+            row[i] = formatter.format(newFailure(new IllegalStateException("Failure " + i)));
+        String other = formatter.format(newFailure(new IllegalArgumentException("Other")));
+
+        Assert.assertTrue(row[0].contains("testSharedTrace("));
+        Assert.assertTrue(other.contains("testSharedTrace("));
+        for (int i = 1; i < row.length; ++i)
+        {
+            Assert.assertFalse(row[i].contains("testSharedTrace("));
+            Assert.assertTrue(row[i].contains("java.lang.IllegalStateException: Failure " + i));
+            Assert.assertTrue(row[i].contains("</a>, occurrence " + (i + 1) + "</td>"));
+        }
+        Assert.assertEquals(store.getTraceCount(), 2);
+
+        Assert.assertTrue(row[1].contains("href='" + TraceStore.DIR_NAME + "/trace-"));
+        File dir = store.getDir();
+        Assert.assertEquals(dir.list((d, name) -> name.startsWith("trace-")).length, 2);
+        store.writeIndex();
+        String index = new String(Files.readAllBytes(new File(dir, "index.html").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(index.indexOf("<tr><td>3</td>") < index.indexOf("<tr><td>1</td>"));
+    }
+
+    @Test
+    public void testSharedTraceEscaped() throws Exception
+    {
+        TraceStore store = new TraceStore(new File(Files.createTempDirectory("jreportng-trace").toFile(), TraceStore.DIR_NAME));
+        HtmlFormatter formatter = new HtmlFormatter("HtmlFormatterTest", store);
+
+        String row = null;
+        for (int i = 0; i < 2; ++i)
+            row = formatter.format(newFailure(new IllegalStateException("Expected <b> & 'c'")));
+        Assert.assertTrue(row.contains("<tr><td>java.lang.IllegalStateException: Expected &lt;b&gt; &amp; &#39;c&#39;</td></tr>"), row);
+
+        store.writeIndex();
+        String index = new String(Files.readAllBytes(new File(store.getDir(), "index.html").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(index.contains("'>java.lang.IllegalStateException: Expected &lt;b&gt; &amp; &#39;c&#39;</a>"), index);
+        Assert.assertFalse(index.contains("<b>"));
+    }
+
+    private static LogRecord newFailure(Throwable thrown)
+    {
+        LogRecord record = new LogRecord(Level.SEVERE, "Failed");
+        record.setSourceClassName(HtmlFormatterTest.class.getName());
+        record.setSourceMethodName("testSharedTrace");
+        record.setThrown(thrown);
+        return record;
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JournalTest extends AbstractTestCase
+{
+    @Test
+    public void testRenderMatchesHtmlLog() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-journal").toFile();
+        File fileJournal = new File(dir, "JournalTest" + JournalHandler.EXTENSION);
+        File fileExpected = new File(dir, "expected" + ReportProperties.LOG_FILE_EXTENSION);
+
+        List<LogRecord> listRecord = getRecords();
+        publish(new JournalHandler(fileJournal, "JournalTest", false), listRecord);
+        if (ReportProperties.LOG_VIEWER)
+        {
+            publish(new ChunkedLogHandler(fileExpected, "JournalTest", false, ReportProperties.LOG_VIEWER_CHUNK_RECORDS, false), listRecord);
+            Assert.assertTrue(JournalRenderer.render(fileJournal));
+            File dirExpected = ChunkedLogHandler.getChunkDir(fileExpected);
+            File dirActual = ChunkedLogHandler.getChunkDir(new File(dir, "JournalTest.html"));
+            for (String currName : dirExpected.list())
+                Assert.assertEquals(Files.readAllBytes(new File(dirActual, currName).toPath()), Files.readAllBytes(new File(dirExpected, currName).toPath()), currName);
+            return;
+        }
+        publish(new LogFileHandler(fileExpected, new HtmlFormatter("JournalTest"), false, false, ReportProperties.LOG_GZIP), listRecord);
+
+        Assert.assertTrue(JournalRenderer.render(fileJournal));
+        String expected = new String(Files.readAllBytes(fileExpected.toPath()), StandardCharsets.UTF_8);
+        String actual = new String(Files.readAllBytes(new File(dir, "JournalTest" + ReportProperties.LOG_FILE_EXTENSION).toPath()), StandardCharsets.UTF_8);
+        logger.info("Rendered " + actual.length() + " characters from a journal of " + fileJournal.length() + " bytes");
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testSegments() throws Exception
+    {
+        File fileJournal = File.createTempFile("jreportng", JournalHandler.EXTENSION);
+        fileJournal.delete();
+
+        publish(new JournalHandler(fileJournal, "First", true), getRecords());
+        publish(new JournalHandler(fileJournal, "Second", true), getRecords());
+
+        int count = 0;
+        try (JournalReader reader = new JournalReader(fileJournal))
+        {
+            Assert.assertEquals(reader.getTitle(), "First");
+            LogRecord record;
+            while ((record = reader.next()) != null)
+            {
+                Assert.assertEquals(record.getSourceClassName(), JournalTest.class.getName());
+                ++count;
+            }
+        }
+        Assert.assertEquals(count, 2 * getRecords().size());
+    }
+
+    private static void publish(Handler handler, List<LogRecord> listRecord)
+    {
+        listRecord.forEach(handler::publish);
+        handler.close();
+    }
+
+    private static List<LogRecord> getRecords()
+    {
+        List<LogRecord> listRecord = new ArrayList<>();
+        listRecord.add(newRecord(Level.INFO, "Plain message"));
+        listRecord.add(newRecord(Level.FINE, null));
+
+        LogRecord record = newRecord(Level.INFO, "Styled message");
+        record.setParameters(new String[] { HtmlFormatter.STYLE_ROW_SUCCESS });
+        listRecord.add(record);
+
+        record = newRecord(Level.SEVERE, "Failed \u2013 with cause");
+        record.setThrown(new IllegalStateException("outer", new IllegalArgumentException("inner")));
+        listRecord.add(record);
+
+        listRecord.add(newRecord(Level.parse("850"), "Custom level"));
+        return listRecord;
+    }
+
+    private static LogRecord newRecord(Level level, String message)
+    {
+        LogRecord record = new LogRecord(level, message);
+        record.setMillis(1000000000000L);
+        record.setSourceClassName(JournalTest.class.getName());
+        record.setSourceMethodName("getRecords");
+        record.setThreadID(7);
+        return record;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LogFileHandlerTest extends AbstractTestCase
+{
+    @Test
+    public void testCompressedAppend() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-gzip").toFile();
+        File fileCompressed = new File(dir, "appended.html.gz");
+        File fileExpected = new File(dir, "expected.html");
+        LogRecord record[] = new LogRecord[6];
+        for (int i = 0; i < record.length; ++i)
+            record[i] = newRecord("Record " + i);
+
+        // Each handler drops the tail member of the closed file and continues the document in a member of its own
+        for (int i = 0; i < record.length; i += 2)
+        {
+            LogFileHandler handler = new LogFileHandler(fileCompressed, new HtmlFormatter("Gzip"), i > 0, false, true);
+            handler.publish(record[i]);
+            handler.publish(record[i + 1]);
+            handler.close();
+        }
+        LogFileHandler handler = new LogFileHandler(fileExpected, new HtmlFormatter("Gzip"), false, false);
+        for (LogRecord currRecord : record)
+            handler.publish(currRecord);
+        handler.close();
+
+        String text = gunzip(fileCompressed);
+        logger.info("Appended log has " + fileCompressed.length() + " bytes compressed, " + text.length() + " characters");
+        Assert.assertEquals(text, new String(Files.readAllBytes(fileExpected.toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals(text.split("</html>", -1).length, 2);
+    }
+
+    private static LogRecord newRecord(String message)
+    {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setSourceClassName(LogFileHandlerTest.class.getName());
+        record.setSourceMethodName("testCompressedAppend");
+        return record;
+    }
+
+    private static String gunzip(File file) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file)))
+        {
+            byte buffer[] = new byte[8192];
+            for (int length; (length = in.read(buffer)) > 0;)
+                out.write(buffer, 0, length);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LogHandlerPoolTest extends AbstractTestCase
+{
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-pool").toFile();
+        LogHandlerPool pool = new LogHandlerPool(2);
+        ReopenableHandler handler[] = new ReopenableHandler[5];
+        for (int i = 0; i < handler.length; ++i)
+            handler[i] = open(new File(dir, "log" + i + ".html"), pool);
+        Assert.assertEquals(pool.getOpenCount(), 2);
+        Assert.assertTrue(handler[3].isOpen());
+        Assert.assertTrue(handler[4].isOpen());
+
+        // Use the older open handler, so that the newer one is evicted
+        handler[3].publish(newRecord("Touch"));
+        handler[0].publish(newRecord("Reopen"));
+        Assert.assertTrue(handler[0].isOpen());
+        Assert.assertTrue(handler[3].isOpen());
+        Assert.assertFalse(handler[4].isOpen());
+        Assert.assertEquals(pool.getOpenCount(), 2);
+        Assert.assertEquals(pool.getEvictionCount(), 4);
+
+        for (ReopenableHandler currHandler : handler)
+            currHandler.close();
+        Assert.assertEquals(pool.getOpenCount(), 0);
+    }
+
+    @Test
+    public void testManyLogs() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-pool").toFile();
+        LogHandlerPool pool = new LogHandlerPool(4);
+        ReopenableHandler handler[] = new ReopenableHandler[50];
+        for (int i = 0; i < handler.length; ++i)
+            handler[i] = open(new File(dir, "log" + i + ".html"), pool);
+
+        for (int round = 0; round < 3; ++round)
+        {
+            for (ReopenableHandler currHandler : handler)
+            {
+                currHandler.publish(newRecord("Round " + round));
+                Assert.assertTrue(pool.getOpenCount() <= 4);
+            }
+        }
+        for (ReopenableHandler currHandler : handler)
+            currHandler.close();
+
+        for (int i = 0; i < handler.length; ++i)
+        {
+            String text = new String(Files.readAllBytes(new File(dir, "log" + i + ".html").toPath()), StandardCharsets.UTF_8);
+            Assert.assertEquals(count(text, "<html>"), 1);
+            Assert.assertEquals(count(text, "</html>"), 1);
+            for (int round = 0; round < 3; ++round)
+                Assert.assertTrue(text.contains(">Round " + round + "<"));
+        }
+    }
+
+    private static ReopenableHandler open(File file, LogHandlerPool pool) throws Exception
+    {
+        return new ReopenableHandler((reopen) -> new LogFileHandler(file, new HtmlFormatter(file.getName()), reopen, true), pool);
+    }
+
+    private static int count(String text, String part)
+    {
+        int count = 0;
+        for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1))
+            ++count;
+        return count;
+    }
+
+    private static LogRecord newRecord(String message)
+    {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setSourceClassName(LogHandlerPoolTest.class.getName());
+        record.setSourceMethodName("newRecord");
+        return record;
+    }
+}
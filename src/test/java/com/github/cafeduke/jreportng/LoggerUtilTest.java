@@ -0,0 +1,54 @@
+package com.github.cafeduke.jreportng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LoggerUtilTest extends AbstractTestCase
+{
+    @Test
+    public void testLoggerSetUpOnce() throws Exception
+    {
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Logger>> listFuture = new ArrayList<>();
+            for (int i = 0; i < threads; ++i)
+            {
+                listFuture.add(executor.submit(() ->
+                {
+                    barrier.await();
+                    return LoggerUtil.getLogger(Raced.class);
+                }));
+            }
+
+            Logger raced = listFuture.get(0).get();
+            for (Future<Logger> currFuture : listFuture)
+                Assert.assertSame(currFuture.get(), raced);
+
+            Assert.assertEquals(LoggerUtil.getSetUpCount(Raced.class), 1);
+            Assert.assertEquals(raced.getHandlers().length, LoggerUtil.getLogger(LoggerUtilTest.class).getHandlers().length);
+            raced.info("Logger set up once by " + threads + " threads");
+        }
+        finally
+        {
+            executor.shutdown();
+            LoggerUtil.releaseLogger(Raced.class);
+        }
+    }
+
+    private static final class Raced
+    {
+
+    }
+}
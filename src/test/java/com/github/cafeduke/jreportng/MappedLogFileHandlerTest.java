@@ -0,0 +1,69 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MappedLogFileHandlerTest extends AbstractTestCase
+{
+    @Test
+    public void testMatchesLogFileHandler() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-mmap").toFile();
+        File fileMapped = new File(dir, "mapped.html");
+        File fileExpected = new File(dir, "expected.html");
+
+        // A chunk much smaller than a record maps many chunks per record and splits multi-byte characters
+        publish(new MappedLogFileHandler(fileMapped, new HtmlFormatter("Mapped"), false, 7));
+        publish(new LogFileHandler(fileExpected, new HtmlFormatter("Mapped"), false, false));
+
+        logger.info("Mapped log has " + fileMapped.length() + " bytes");
+        Assert.assertEquals(read(fileMapped), read(fileExpected));
+    }
+
+    @Test
+    public void testAppendAfterUnclosedFile() throws Exception
+    {
+        File file = File.createTempFile("jreportng-mmap", ".html");
+        Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            // Padding left by a handler that was not closed
+            raf.setLength(10000);
+        }
+
+        HtmlFormatter formatter = new HtmlFormatter("Mapped");
+        MappedLogFileHandler handler = new MappedLogFileHandler(file, formatter, true, 4096);
+        Assert.assertEquals(file.length(), "content".length() + 4096L);
+        handler.close();
+
+        // The document in the file is continued, without a second head
+        Assert.assertEquals(read(file), "content" + formatter.getTail(handler));
+    }
+
+    private static void publish(Handler handler)
+    {
+        for (int i = 0; i < 50; ++i)
+        {
+            LogRecord record = new LogRecord(Level.INFO, "Record " + i + " caf\u00e9 \u20ac \ud83d\ude00");
+            record.setMillis(1000000000000L + i);
+            record.setSourceClassName(MappedLogFileHandlerTest.class.getName());
+            record.setSourceMethodName("publish");
+            handler.publish(record);
+        }
+        handler.close();
+    }
+
+    private static String read(File file) throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class NdjsonFormatterTest extends AbstractTestCase
+{
+    @Test
+    public void testRecord()
+    {
+        LogRecord record = new LogRecord(Level.WARNING, "Quote \" backslash \\ tab \t" + ReportProperties.LINE_SEP + "bell \u0007 \u00e9");
+        record.setMillis(0);
+        record.setSourceClassName("com.example.SampleTest");
+        record.setSourceMethodName("testSample");
+        record.setThreadID(7);
+        record.setParameters(new String[] { HtmlFormatter.STYLE_ROW_SUCCESS });
+
+        String line = new NdjsonFormatter().format(record);
+        Assert.assertEquals(line, "{\"millis\":0,\"time\":\"1970-01-01T00:00:00Z\",\"level\":\"WARNING\",\"class\":\"com.example.SampleTest\"," +
+            "\"method\":\"testSample\",\"threadId\":7," +
+            "\"message\":\"Quote \\\" backslash \\\\ tab \\t" + ReportProperties.LINE_SEP.replace("\r", "\\r").replace("\n", "\\n") + "bell \\u0007 \u00e9\"," +
+            "\"style\":\"" + HtmlFormatter.STYLE_ROW_SUCCESS + "\"}\n");
+    }
+
+    @Test
+    public void testThrown()
+    {
+        IllegalStateException cause = new IllegalStateException("Cause");
+        RuntimeException thrown = new RuntimeException("Thrown", cause);
+        cause.initCause(thrown);
+
+        LogRecord record = new LogRecord(Level.SEVERE, null);
+        record.setThrown(thrown);
+        String line = new NdjsonFormatter().format(record);
+
+        Assert.assertTrue(line.contains("\"message\":null,\"style\":null,\"thrown\":{\"class\":\"java.lang.RuntimeException\",\"message\":\"Thrown\",\"frames\":[\""));
+        Assert.assertTrue(line.contains("\"cause\":{\"class\":\"java.lang.IllegalStateException\",\"message\":\"Cause\""));
+        Assert.assertTrue(line.contains(NdjsonFormatterTest.class.getName() + ".testThrown(NdjsonFormatterTest.java:"));
+        Assert.assertEquals(line.indexOf("\"cause\""), line.lastIndexOf("\"cause\""), "Cyclic cause is written once");
+        Assert.assertEquals(line.indexOf('\n'), line.length() - 1);
+    }
+
+    @Test
+    public void testLogFile() throws Exception
+    {
+        File file = File.createTempFile("jreportng-ndjson", NdjsonFormatter.EXTENSION);
+        for (boolean append : new boolean[] { false, true })
+        {
+            LogFileHandler handler = new LogFileHandler(file, new NdjsonFormatter(), append, false);
+            for (int i = 0; i < 1000; ++i)
+                handler.publish(new LogRecord(Level.INFO, "Record " + i));
+            handler.close();
+        }
+
+        List<String> listLine = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(listLine.size(), 2000);
+        for (String currLine : listLine)
+            Assert.assertTrue(currLine.startsWith("{\"millis\":") && currLine.endsWith("}"), currLine);
+    }
+}
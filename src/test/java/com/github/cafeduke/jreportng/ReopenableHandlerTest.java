@@ -0,0 +1,108 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ReopenableHandlerTest extends AbstractTestCase
+{
+    @Test
+    public void testReleaseAndReopen() throws Exception
+    {
+        File file = File.createTempFile("jreportng-reopen", ".html");
+        ReopenableHandler handler = new ReopenableHandler((reopen) -> new LogFileHandler(file, new HtmlFormatter("Reopen"), reopen, true));
+
+        handler.publish(newRecord("First"));
+        handler.release();
+        Assert.assertFalse(handler.isOpen());
+        assertDocument(file, 1);
+
+        handler.publish(newRecord("Second"));
+        Assert.assertTrue(handler.isOpen());
+        handler.close();
+        assertDocument(file, 2);
+    }
+
+    @Test
+    public void testRerun() throws Exception
+    {
+        File file = File.createTempFile("jreportng-reopen", ".html");
+        for (boolean append : new boolean[] { false, true, true })
+        {
+            LogFileHandler handler = new LogFileHandler(file, new HtmlFormatter("Rerun"), append, true);
+            handler.publish(newRecord("Run"));
+            handler.close();
+        }
+        assertDocument(file, 3);
+
+        LogFileHandler handler = new LogFileHandler(file, new HtmlFormatter("Rerun"), false, true);
+        handler.publish(newRecord("Run"));
+        handler.close();
+        assertDocument(file, 1);
+    }
+
+    @Test
+    public void testCompressedReleaseAndReopen() throws Exception
+    {
+        File file = File.createTempFile("jreportng-reopen", ".html.gz");
+        ReopenableHandler handler = new ReopenableHandler((reopen) -> new LogFileHandler(file, new HtmlFormatter("Reopen"), reopen, false, true));
+        for (int i = 0; i < 3; ++i)
+        {
+            handler.publish(newRecord("Record " + i));
+            handler.release();
+            assertDocument(file, i + 1);
+        }
+        handler.close();
+        assertDocument(file, 3);
+    }
+
+    private static void assertDocument(File file, int records) throws Exception
+    {
+        String text;
+        if (file.getName().endsWith(".gz"))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file)))
+            {
+                byte buffer[] = new byte[8192];
+                for (int length; (length = in.read(buffer)) > 0;)
+                    out.write(buffer, 0, length);
+            }
+            text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+        else
+        {
+            text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+        Assert.assertEquals(count(text, "<html>"), 1);
+        Assert.assertEquals(count(text, "</html>"), 1);
+        Assert.assertTrue(text.endsWith("</html>" + ReportProperties.LINE_SEP));
+        Assert.assertEquals(count(text, "<td colspan='5'>"), records);
+    }
+
+    private static int count(String text, String part)
+    {
+        int count = 0;
+        for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1))
+            ++count;
+        return count;
+    }
+
+    private static LogRecord newRecord(String message)
+    {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setSourceClassName(ReopenableHandlerTest.class.getName());
+        record.setSourceMethodName("newRecord");
+        return record;
+    }
+}
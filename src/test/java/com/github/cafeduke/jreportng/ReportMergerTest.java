@@ -0,0 +1,72 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ReportMergerTest extends AbstractTestCase
+{
+    @Test
+    public void testMerge() throws Exception
+    {
+        File dirHome = Files.createTempDirectory("jreportng-merge").toFile();
+        File dirFragment = new File(dirHome, "fragments");
+        dirFragment.mkdirs();
+        writeFragment(new File(dirFragment, "f1.properties"), "f1", "2024-01-01T10:00:00", "2024-01-01T10:01:00", 3, 1, 0,
+            "method.a.A.test", "2,300,200", "class.a.A", "40,10,300,200, 8:2");
+        writeFragment(new File(dirFragment, "f2.properties"), "f2", "2024-01-01T10:00:30", "2024-01-01T10:02:00", 2, 0, 1,
+            "method.a.A.test", "1,500,500", "class.a.A", "20,5,500,500, 9:1");
+
+        // The merge rewrites the report of the JVM it runs in, so it runs in a JVM of its own
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        Process process = new ProcessBuilder(java, "-Djreport.home=" + dirHome, "-cp", System.getProperty("java.class.path"), ReportMerger.class.getName())
+            .redirectErrorStream(true)
+            .redirectOutput(new File(dirHome, "merge.txt"))
+            .start();
+        Assert.assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        String output = read(new File(dirHome, "merge.txt"));
+        Assert.assertEquals(process.exitValue(), 0, output);
+        Assert.assertTrue(output.contains("Merged 2 fragment(s)"), output);
+
+        String summary = read(new File(dirHome, "summary.json"));
+        logger.info("Merged summary " + summary);
+        Assert.assertTrue(summary.contains("\"durationMillis\": 120000,"), summary);
+        Assert.assertTrue(summary.contains("\"pass\": 5,"), summary);
+        Assert.assertTrue(summary.contains("\"fail\": 1,"), summary);
+        Assert.assertTrue(summary.contains("\"skip\": 1,"), summary);
+        Assert.assertTrue(summary.contains("\"total\": 7,"), summary);
+        Assert.assertTrue(summary.contains("\"forks\": 2,"), summary);
+        Assert.assertTrue(summary.contains("\"configurationMillis\": 75,"), summary);
+        Assert.assertTrue(summary.contains("\"runs\": 3, \"totalMillis\": 800, \"maxMillis\": 500"), summary);
+    }
+
+    private static void writeFragment(File file, String forkId, String start, String end, int pass, int fail, int skip, String... timing) throws Exception
+    {
+        Properties fragment = new Properties();
+        fragment.setProperty("fork.id", forkId);
+        fragment.setProperty("time.start", start);
+        fragment.setProperty("time.end", end);
+        fragment.setProperty("count.pass", String.valueOf(pass));
+        fragment.setProperty("count.fail", String.valueOf(fail));
+        fragment.setProperty("count.skip", String.valueOf(skip));
+        fragment.setProperty("package.a", "a.A");
+        for (int i = 0; i < timing.length; i += 2)
+            fragment.setProperty(timing[i], timing[i + 1]);
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            fragment.store(out, null);
+        }
+    }
+
+    private static String read(File file) throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
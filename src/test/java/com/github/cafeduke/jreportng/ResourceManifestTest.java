@@ -0,0 +1,79 @@
+package com.github.cafeduke.jreportng;
+
+import static com.github.cafeduke.jreportng.ReportProperties.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ResourceManifestTest extends AbstractTestCase
+{
+    @Test
+    public void testManifestMatchesResources() throws Exception
+    {
+        for (ResourceExtractor.Entry currEntry : readManifest())
+        {
+            byte content[];
+            try (InputStream in = ResourceManifestTest.class.getResourceAsStream(JREPORT_PREFIX + "/" + currEntry.path))
+            {
+                Assert.assertNotNull(in, "Missing resource " + currEntry.path);
+                content = readAll(in);
+            }
+            ResourceExtractor.Entry actual = new ResourceExtractor.Entry(sha1(content), content.length, currEntry.path);
+            Assert.assertEquals(actual, currEntry, "Manifest entry should be [" + actual + "]");
+        }
+    }
+
+    @Test
+    public void testManifestListsAllResources() throws Exception
+    {
+        Set<String> setListed = readManifest().stream().map((e) -> e.path).collect(Collectors.toCollection(TreeSet::new));
+
+        Path dirSource = DIR_SOURCE_RESOURCE.toPath();
+        Set<String> setSource;
+        try (Stream<Path> stream = Files.walk(dirSource))
+        {
+            setSource = stream
+                .filter(Files::isRegularFile)
+                .map((p) -> dirSource.relativize(p).toString().replace('\\', '/'))
+                .filter((p) -> !(JREPORT_PREFIX + "/" + p).equals(ResourceExtractor.MANIFEST))
+                .collect(Collectors.toCollection(TreeSet::new));
+        }
+        logger.info("Manifest lists " + setListed.size() + " resources");
+        Assert.assertEquals(setListed, setSource);
+    }
+
+    private static List<ResourceExtractor.Entry> readManifest() throws Exception
+    {
+        return ResourceExtractor.read(ResourceManifestTest.class.getResourceAsStream(ResourceExtractor.MANIFEST));
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1)
+            out.write(buffer, 0, count);
+        return out.toByteArray();
+    }
+
+    private static String sha1(byte content[]) throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for (byte currByte : MessageDigest.getInstance("SHA-1").digest(content))
+            builder.append(String.format("%02x", currByte));
+        return builder.toString();
+    }
+}
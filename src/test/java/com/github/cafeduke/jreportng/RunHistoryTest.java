@@ -0,0 +1,84 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RunHistoryTest extends AbstractTestCase
+{
+    private static final int PASS = RunHistory.PASS;
+
+    private static final int FAIL = RunHistory.FAIL;
+
+    private static final int SKIP = RunHistory.SKIP;
+
+    @Test
+    public void testAppend() throws Exception
+    {
+        File file = new File(Files.createTempDirectory("jreportng-history").toFile(), "history/runs.bin");
+        Assert.assertTrue(RunHistory.readLast(file, 10).isEmpty());
+
+        RunHistory.append(file, newRun(1000, "A.pass", PASS, "A.flaky", PASS));
+        RunHistory.append(file, newRun(2000, "A.pass", PASS, "A.flaky", FAIL, "B.broken", PASS));
+        RunHistory.append(file, newRun(3000, "B.broken", FAIL, "A.flaky", PASS, "A.pass", PASS));
+        RunHistory.append(file, newRun(4000, "A.flaky", PASS | FAIL, "B.broken", FAIL, "C.new", SKIP));
+
+        List<RunHistory.Run> listRun = RunHistory.readLast(file, 3);
+        Assert.assertEquals(listRun.stream().map(run -> run.start).collect(Collectors.toList()), Arrays.asList(2000L, 3000L, 4000L));
+        RunHistory.Run last = listRun.get(2);
+        Assert.assertEquals(last.end - last.start, 100);
+        Assert.assertEquals(last.test, new String[] { "A.flaky", "B.broken", "C.new" });
+        Assert.assertEquals(last.outcome, new byte[] { PASS | FAIL, FAIL, SKIP });
+        Assert.assertEquals(last.millis, new long[] { 10, 11, 12 });
+        Assert.assertEquals(listRun.get(0).test, new String[] { "A.pass", "A.flaky", "B.broken" });
+
+        List<RunHistory.FlakyTest> listFlaky = RunHistory.getFlakyTests(RunHistory.readLast(file, 10), 10);
+        Assert.assertEquals(listFlaky.size(), 1);
+        RunHistory.FlakyTest flaky = listFlaky.get(0);
+        Assert.assertEquals(flaky.name, "A.flaky");
+        Assert.assertEquals(flaky.runs, 4);
+        Assert.assertEquals(flaky.failed, 2);
+        Assert.assertEquals(flaky.changes, 2);
+        Assert.assertEquals(RunHistory.getOutcomeName(flaky.last), "Pass, Fail");
+    }
+
+    @Test
+    public void testIncompleteAppend() throws Exception
+    {
+        // Bytes of a run whose append did not complete are not read, and are overwritten by the next run
+        File file = Files.createTempFile("jreportng-history", ".bin").toFile();
+        RunHistory.append(file, newRun(1000, "A.test", PASS));
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.seek(length);
+            raf.write(new byte[] { 0x4A, 0x52, 0x4E, 0x52, 1, 2, 3 });
+        }
+        Assert.assertEquals(RunHistory.readLast(file, 10).size(), 1);
+
+        RunHistory.append(file, newRun(2000, "A.test", FAIL, "B.test", PASS));
+        List<RunHistory.Run> listRun = RunHistory.readLast(file, 10);
+        Assert.assertEquals(listRun.size(), 2);
+        Assert.assertEquals(listRun.get(1).test, new String[] { "A.test", "B.test" });
+        Assert.assertEquals(listRun.get(1).outcome, new byte[] { FAIL, PASS });
+    }
+
+    private static RunHistory.Run newRun(long start, Object... testOutcome)
+    {
+        RunHistory.Run run = new RunHistory.Run(start, start + 100, 1, 1, 1, testOutcome.length / 2);
+        for (int i = 0; i < run.test.length; ++i)
+        {
+            run.test[i] = (String) testOutcome[2 * i];
+            run.outcome[i] = (byte) (int) (Integer) testOutcome[2 * i + 1];
+            run.millis[i] = 10 + i;
+        }
+        return run;
+    }
+}
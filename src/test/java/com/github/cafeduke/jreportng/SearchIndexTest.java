@@ -0,0 +1,95 @@
+package com.github.cafeduke.jreportng;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class SearchIndexTest extends AbstractTestCase
+{
+    @Test
+    public void testTokenize()
+    {
+        Set<String> setToken = new HashSet<>();
+        SearchIndex.tokenize("Login <b>FAILED</b> for user_1: timeout&nbsp;after 30s, a < b", setToken);
+        Assert.assertEquals(setToken, new HashSet<>(Arrays.asList("login", "failed", "for", "user_1", "timeout", "after", "30s", "a", "b")));
+    }
+
+    @Test
+    public void testSpill() throws Exception
+    {
+        // Postings written to run files and merged give the same index as postings held in memory
+        File dirMemory = Files.createTempDirectory("jreportng-search").toFile();
+        File dirSpill = Files.createTempDirectory("jreportng-search").toFile();
+        SearchIndex memory = new SearchIndex(dirMemory, Long.MAX_VALUE);
+        SearchIndex spill = new SearchIndex(dirSpill, 3);
+        for (SearchIndex currIndex : new SearchIndex[] { memory, spill })
+        {
+            int login = currIndex.addDocument("com.acme.LoginTest");
+            int order = currIndex.addDocument("com.acme.OrderTest");
+            for (int i = 0; i < 50; ++i)
+            {
+                currIndex.add((i % 3 == 0) ? order : login, newRecord((i % 10 == 0) ? Level.SEVERE : Level.INFO, "Request " + i + " timed out", "test" + (i % 4)));
+            }
+            SearchIndex.writeShards(currIndex.getDir(), Collections.singletonList(currIndex.writeSegment("fork")), 200);
+        }
+
+        Assert.assertEquals(dirSpill.list((d, name) -> name.startsWith("run-")).length, 0);
+        String index = read(new File(dirMemory, "index.js"));
+        Assert.assertEquals(read(new File(dirSpill, "index.js")), index);
+        Assert.assertTrue(index.startsWith("jreportSearchIndex({\"records\":50,"), index);
+        Assert.assertTrue(index.contains("[\"com.acme.LoginTest\",33],\n[\"com.acme.OrderTest\",17]"), index);
+
+        String shards = "";
+        for (int n = 0; new File(dirMemory, "shard-" + n + ".js").exists(); ++n)
+        {
+            Assert.assertEquals(read(new File(dirSpill, "shard-" + n + ".js")), read(new File(dirMemory, "shard-" + n + ".js")));
+            shards += read(new File(dirMemory, "shard-" + n + ".js"));
+        }
+        Assert.assertTrue(index.contains("\"shards\":[\"0\","), index);
+        Assert.assertTrue(shards.contains("\"level:severe\",[0,3,1,2]"), shards);
+        Assert.assertTrue(shards.contains("\"method:test0\",[0,8,1,5]"), shards);
+        Assert.assertTrue(shards.contains("\"timed\",[0,33,1,17]"), shards);
+    }
+
+    @Test
+    public void testMerge() throws Exception
+    {
+        File dir = Files.createTempDirectory("jreportng-search").toFile();
+        SearchIndex first = new SearchIndex(dir, 2);
+        first.add(first.addDocument("A"), newRecord(Level.INFO, "shared first", "run"));
+        SearchIndex second = new SearchIndex(dir, 2);
+        int docB = second.addDocument("B");
+        int docA = second.addDocument("A");
+        second.add(docB, newRecord(Level.INFO, "shared second", "run"));
+        second.add(docA, newRecord(Level.INFO, "shared", "run"));
+
+        SearchIndex.writeShards(dir, Arrays.asList(first.writeSegment("first"), second.writeSegment("second")));
+        Assert.assertTrue(read(new File(dir, "index.js")).contains("\"docs\":[\n[\"A\",2],\n[\"B\",1]],\n\"shards\":[\"first\"]"));
+        String shard = read(new File(dir, "shard-0.js"));
+        Assert.assertTrue(shard.contains("\"shared\",[0,2,1,1]"), shard);
+        Assert.assertTrue(shard.contains("\"second\",[1,1]"), shard);
+        Assert.assertTrue(shard.contains("\"first\",[0,1]"), shard);
+    }
+
+    private static LogRecord newRecord(Level level, String message, String method)
+    {
+        LogRecord record = new LogRecord(level, message);
+        record.setSourceMethodName(method);
+        return record;
+    }
+
+    private static String read(File file) throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}